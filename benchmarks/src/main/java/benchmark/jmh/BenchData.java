@@ -0,0 +1,86 @@
+package benchmark.jmh;
+
+import database.Relation;
+
+import java.util.*;
+
+/**
+ * Seeded synthetic inputs shared by the benchmarks, so every run and every
+ * machine measures the same relations. Values are Strings, as CSV loading
+ * produces them.
+ */
+public final class BenchData {
+
+    /** Query shapes used by the end-to-end benchmarks. */
+    public enum Pattern {
+        TRIANGLE(new String[][]{{"R", "A", "B"}, {"S", "B", "C"}, {"T", "A", "C"}}),
+        PATH    (new String[][]{{"R", "A", "B"}, {"S", "B", "C"}, {"T", "C", "D"}}),
+        STAR    (new String[][]{{"R", "A", "B"}, {"S", "A", "C"}, {"T", "A", "D"}});
+
+        final String[][] atoms; // {name, column...}
+
+        Pattern(String[][] atoms) { this.atoms = atoms; }
+    }
+
+    static final long SEED = 42;
+
+    private BenchData() { }
+
+    /**
+     * {@code rows} distinct rows per relation with values drawn uniformly
+     * from a domain of {@code rows / 8} values, so joins have several
+     * partners per key and the output stays a small multiple of the input.
+     */
+    static Map<String, Relation> relations(Pattern pattern, int rows) {
+        Random rnd = new Random(SEED);
+        int domain = Math.max(2, rows / 8);
+        Map<String, Relation> rels = new LinkedHashMap<>();
+        for (String[] atom : pattern.atoms) {
+            List<String> cols = Arrays.asList(atom).subList(1, atom.length);
+            rels.put(atom[0], relation(atom[0], cols, rows, domain, rnd));
+        }
+        return rels;
+    }
+
+    static Relation relation(String name, List<String> cols, int rows, int domain, Random rnd) {
+        Relation rel = new Relation(name, cols);
+        long capacity = (long) Math.pow(domain, cols.size());
+        Set<List<String>> seen = new HashSet<>();
+        while (seen.size() < Math.min(rows, capacity)) {
+            List<String> row = new ArrayList<>(cols.size());
+            for (int c = 0; c < cols.size(); c++) row.add(String.valueOf(rnd.nextInt(domain)));
+            if (seen.add(row)) rel.addRow(row.toArray());
+        }
+        return rel;
+    }
+
+    /** CSV text with a header and {@code rows} rows of {@code cols} columns. */
+    static String csv(List<String> cols, int rows, int domain) {
+        Random rnd = new Random(SEED);
+        StringBuilder sb = new StringBuilder(String.join(",", cols)).append('\n');
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols.size(); c++) {
+                if (c > 0) sb.append(',');
+                sb.append(rnd.nextInt(domain));
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    /** Sorted, duplicate-free ints below {@code bound}. */
+    static int[] sortedSet(int size, int bound, Random rnd) {
+        return rnd.ints(0, bound).distinct().limit(size).sorted().toArray();
+    }
+
+    /**
+     * Sorted, duplicate-free ints below {@code bound}, skewed towards small
+     * values: {@code bound · u³} for uniform {@code u}, so the density
+     * falls off as a power law and two such sets overlap mostly in their
+     * dense low range and rarely in their sparse tail.
+     */
+    static int[] skewedSortedSet(int size, int bound, Random rnd) {
+        return rnd.doubles().mapToInt(u -> (int) (bound * u * u * u))
+                  .distinct().limit(size).sorted().toArray();
+    }
+}
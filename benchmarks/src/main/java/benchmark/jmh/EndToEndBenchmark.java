@@ -0,0 +1,46 @@
+package benchmark.jmh;
+
+import Algorithms.LoomisWhitneyInstance;
+import database.Relation;
+import database.Tuple;
+import org.openjdk.jmh.annotations.*;
+import tree.QueryTreeBuilder;
+import tree.TreeNode;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/** Whole queries through {@link LoomisWhitneyInstance#execute()}. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Benchmark)
+public class EndToEndBenchmark {
+
+    @Param({"TRIANGLE", "PATH", "STAR"})
+    BenchData.Pattern pattern;
+
+    @Param({"100", "500"})
+    int rows;
+
+    @Param({"true", "false"})
+    boolean vectorized;
+
+    private Map<String, Relation> relations;
+    private TreeNode              tree;
+
+    @Setup
+    public void setup() {
+        relations = BenchData.relations(pattern, rows);
+        tree      = QueryTreeBuilder.build(relations);
+    }
+
+    @Benchmark
+    public Set<Tuple> execute() {
+        LoomisWhitneyInstance lw = new LoomisWhitneyInstance(relations, tree);
+        lw.setVectorized(vectorized);
+        return lw.execute();
+    }
+}
@@ -0,0 +1,68 @@
+package benchmark.jmh;
+
+import Algorithms.intersect.SortedIntersection;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sorted-set intersection kernels on inputs of equal size (ratio 1) and of
+ * very different sizes (ratio 64, where galloping should win), over three
+ * value distributions: {@code uniform} over four times the large set's size,
+ * {@code dense} over a domain only an eighth larger than it (nearly every
+ * value present, most probes match), and {@code skewed} towards small values
+ * by a power law (long matching runs at the low end, sparse tails). The SIMD
+ * kernel needs the forked JVM's {@code --add-modules jdk.incubator.vector}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Benchmark)
+public class IntersectionBenchmark {
+
+    @Param({"1000", "100000"})
+    int size;
+
+    @Param({"1", "64"})
+    int ratio;
+
+    @Param({"uniform", "dense", "skewed"})
+    String distribution;
+
+    private int[] small, large, out;
+
+    @Setup
+    public void setup() {
+        Random rnd = new Random(BenchData.SEED);
+        int smallSize = Math.max(1, size / ratio);
+        switch (distribution) {
+            case "dense":
+                large = BenchData.sortedSet(size, size + size / 8, rnd);
+                small = BenchData.sortedSet(smallSize, size + size / 8, rnd);
+                break;
+            case "skewed":
+                large = BenchData.skewedSortedSet(size, size * 4, rnd);
+                small = BenchData.skewedSortedSet(smallSize, size * 4, rnd);
+                break;
+            default:
+                large = BenchData.sortedSet(size, size * 4, rnd);
+                small = BenchData.sortedSet(smallSize, size * 4, rnd);
+        }
+        out = new int[small.length];
+    }
+
+    @Benchmark
+    public int merge() { return SortedIntersection.merge(small, small.length, large, large.length, out); }
+
+    @Benchmark
+    public int gallop() { return SortedIntersection.gallop(small, small.length, large, large.length, out); }
+
+    @Benchmark
+    public int simd() { return SortedIntersection.simd(small, small.length, large, large.length, out); }
+
+    @Benchmark
+    public int adaptive() { return SortedIntersection.intersect(small, small.length, large, large.length, out); }
+}
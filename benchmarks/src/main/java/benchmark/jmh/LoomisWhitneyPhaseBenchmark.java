@@ -0,0 +1,83 @@
+package benchmark.jmh;
+
+import Algorithms.CancellationToken;
+import Algorithms.LoomisWhitneyInstance;
+import Algorithms.TuplePhases;
+import database.Relation;
+import database.Tuple;
+import org.openjdk.jmh.annotations.*;
+import tree.QueryTreeBuilder;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Each tuple-at-a-time phase of an LW node on its own, for the triangle
+ * query's R ⋈ T node (λ = {A}): projection, F = π_λ(D_L) ∩ π_λ(D_R),
+ * degree counting into G, the conditional join over G, and the final prune
+ * of the root's C.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LoomisWhitneyPhaseBenchmark {
+
+    private static final List<String> LAMBDA = List.of("A");
+
+    @Param({"200", "1000"})
+    int rows;
+
+    private Map<String, Relation> relations;
+    private Set<Tuple>            DL, DR, F, G, rootC;
+    private int                   threshold;
+    private List<String>          allAttrs;
+    private final CancellationToken never = new CancellationToken();
+
+    @Setup
+    public void setup() {
+        relations = BenchData.relations(BenchData.Pattern.TRIANGLE, rows);
+        DL = new HashSet<>(relations.get("R").getTuples());
+        DR = new HashSet<>(relations.get("T").getTuples());
+
+        LoomisWhitneyInstance lw = new LoomisWhitneyInstance(relations, QueryTreeBuilder.build(relations));
+        threshold = (int) Math.ceil(lw.getSizeBound() / DR.size());
+        F = TuplePhases.intersectKeys(DL, DR, LAMBDA);
+        G = TuplePhases.heavyKeys(F, DL, LAMBDA, threshold, never);
+
+        // Candidates for prune: the root's C as the engine produced it
+        rootC = new HashSet<>();
+        lw.setExecutionListener(s -> { if (s.node.isRoot()) rootC.addAll(s.C); });
+        lw.execute();
+        allAttrs = List.of("A", "B", "C");
+    }
+
+    @Benchmark
+    public Set<Tuple> project() {
+        return TuplePhases.project(DL, LAMBDA);
+    }
+
+    @Benchmark
+    public Set<Tuple> intersectF() {
+        return TuplePhases.intersectKeys(DL, DR, LAMBDA);
+    }
+
+    @Benchmark
+    public Set<Tuple> degreeCount() {
+        return TuplePhases.heavyKeys(F, DL, LAMBDA, threshold, never);
+    }
+
+    @Benchmark
+    public Set<Tuple> conditionalJoin() {
+        Set<Tuple> out = new HashSet<>();
+        TuplePhases.conditionalJoin(DL, DR, G, LAMBDA, out, never);
+        return out;
+    }
+
+    @Benchmark
+    public Set<Tuple> prune() {
+        return TuplePhases.prune(rootC, allAttrs, relations.values(), never);
+    }
+}
@@ -0,0 +1,48 @@
+package benchmark.jmh;
+
+import database.CsvLoader;
+import database.Relation;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/** Building relations: parsing CSV text, and appending already-parsed rows. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RelationLoadBenchmark {
+
+    private static final List<String> COLUMNS = List.of("A", "B", "C");
+
+    @Param({"1000", "100000"})
+    int rows;
+
+    private String     csv;
+    private Object[][] parsed;
+
+    @Setup
+    public void setup() {
+        csv = BenchData.csv(COLUMNS, rows, Math.max(2, rows / 8));
+        String[] lines = csv.split("\n");
+        parsed = new Object[lines.length - 1][];
+        for (int i = 1; i < lines.length; i++) parsed[i - 1] = lines[i].split(",");
+    }
+
+    @Benchmark
+    public Relation csvLoad() throws IOException {
+        return CsvLoader.load("R", new StringReader(csv));
+    }
+
+    @Benchmark
+    public Relation addRows() {
+        Relation rel = new Relation("R", COLUMNS);
+        for (Object[] row : parsed) rel.addRow(row);
+        return rel;
+    }
+}
@@ -0,0 +1,53 @@
+package benchmark.jmh;
+
+import database.Tuple;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/** The Tuple operations every join phase is built from. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TupleBenchmark {
+
+    @Param({"2", "4", "8"})
+    int arity;
+
+    private Tuple        tuple, equalTuple, partner;
+    private List<String> half;
+
+    @Setup
+    public void setup() {
+        Map<String, Object> a = new LinkedHashMap<>(), b = new LinkedHashMap<>();
+        for (int i = 0; i < arity; i++) {
+            a.put("X" + i, "v" + i);
+            // partner shares the second half of the attributes and adds as many new ones
+            if (i >= arity / 2) b.put("X" + i, "v" + i);
+            b.put("Y" + i, "w" + i);
+        }
+        tuple      = new Tuple(a);
+        equalTuple = new Tuple(new LinkedHashMap<>(a));
+        partner    = new Tuple(b);
+        half       = new ArrayList<>(a.keySet()).subList(0, Math.max(1, arity / 2));
+    }
+
+    @Benchmark
+    public int hashCodeOf() { return tuple.hashCode(); }
+
+    @Benchmark
+    public boolean equalsOf() { return tuple.equals(equalTuple); }
+
+    @Benchmark
+    public Tuple projectOn() { return tuple.projectOn(half); }
+
+    @Benchmark
+    public boolean canJoin() { return tuple.canJoin(partner); }
+
+    @Benchmark
+    public Tuple join() { return tuple.join(partner); }
+}
@@ -0,0 +1,36 @@
+package query;
+
+import Algorithms.LoomisWhitneyInstance;
+import database.CsvLoader;
+import database.Relation;
+import database.Tuple;
+import org.junit.jupiter.api.Test;
+import tree.QueryTreeBuilder;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Attributes widened to STRING by {@link ConjunctiveQuery#bind}: a column
+ * inferred long in one relation must still join the same text in another.
+ */
+class TypeWideningTest {
+
+    @Test
+    void widenedColumnKeepsItsCsvText() throws IOException {
+        // z is long in T but text in S: T's 010 must still join S's "010"
+        Map<String, Relation> catalog = new LinkedHashMap<>();
+        catalog.put("R", CsvLoader.load("R", new StringReader("x,y\n010,1\n")));
+        catalog.put("S", CsvLoader.load("S", new StringReader("y,z\n1,010\n2,abc\n")));
+        catalog.put("T", CsvLoader.load("T", new StringReader("x,z\n010,010\n")));
+
+        Map<String, Relation> bound = ConjunctiveQuery.parse("R, S, T").bind(catalog);
+        Set<Tuple> result = new LoomisWhitneyInstance(bound, QueryTreeBuilder.build(bound)).execute();
+
+        assertEquals(1, result.size(), "triangle (010, 1, 010) expected, got " + result);
+        assertEquals("010", bound.get("T").getRow(0).getValue(1));
+    }
+}
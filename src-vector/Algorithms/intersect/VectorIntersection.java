@@ -0,0 +1,42 @@
+package Algorithms.intersect;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD block-compare intersection on the incubating Vector API.
+ *
+ * <p>{@code b} is walked one vector-width block at a time; every value of
+ * {@code a} that is not larger than the block's last element is broadcast
+ * and compared against the whole block in one instruction. Values of
+ * {@code a} below a block can never match an earlier block, so each value
+ * is compared exactly once.
+ *
+ * <p>Kept in {@code src-vector/}, the only source root compiled with
+ * {@code --add-modules jdk.incubator.vector}, and only loaded reflectively
+ * by {@link SortedIntersection} when that module is present at runtime.
+ */
+final class VectorIntersection implements IntersectKernel {
+
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+    @Override
+    public int lanes() { return SPECIES.length(); }
+
+    @Override
+    public int intersect(int[] a, int aLen, int[] b, int bLen, int[] out) {
+        int lanes = SPECIES.length();
+        int i = 0, j = 0, k = 0;
+        while (i < aLen && j + lanes <= bLen) {
+            IntVector block = IntVector.fromArray(SPECIES, b, j);
+            int blockMax = b[j + lanes - 1];
+            while (i < aLen && a[i] <= blockMax) {
+                int v = a[i++];
+                if (block.eq(v).anyTrue()) out[k++] = v;
+            }
+            j += lanes;
+        }
+        // Tail of b shorter than one vector
+        return k + SortedIntersection.merge(a, i, aLen, b, j, bLen, out, k);
+    }
+}
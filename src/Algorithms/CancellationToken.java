@@ -0,0 +1,61 @@
+package Algorithms;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cooperative stop signal for one query: cancelled explicitly from any
+ * thread, or implicitly once its deadline passes.
+ *
+ * <p>The join loops call {@link #checkpoint()} once per unit of work. It only
+ * counts calls and looks at the flag and the clock every
+ * {@value #CHECK_INTERVAL} of them, so it is cheap enough for inner loops.
+ * When the query must stop it throws {@link QueryCancelledException}.
+ */
+public final class CancellationToken {
+
+    public enum Reason { CANCELLED, TIMED_OUT }
+
+    private static final int  CHECK_INTERVAL = 1 << 12;
+    private static final long NO_DEADLINE    = Long.MAX_VALUE;
+
+    private volatile boolean cancelled;
+    private final long       deadlineNanos;
+    private int              ticks; // touched by the query thread only
+
+    /** A token without deadline; it stops the query only via {@link #cancel()}. */
+    public CancellationToken() {
+        this.deadlineNanos = NO_DEADLINE;
+    }
+
+    private CancellationToken(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    /** A token that expires {@code timeout} from now. */
+    public static CancellationToken withTimeout(long timeout, TimeUnit unit) {
+        return new CancellationToken(System.nanoTime() + unit.toNanos(timeout));
+    }
+
+    /** Asks the query to stop at its next check. Safe from any thread. */
+    public void cancel() { cancelled = true; }
+
+    /** True once cancelled or past the deadline. */
+    public boolean isStopped() { return stopReason() != null; }
+
+    /** Amortised check for inner loops. */
+    public void checkpoint() {
+        if ((++ticks & (CHECK_INTERVAL - 1)) == 0) check();
+    }
+
+    /** Immediate check; throws if the query must stop. */
+    public void check() {
+        Reason reason = stopReason();
+        if (reason != null) throw new QueryCancelledException(reason);
+    }
+
+    private Reason stopReason() {
+        if (cancelled) return Reason.CANCELLED;
+        if (deadlineNanos != NO_DEADLINE && System.nanoTime() - deadlineNanos >= 0) return Reason.TIMED_OUT;
+        return null;
+    }
+}
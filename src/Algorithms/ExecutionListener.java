@@ -0,0 +1,19 @@
+package Algorithms;
+
+/**
+ * Observer of a {@link LoomisWhitneyInstance} run, attached with
+ * {@link LoomisWhitneyInstance#setExecutionListener}.
+ *
+ * <p>Without a listener the engine skips every measurement: the hook sites
+ * are a single null check per tree node, never per tuple.
+ */
+@FunctionalInterface
+public interface ExecutionListener {
+
+    /**
+     * Called once per tree node, children before parents, when the node's C
+     * and D are final. Runs on the evaluating thread; the sets referenced by
+     * {@code stats} are only guaranteed valid during the call.
+     */
+    void onNode(NodeStats stats);
+}
@@ -0,0 +1,100 @@
+package Algorithms;
+
+import database.Tuple;
+
+import java.util.*;
+
+/**
+ * Rows of a D set by position, for kernels that make more than one pass
+ * over an input or probe it at random. A materialised set is read into an
+ * array once; a {@link JoinView} answers from its grouped rows, so reading
+ * its values never builds a joined tuple.
+ *
+ * <p>Every row shares one schema, {@link #attributeMap()}.
+ */
+public interface IndexedRows {
+
+    /** Number of rows. */
+    int size();
+
+    /** Attribute name → value index, the same for every row. */
+    Map<String, Integer> attributeMap();
+
+    /** Value of column {@code column} in row {@code row}. */
+    Object value(int row, int column);
+
+    /** Appends the values of row {@code row}, in column order, to {@code out}. */
+    void appendTo(int row, List<Object> out);
+
+    /** Row {@code row} as a tuple; a view builds a new one on every call. */
+    default Tuple get(int row) {
+        List<Object> values = new ArrayList<>(attributeMap().size());
+        appendTo(row, values);
+        return new Tuple(values, attributeMap());
+    }
+
+    /** The rows at positions {@code rows}, in that order. */
+    default IndexedRows select(int[] rows) {
+        return new Selected(this, rows);
+    }
+
+    /**
+     * Rows of {@code set}: a view's own rows, or the set's tuples read into
+     * an array.
+     *
+     * @return the rows, or null if {@code set} is empty or its tuples do not
+     *         share one schema
+     */
+    static IndexedRows of(Collection<Tuple> set) {
+        if (set instanceof JoinView) return set.isEmpty() ? null : ((JoinView) set).rows();
+        Tuple[] rows = set.toArray(new Tuple[0]);
+        if (rows.length == 0) return null;
+        Map<String, Integer> schema = rows[0].getAttributeMap();
+        for (Tuple t : rows) {
+            Map<String, Integer> m = t.getAttributeMap();
+            if (m != schema && !m.equals(schema)) return null;
+        }
+        return new Array(rows, schema);
+    }
+
+    /** Materialised rows. */
+    final class Array implements IndexedRows {
+        private final Tuple[]              rows;
+        private final Map<String, Integer> schema;
+
+        Array(Tuple[] rows, Map<String, Integer> schema) {
+            this.rows   = rows;
+            this.schema = schema;
+        }
+
+        @Override public int size()                          { return rows.length; }
+        @Override public Map<String, Integer> attributeMap() { return schema; }
+        @Override public Object value(int row, int column)   { return rows[row].getValue(column); }
+        @Override public void appendTo(int row, List<Object> out) { out.addAll(rows[row].getValues()); }
+        @Override public Tuple get(int row)                  { return rows[row]; }
+
+        /** Copies the selected tuples, so the rows left out can be collected. */
+        @Override
+        public IndexedRows select(int[] selected) {
+            Tuple[] kept = new Tuple[selected.length];
+            for (int i = 0; i < selected.length; i++) kept[i] = rows[selected[i]];
+            return new Array(kept, schema);
+        }
+    }
+
+    /** A subset of another source's rows, by position. */
+    final class Selected implements IndexedRows {
+        private final IndexedRows source;
+        private final int[]       rows;
+
+        Selected(IndexedRows source, int[] rows) {
+            this.source = source;
+            this.rows   = rows;
+        }
+
+        @Override public int size()                          { return rows.length; }
+        @Override public Map<String, Integer> attributeMap() { return source.attributeMap(); }
+        @Override public Object value(int row, int column)   { return source.value(rows[row], column); }
+        @Override public void appendTo(int row, List<Object> out) { source.appendTo(rows[row], out); }
+    }
+}
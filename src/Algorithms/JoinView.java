@@ -0,0 +1,405 @@
+package Algorithms;
+
+import Algorithms.hash.LongMultimap;
+import database.Dictionary;
+import database.Tuple;
+
+import java.util.*;
+
+/**
+ * The D set of a non-root node, D = D_L ⋈_{F\G} D_R, kept as a view instead
+ * of as joined tuples: the rows of D_L and D_R whose λ key is light, grouped
+ * by that key. A joined tuple only exists while something reads it.
+ *
+ * <p>Each side's rows are stored group after group ({@code start[g]} is the
+ * first row of group g), so a group is a pair of row ranges and joined row
+ * i is found by position. A side that is itself a view is not joined
+ * either: only the positions of its light rows are kept.
+ *
+ * <p>The parent reads a view through the same {@link Set} interface as a
+ * materialised D, and gets cheaper answers for the questions a node asks of
+ * its inputs:
+ * <ul>
+ *   <li>{@link #size()} is Σ |L_k|·|R_k| over the light keys, counted when
+ *       the view is built;</li>
+ *   <li>{@link #project} onto attributes of one side projects that side's
+ *       grouped rows, without joining;</li>
+ *   <li>{@link #degrees} counts tuples per key the same way, weighting each
+ *       row by the size of its partner group;</li>
+ *   <li>{@link #rows()} reads joined rows by position, which is how the
+ *       vectorized kernels encode and emit from a view;</li>
+ *   <li>{@link #joinWith} joins one outer tuple with the view by testing it
+ *       against each group's rows instead of their pairs;</li>
+ *   <li>{@link #contains} checks one group instead of scanning.</li>
+ * </ul>
+ *
+ * Views are read-only. {@link #light} declines inputs the grouped form
+ * cannot represent exactly (null λ values, or rows of mixed schemas), in
+ * which case the caller materialises D as before.
+ */
+public final class JoinView extends AbstractSet<Tuple> {
+
+    private final List<String>               lambda;
+    private final IndexedRows                left, right;           // light rows of D_L and D_R, group by group
+    private final int[]                      leftStart, rightStart; // group g: rows [start[g], start[g+1])
+    private final int[]                      offset;                // first joined row of each group; offset[groups] = size
+    private final Map<List<Object>, Integer> groupOf;               // light key (λ order) → group
+    private final Map<String, Integer>       joinedMap;             // shared by every joined tuple
+    private final int                        leftWidth;
+    private final int[]                      rightExtra;            // right columns appended after the left's
+
+    private JoinView(List<String> lambda, IndexedRows left, IndexedRows right, int[] leftStart, int[] rightStart,
+                     Map<List<Object>, Integer> groupOf) {
+        this.lambda     = new ArrayList<>(lambda);
+        this.left       = left;
+        this.right      = right;
+        this.leftStart  = leftStart;
+        this.rightStart = rightStart;
+        this.groupOf    = groupOf;
+
+        int groups = leftStart.length - 1;
+        this.offset = new int[groups + 1];
+        for (int g = 0; g < groups; g++) offset[g + 1] = offset[g] + leftSize(g) * rightSize(g);
+
+        Map<String, Integer> map = new HashMap<>();
+        List<Integer> extra = new ArrayList<>();
+        if (left != null) {
+            map.putAll(left.attributeMap());
+            for (Map.Entry<String, Integer> e : sortedColumns(right.attributeMap())) {
+                if (!map.containsKey(e.getKey())) {
+                    map.put(e.getKey(), map.size());
+                    extra.add(e.getValue());
+                }
+            }
+        }
+        this.joinedMap  = Collections.unmodifiableMap(map);
+        this.leftWidth  = left == null ? 0 : left.attributeMap().size();
+        this.rightExtra = extra.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * The light-key join of a non-root node: rows of {@code DL} and
+     * {@code DR} whose λ key is in both and has {@code |D_L[t]| + 1 >
+     * threshold}, exactly the keys the node sends to D.
+     *
+     * @return the view, or null if the inputs cannot be grouped exactly
+     *         (a null λ value, rows of differing schemas, or more than
+     *         2<sup>31</sup> - 1 joined tuples)
+     */
+    public static JoinView light(Collection<Tuple> DL, Collection<Tuple> DR, List<String> lambda, int threshold,
+                                 CancellationToken cancel) {
+        if (DL.isEmpty() || DR.isEmpty() || lambda.isEmpty()) return empty(lambda);
+        IndexedRows L = IndexedRows.of(DL), R = IndexedRows.of(DR);
+        if (L == null || R == null) return null;
+        int[] lk = columns(L, lambda), rk = columns(R, lambda);
+        if (lk == null || rk == null) return null;
+
+        // Rows 0..nR-1 are D_R's and nR.. D_L's; equal λ keys get equal ids
+        int nR = R.size(), nL = L.size();
+        int[] id = keyIds(R, rk, L, lk, cancel);
+        if (id == null) return null;
+        int[] rCount = new int[nR + nL], lCount = new int[nR + nL];
+        for (int r = 0; r < nR; r++) rCount[id[r]]++;
+        for (int l = 0; l < nL; l++) {
+            int k = id[nR + l];
+            if (rCount[k] > 0) lCount[k]++;
+        }
+
+        // Heavy keys go to C; F \ G stays, each light key becoming one group
+        int[] group = new int[nR + nL];
+        Map<List<Object>, Integer> groupOf = new HashMap<>();
+        long size = 0;
+        for (int k = 0; k < group.length; k++) {
+            boolean light = id[k] == k && lCount[k] > 0 && lCount[k] + 1 > threshold;
+            group[k] = light ? groupOf.size() : -1;
+            if (!light) continue;
+            groupOf.put(k < nR ? key(R, k, rk) : key(L, k - nR, lk), group[k]);
+            size += (long) lCount[k] * rCount[k];
+        }
+        if (size > Integer.MAX_VALUE) return null;
+
+        int groups = groupOf.size();
+        int[] leftStart = new int[groups + 1], rightStart = new int[groups + 1];
+        for (int k = 0; k < group.length; k++) {
+            if (group[k] < 0) continue;
+            leftStart[group[k] + 1]  = lCount[k];
+            rightStart[group[k] + 1] = rCount[k];
+        }
+        for (int g = 0; g < groups; g++) {
+            leftStart[g + 1]  += leftStart[g];
+            rightStart[g + 1] += rightStart[g];
+        }
+        IndexedRows right = R.select(byGroup(id, 0, nR, group, rightStart));
+        IndexedRows left  = L.select(byGroup(id, nR, nL, group, leftStart));
+        return new JoinView(lambda, left, right, leftStart, rightStart, groupOf);
+    }
+
+    /**
+     * One id per distinct λ key over the rows of {@code R} then {@code L}:
+     * the position of a row holding that key. Built a column at a time from
+     * dictionary codes, each step pairing the id so far with the next code,
+     * so keys of any width are exact. Null if some λ value is null.
+     */
+    private static int[] keyIds(IndexedRows R, int[] rk, IndexedRows L, int[] lk, CancellationToken cancel) {
+        int nR = R.size(), n = nR + L.size();
+        Dictionary dict = new Dictionary();
+        long[] keys = new long[n];
+        int[] id = null;
+        for (int c = 0; c < rk.length; c++) {
+            for (int i = 0; i < n; i++) {
+                cancel.checkpoint();
+                Object v = i < nR ? R.value(i, rk[c]) : L.value(i - nR, lk[c]);
+                if (v == null) return null;
+                int code = dict.encode(v);
+                keys[i] = id == null ? code : (long) id[i] << 32 | code;
+            }
+            LongMultimap rows = new LongMultimap(keys, n);
+            if (id == null) id = new int[n];
+            for (int i = 0; i < n; i++) id[i] = rows.first(keys[i]);
+        }
+        return id;
+    }
+
+    private static JoinView empty(List<String> lambda) {
+        return new JoinView(lambda, null, null, new int[1], new int[1], Collections.emptyMap());
+    }
+
+    /** Positions of rows {@code from .. from+n-1} whose key has a group, ordered by group (counting sort). */
+    private static int[] byGroup(int[] id, int from, int n, int[] group, int[] start) {
+        int[] fill = Arrays.copyOf(start, start.length - 1);
+        int[] rows = new int[start[start.length - 1]];
+        for (int i = 0; i < n; i++) {
+            int g = group[id[from + i]];
+            if (g >= 0) rows[fill[g]++] = i;
+        }
+        return rows;
+    }
+
+    // ── Set ───────────────────────────────────────────────────────────────────
+
+    @Override
+    public int size() { return offset[offset.length - 1]; }
+
+    /** Joins each light key's D_L rows with its D_R rows as the iteration reaches them. */
+    @Override
+    public Iterator<Tuple> iterator() {
+        IndexedRows joined = rows();
+        return new Iterator<Tuple>() {
+            private int next;
+
+            @Override public boolean hasNext() { return next < joined.size(); }
+
+            @Override
+            public Tuple next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                return joined.get(next++);
+            }
+        };
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (!(o instanceof Tuple)) return false;
+        Tuple t = (Tuple) o;
+        if (!t.getAttributeMap().keySet().equals(joinedMap.keySet())) return false;
+        List<Object> key = new ArrayList<>(lambda.size());
+        for (String a : lambda) key.add(t.getValueByAttribute(a));
+        Integer g = groupOf.get(key);
+        return g != null && anyEqual(left, leftStart[g], leftStart[g + 1], t)
+                         && anyEqual(right, rightStart[g], rightStart[g + 1], t);
+    }
+
+    // ── Questions the parent node asks ────────────────────────────────────────
+
+    /** The joined rows by position; each call returns a new reader. */
+    public IndexedRows rows() { return new JoinedRows(); }
+
+    /** π_attrs(this), from one side's rows when {@code attrs} lie within it. */
+    public Set<Tuple> project(List<String> attrs) {
+        Set<Tuple> out = new HashSet<>();
+        if (left == null) return out;
+        IndexedRows side = side(attrs);
+        if (side == null) side = rows();
+        for (int i = 0; i < side.size(); i++) out.add(side.get(i).projectOn(attrs));
+        return out;
+    }
+
+    /**
+     * Number of tuples of this set per distinct projection onto
+     * {@code attrs}; a row of one side counts once per partner it joins
+     * with, so no joined tuple is built when {@code attrs} lie within a side.
+     */
+    public Map<Tuple, Long> degrees(List<String> attrs) {
+        Map<Tuple, Long> out = new HashMap<>();
+        if (left == null) return out;
+        IndexedRows side = side(attrs);
+        if (side == null) {
+            IndexedRows joined = rows();
+            for (int i = 0; i < joined.size(); i++) out.merge(joined.get(i).projectOn(attrs), 1L, Long::sum);
+            return out;
+        }
+        boolean isLeft = side == left;
+        int[] start = isLeft ? leftStart : rightStart;
+        for (int g = 0; g + 1 < start.length; g++) {
+            long partners = isLeft ? rightSize(g) : leftSize(g);
+            for (int i = start[g]; i < start[g + 1]; i++) out.merge(side.get(i).projectOn(attrs), partners, Long::sum);
+        }
+        return out;
+    }
+
+    /**
+     * Adds {@code outer ⋈ t} to {@code out} for every tuple t of this view
+     * that {@code outer} can join. {@code outer} is tested against each
+     * group's D_L rows and D_R rows separately, and only the pairs of rows
+     * that both pass are joined; when it binds every λ attribute only its
+     * own group is visited.
+     *
+     * @return the rows tested
+     */
+    public long joinWith(Tuple outer, Set<Tuple> out, CancellationToken cancel) {
+        if (left == null) return 0;
+        List<Object> key = new ArrayList<>(lambda.size());
+        for (String a : lambda) {
+            Object v = outer.getValueByAttribute(a);
+            if (v == null) {
+                key = null;      // unbound or null: any group may match
+                break;
+            }
+            key.add(v);
+        }
+        if (key != null) {
+            Integer g = groupOf.get(key);
+            return g == null ? 0 : joinGroup(outer, g, out, cancel);
+        }
+        long probes = 0;
+        for (int g = 0; g + 1 < leftStart.length; g++) probes += joinGroup(outer, g, out, cancel);
+        return probes;
+    }
+
+    // ── Internal ──────────────────────────────────────────────────────────────
+
+    private long joinGroup(Tuple outer, int g, Set<Tuple> out, CancellationToken cancel) {
+        List<Tuple> ls = matching(outer, left, leftStart[g], leftStart[g + 1], cancel);
+        List<Tuple> rs = ls.isEmpty() ? Collections.emptyList()
+                                      : matching(outer, right, rightStart[g], rightStart[g + 1], cancel);
+        for (Tuple l : ls) {
+            for (Tuple r : rs) {
+                cancel.checkpoint();
+                out.add(outer.join(join(l, r)));
+            }
+        }
+        return (long) (leftStart[g + 1] - leftStart[g]) + (ls.isEmpty() ? 0 : rightSize(g));
+    }
+
+    private static List<Tuple> matching(Tuple outer, IndexedRows side, int from, int to, CancellationToken cancel) {
+        List<Tuple> rows = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            cancel.checkpoint();
+            Tuple t = side.get(i);
+            if (outer.canJoin(t)) rows.add(t);
+        }
+        return rows;
+    }
+
+    private Tuple join(Tuple l, Tuple r) {
+        List<Object> vals = new ArrayList<>(joinedMap.size());
+        vals.addAll(l.getValues());
+        for (int i : rightExtra) vals.add(r.getValue(i));
+        return new Tuple(vals, joinedMap);
+    }
+
+    private static boolean anyEqual(IndexedRows side, int from, int to, Tuple t) {
+        Map<String, Integer> map = side.attributeMap();
+        for (int i = from; i < to; i++) {
+            boolean equal = true;
+            for (Map.Entry<String, Integer> e : map.entrySet()) {
+                if (!Objects.equals(side.value(i, e.getValue()), t.getValueByAttribute(e.getKey()))) {
+                    equal = false;
+                    break;
+                }
+            }
+            if (equal) return true;
+        }
+        return false;
+    }
+
+    /** The side whose schema holds all of {@code attrs}, or null. */
+    private IndexedRows side(List<String> attrs) {
+        if (left.attributeMap().keySet().containsAll(attrs))  return left;
+        if (right.attributeMap().keySet().containsAll(attrs)) return right;
+        return null;
+    }
+
+    private int leftSize(int g)  { return leftStart[g + 1] - leftStart[g]; }
+    private int rightSize(int g) { return rightStart[g + 1] - rightStart[g]; }
+
+    /** Column of each λ attribute in {@code rows}, or null if one is missing. */
+    private static int[] columns(IndexedRows rows, List<String> lambda) {
+        int[] cols = new int[lambda.size()];
+        for (int c = 0; c < cols.length; c++) {
+            Integer i = rows.attributeMap().get(lambda.get(c));
+            if (i == null) return null;
+            cols[c] = i;
+        }
+        return cols;
+    }
+
+    /** λ values of row {@code row}, or null if one is null. */
+    private static List<Object> key(IndexedRows rows, int row, int[] cols) {
+        Object[] key = new Object[cols.length];
+        for (int c = 0; c < cols.length; c++) {
+            key[c] = rows.value(row, cols[c]);
+            if (key[c] == null) return null;
+        }
+        return Arrays.asList(key);
+    }
+
+    private static List<Map.Entry<String, Integer>> sortedColumns(Map<String, Integer> map) {
+        List<Map.Entry<String, Integer>> cols = new ArrayList<>(map.entrySet());
+        cols.sort(Map.Entry.comparingByValue());
+        return cols;
+    }
+
+    /**
+     * Joined row i is pair {@code i - offset[g]} of group g, numbered
+     * left-major. Remembers the last group found, as readers mostly move
+     * forward; the guess is checked before use, so it needs no locking.
+     */
+    private final class JoinedRows implements IndexedRows {
+        private int group;
+
+        @Override public int size()                          { return JoinView.this.size(); }
+        @Override public Map<String, Integer> attributeMap() { return joinedMap; }
+
+        @Override
+        public Object value(int row, int column) {
+            int g = groupOf(row);
+            int off = row - offset[g], width = rightSize(g);
+            return column < leftWidth ? left.value(leftStart[g] + off / width, column)
+                                      : right.value(rightStart[g] + off % width, rightExtra[column - leftWidth]);
+        }
+
+        @Override
+        public void appendTo(int row, List<Object> out) {
+            int g = groupOf(row);
+            int off = row - offset[g], width = rightSize(g);
+            int r = rightStart[g] + off % width;
+            left.appendTo(leftStart[g] + off / width, out);
+            for (int i : rightExtra) out.add(right.value(r, i));
+        }
+
+        private int groupOf(int row) {
+            int g = group;
+            if (offset[g] <= row && row < offset[g + 1]) return g;
+            if (g + 2 < offset.length && offset[g + 1] <= row && row < offset[g + 2]) return group = g + 1;
+            // Last group whose first row is at or before row; empty groups do not exist
+            int lo = 0, hi = offset.length - 2;
+            while (lo < hi) {
+                int mid = (lo + hi + 1) >>> 1;
+                if (offset[mid] <= row) lo = mid;
+                else hi = mid - 1;
+            }
+            return group = lo;
+        }
+    }
+}
@@ -1,18 +1,158 @@
 package Algorithms;
 import java.util.*;
+import java.util.function.Supplier;
+import database.MemoryBudget;
 import database.Relation;
+import database.SpillableTupleSet;
 import database.Tuple;
 import tree.*;
+import Algorithms.hash.PackedTupleSet;
+import Algorithms.vector.VectorizedJoin;
 
 public class LoomisWhitneyInstance {
 
     // Input relations: each corresponds to an (n-1)-subset of attributes
     private final Map<String, Relation> relations;
     private final TreeNode queryTree;
+    // Budget for C/D intermediates; null keeps everything in memory as PackedTupleSets
+    private final MemoryBudget budget;
+    // Shared cache of internal-node results; null disables reuse
+    private SubtreeCache subtreeCache;
+    // Batch-at-a-time kernels over dictionary codes instead of per-tuple joins
+    private boolean vectorized = true;
+    // Non-root D kept as a JoinView over the children's light rows
+    private boolean lazyD = true;
+    // Drop dangling leaf rows through per-attribute semijoin filters before recursing
+    private boolean semijoinFilter = true;
+    private SemijoinFilter filter;          // built on first use
+    private Boolean        filterApplies;   // null until decided for this tree
+    // Re-plan the unevaluated part of the tree when a node's size is this far off; 0 disables
+    private double       replanFactor;
+    private PlanFeedback feedback;          // observed subtree sizes, read and recorded; may be null
+    // State of the adaptive run in progress; null / false outside one
+    private Map<TreeNode, Result> completed;      // maximal finished subtrees, kept across re-plans
+    private Map<TreeNode, Long>   observedRows;   // output size of every finished node
+    private boolean               mayReplan;
+    private int                   replans;
+    private TreeNode              executedTree;
+    // Checked by every join loop; stops the query when cancelled or expired
+    private CancellationToken cancellation = new CancellationToken();
+    // Spillable sets handed out by newSet(), released at once if the query stops
+    private final List<SpillableTupleSet> allocated = Collections.synchronizedList(new ArrayList<>());
+    // Per-node metrics hook; null (the default) skips every measurement
+    private ExecutionListener listener;
+    // Nodes finished so far, for the progress report of a stopped query
+    private final List<QueryCancelledException.NodeProgress> progress =
+            Collections.synchronizedList(new ArrayList<>());
 
     public LoomisWhitneyInstance(Map<String, Relation> relations, TreeNode queryTree) {
+        this(relations, queryTree, null);
+    }
+
+    /**
+     * @param budget per-query memory budget; C and D sets that outgrow it spill
+     *               to disk instead of exhausting the heap. May be null.
+     */
+    public LoomisWhitneyInstance(Map<String, Relation> relations, TreeNode queryTree,
+                                 MemoryBudget budget) {
         this.relations = relations;
         this.queryTree = queryTree;
+        this.budget    = budget;
+    }
+
+    /**
+     * Reuse C/D of identical subtrees computed by earlier queries (or earlier
+     * runs of this one) through {@code cache}, and offer new ones to it.
+     */
+    public void setSubtreeCache(SubtreeCache cache) {
+        this.subtreeCache = cache;
+    }
+
+    /**
+     * Selects the node join implementation: the vectorized int-code kernels
+     * (default) or the original tuple-at-a-time loops. Both produce the same
+     * C and D; the vectorized path falls back by itself when it cannot encode
+     * a node's inputs or they have spilled to disk.
+     */
+    public void setVectorized(boolean vectorized) {
+        this.vectorized = vectorized;
+    }
+
+    /**
+     * Keeps the D set of non-root nodes as a {@link JoinView} (default)
+     * instead of joining its light keys eagerly: the parent projects and
+     * counts it from the children's rows, and its join kernels probe the
+     * view group by group, building a joined tuple only when they emit one.
+     * Queries with a memory budget
+     * always materialise D, so it can spill.
+     */
+    public void setLazyD(boolean lazyD) {
+        this.lazyD = lazyD;
+    }
+
+    /**
+     * Filters leaf D sets through a {@link SemijoinFilter} built over all
+     * the query's relations (default), so rows whose join values are
+     * missing from another relation never enter the recursion. Applies
+     * only to trees whose result does not depend on the heavy/light split
+     * (see {@link #splitInsensitive}). Filtered subtrees depend on the whole
+     * query, and their cache keys say so: they are only shared with
+     * queries over the same relations.
+     */
+    public void setSemijoinFilter(boolean enabled) {
+        this.semijoinFilter = enabled;
+        this.filter         = null;
+        this.filterApplies  = null;
+    }
+
+    /**
+     * Compares each finished node's output (its own join's C plus D) with
+     * its estimate: the size {@code feedback} recorded for the same leaves,
+     * else the sum of its children's outputs. When the two differ by more
+     * than {@code factor} either way, {@link #execute()} re-plans the part of
+     * the tree not evaluated yet with {@link QueryTreeBuilder}, keeping the C
+     * and D of every finished subtree. Observed sizes are recorded in
+     * {@code feedback} (may be null) for later plans of the same shape.
+     *
+     * <p>A tree is only re-planned if its result does not depend on its
+     * shape (see {@link #splitInsensitive}), and only into another such
+     * tree, so the result never changes. A factor of 0 (the default) turns
+     * re-planning off; sizes are then still recorded.
+     *
+     * @throws IllegalArgumentException if {@code factor} is neither 0 nor above 1
+     */
+    public void setAdaptive(double factor, PlanFeedback feedback) {
+        if (factor != 0 && !(factor > 1)) {
+            throw new IllegalArgumentException("Re-plan factor must be 0 or above 1, got " + factor);
+        }
+        this.replanFactor = factor;
+        this.feedback     = feedback;
+    }
+
+    /** Times the last {@link #execute()} re-planned its tree. */
+    public int getReplans() { return replans; }
+
+    /**
+     * The tree the last {@link #execute()} finished with: the query tree
+     * itself, or a re-planned copy of it. The query tree is never modified.
+     */
+    public TreeNode getExecutedTree() { return executedTree == null ? queryTree : executedTree; }
+
+    /**
+     * Makes the query stoppable through {@code token}: cancelling it or
+     * passing its deadline ends {@link #execute()} / {@link #evaluate} with a
+     * {@link QueryCancelledException} after releasing all intermediates.
+     */
+    public void setCancellationToken(CancellationToken token) {
+        this.cancellation = token;
+    }
+
+    /**
+     * Reports per-node metrics to {@code listener} (null to detach). Only
+     * runs with a listener take timings, allocation counts or key sets.
+     */
+    public void setExecutionListener(ExecutionListener listener) {
+        this.listener = listener;
     }
 
     /** Line 2: Compute LW bound P = ∏ |R_e|^(1/(n-1)) */
@@ -34,77 +174,418 @@ public class LoomisWhitneyInstance {
 
     /** Line 3: Run recursive LW(u) */
     public Set<Tuple> execute() {
-        Result res = lw(queryTree);
+        progress.clear();
+        replans      = 0;
+        executedTree = null;
+        Set<Tuple> output = stoppable(queryTree, () -> {
+            Result res = replanFactor > 0 ? lwAdaptive() : lw(queryTree);
+
+            // Collect all attributes involved in the query
+            List<String> allAttrs = new ArrayList<>(getContextAttributes(queryTree));
+
+            // Filter the output C to only contain full tuples (with all attributes)
+            PruneEvent event = new PruneEvent();
+            event.begin();
+            Set<Tuple> pruned = TuplePhases.prune(res.getC(), allAttrs, relations.values(), cancellation);
+            if (event.shouldCommit()) {
+                event.candidates = res.getC().size();
+                event.results    = pruned.size();
+                event.relations  = relations.size();
+                event.commit();
+            }
+            res.release();
+            return pruned;
+        });
+        allocated.clear();
+        return output;
+    }
 
-        // Collect all attributes involved in the query
-        List<String> allAttrs = new ArrayList<>(getContextAttributes(queryTree));
+    /**
+     * Evaluates only the subtree rooted at {@code node} (a node of this
+     * instance's query tree) and returns its C and D. Used to materialise
+     * shared subtrees ahead of the queries that need them.
+     */
+    public Result evaluate(TreeNode node) {
+        return stoppable(node, () -> lw(node));
+    }
+
+    /**
+     * Runs LW over a copy of the query tree. Whenever {@link #adapt} finds a
+     * node misestimated, the finished subtrees and the leaves not under one
+     * are merged into a new tree, and LW resumes on it with their results.
+     */
+    private Result lwAdaptive() {
+        TreeNode tree = copy(queryTree);
+        int attrs = getContextAttributes(tree).size();
+        completed    = new IdentityHashMap<>();
+        observedRows = new IdentityHashMap<>();
+        mayReplan    = splitInsensitive(tree, attrs);
+        try {
+            while (true) {
+                try {
+                    return lw(tree);
+                } catch (Replan signal) {
+                    List<QueryTreeBuilder.Input> pool = new ArrayList<>();
+                    collectInputs(tree, pool);
+                    TreeNode next = QueryTreeBuilder.build(pool, feedback);
+                    if (splitInsensitive(next, attrs)) {
+                        tree = next;
+                        replans++;
+                    } else {
+                        reattach(tree);   // build() re-parented the pool's nodes
+                        mayReplan = false;
+                    }
+                }
+            }
+        } finally {
+            executedTree = tree;
+            completed    = null;
+            observedRows = null;
+            mayReplan    = false;
+        }
+    }
+
+    /**
+     * Bookkeeping for a node that just finished: records its output size
+     * {@code rows} and, in an adaptive run, keeps its result in place of
+     * its children's. Throws {@link Replan} if the size is more than the
+     * re-plan factor off its estimate and the rest of the tree can still be
+     * arranged differently.
+     */
+    private Result adapt(TreeNode node, Result result, long rows) {
+        long estimate = completed == null || node.isLeaf() ? rows : estimate(node);
+        if (feedback != null && !node.isLeaf()) feedback.record(leafKeys(node), rows);
+        if (completed == null) return result;
+        if (!node.isLeaf()) {
+            completed.remove(node.leftChild());
+            completed.remove(node.rightChild());
+        }
+        completed.put(node, result);
+        observedRows.put(node, rows);
+        double ratio = Math.max(rows, 1) / (double) Math.max(estimate, 1);
+        if (mayReplan && !node.isRoot() && (ratio > replanFactor || ratio * replanFactor < 1)) {
+            TreeNode top = node;
+            while (!top.isRoot()) top = top.getParent();
+            if (countInputs(top) >= 3) throw new Replan();
+        }
+        return result;
+    }
 
-        // Filter the output C to only contain full tuples (with all attributes)
-        return prune(res.getC(), allAttrs);
+    /** Size expected for {@code n}: observed if finished, else from feedback, else the sum over its children. */
+    private long estimate(TreeNode n) {
+        Long rows = observedRows.get(n);
+        if (rows != null) return rows;
+        if (n.isLeaf()) return relations.get(n.getLabel()).size();
+        long seen = feedback == null ? -1 : feedback.observed(leafKeys(n));
+        return seen >= 0 ? seen : estimate(n.leftChild()) + estimate(n.rightChild());
+    }
+
+    /** The subtrees a re-plan starts from: maximal finished ones, and leaves under none. */
+    private void collectInputs(TreeNode n, List<QueryTreeBuilder.Input> pool) {
+        if (n.isLeaf() || completed.containsKey(n)) {
+            long rows = n.isLeaf() && !completed.containsKey(n) ? relations.get(n.getLabel()).size() : observedRows.get(n);
+            pool.add(new QueryTreeBuilder.Input(n, getContextAttributes(n), rows, new HashSet<>(leafKeys(n))));
+            return;
+        }
+        collectInputs(n.leftChild(), pool);
+        collectInputs(n.rightChild(), pool);
+    }
+
+    private int countInputs(TreeNode n) {
+        if (n.isLeaf() || completed.containsKey(n)) return 1;
+        return countInputs(n.leftChild()) + countInputs(n.rightChild());
+    }
+
+    private List<String> leafKeys(TreeNode n) {
+        List<String> keys = new ArrayList<>();
+        collectLeafKeys(n, keys);
+        return keys;
+    }
+
+    private void collectLeafKeys(TreeNode n, List<String> keys) {
+        if (n.isLeaf()) {
+            Relation r = relations.get(n.getLabel());
+            keys.add(r == null ? n.getLabel() : PlanFeedback.leafKey(r));
+            return;
+        }
+        collectLeafKeys(n.leftChild(), keys);
+        collectLeafKeys(n.rightChild(), keys);
+    }
+
+    private static TreeNode copy(TreeNode n) {
+        TreeNode c = new TreeNode(n.getLabel());
+        if (n.leftChild() != null) c.setLeft(copy(n.leftChild()));
+        if (n.rightChild() != null) c.setRight(copy(n.rightChild()));
+        return c;
+    }
+
+    /** Restores the parent links below {@code n}. */
+    private static void reattach(TreeNode n) {
+        if (n.isLeaf()) return;
+        n.setLeft(n.leftChild());
+        n.setRight(n.rightChild());
+        reattach(n.leftChild());
+        reattach(n.rightChild());
+    }
+
+    /** Unwinds {@link #lw} to re-plan; carries no stack trace. */
+    private static final class Replan extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        Replan() { super(null, null, false, false); }
+    }
+
+    /**
+     * Runs {@code work} over the subtree at {@code node}; if the token stops
+     * it, releases every spillable intermediate and rethrows with a report of
+     * the nodes that finished.
+     */
+    private <T> T stoppable(TreeNode node, Supplier<T> work) {
+        long started = System.nanoTime();
+        try {
+            cancellation.check();
+            return work.get();
+        } catch (QueryCancelledException stop) {
+            synchronized (allocated) {
+                for (SpillableTupleSet s : allocated) s.release();
+                allocated.clear();
+            }
+            List<QueryCancelledException.NodeProgress> done;
+            synchronized (progress) {
+                done = new ArrayList<>(progress);
+            }
+            throw new QueryCancelledException(stop.getReason(), done, countNodes(node),
+                                              System.nanoTime() - started);
+        }
+    }
+
+    /**
+     * Key under which {@code node}'s result is stored in a {@link SubtreeCache}.
+     * Equal keys across instances mean equal C/D sets.
+     */
+    public String cacheKey(TreeNode node) {
+        return node.isLeaf() ? canonicalForm(node) + filterKey() : subtreeKey(node);
     }
 
     /** Recursive LW(u) procedure */
     private Result lw(TreeNode node) {
+        if (completed != null) {
+            Result done = completed.get(node);
+            if (done != null) return done;
+        }
         if (node.isLeaf()) {
+            // Leaf D sets are shareable through the cache: they depend on the relation only
+            String leafKey = subtreeCache == null ? null : canonicalForm(node) + filterKey();
+            if (leafKey != null) {
+                Result cached = subtreeCache.get(leafKey);
+                if (cached != null) return adapt(node, finished(node, cached, true, 0, 0), cached.getD().size());
+            }
+            NodeExecutionEvent event = new NodeExecutionEvent();
+            event.begin();
+            long started = System.nanoTime();
+            long allocStart = listener == null ? 0 : NodeStats.currentThreadAllocatedBytes();
             Relation rel = relations.get(node.getLabel());
-            Set<Tuple> D = new HashSet<>(rel.getTuples());
-            return new Result(new HashSet<>(), D);
+            SemijoinFilter sip = filter();
+            Set<Tuple> D = newSet();
+            for (Tuple t : rel.getTuples()) {
+                cancellation.checkpoint();
+                if (sip == null || sip.accepts(rel, t)) D.add(t);
+            }
+            Result leaf = new Result(newSet(), D);
+            if (event.shouldCommit()) {
+                event.node  = node.getLabel();
+                event.dSize = D.size();
+                event.commit();
+            }
+            Result done = finished(node, leafKey == null ? leaf : admit(leafKey, leaf, started), false, started, allocStart);
+            return adapt(node, done, D.size());
+        }
+
+        cancellation.check();
+
+        String cacheKey = null;
+        long started = 0;
+        if (subtreeCache != null) {
+            cacheKey = subtreeKey(node);
+            Result cached = subtreeCache.get(cacheKey);
+            if (cached != null) {
+                return adapt(node, finished(node, cached, true, 0, 0),
+                             (long) cached.getC().size() + cached.getD().size());
+            }
+            started = System.nanoTime();
         }
 
         Result left  = lw(node.leftChild());
         Result right = lw(node.rightChild());
+        cancellation.check();
+        NodeExecutionEvent event = new NodeExecutionEvent();
+        event.begin();
+        long joinStarted = listener == null ? 0 : System.nanoTime();
+        long allocStart  = listener == null ? 0 : NodeStats.currentThreadAllocatedBytes();
 
         Set<Tuple> C_L = left.getC(), D_L = left.getD();
         Set<Tuple> C_R = right.getC(), D_R = right.getD();
 
         List<String> lambda = getSeparator(node);
+        int threshold = D_R.isEmpty() ? 0 : (int) Math.ceil(getSizeBound() / D_R.size()); // ⌈P / |DR|⌉
 
+        // D = D_L ⋈_{F\G} D_R as a view; the joins below then only build C
+        JoinView view = lazyD && budget == null && !node.isRoot() && !lambda.isEmpty()
+                ? JoinView.light(D_L, D_R, lambda, threshold, cancellation) : null;
+
+        NodeJoin joined = null;
+        if (vectorized && !isSpilled(D_L) && !isSpilled(D_R)) {
+            VectorizedJoin.Output vec = VectorizedJoin.evaluate(D_L, D_R, lambda, node.isRoot(), threshold,
+                                                                view != null, this::newSet, cancellation);
+            if (vec != null) joined = new NodeJoin(vec.C, vec.D, null, null, null, vec.fSize, vec.gSize, vec.probes);
+        }
+        if (joined == null) joined = joinTupleAtATime(node, D_L, D_R, lambda, threshold, view != null);
+        Set<Tuple> C = joined.C, D = view != null ? view : joined.D;
+        long output = (long) C.size() + D.size();   // the node's own join, before C_L and C_R
+        C.addAll(C_L);
+        C.addAll(C_R);
+
+        if (event.shouldCommit()) {
+            event.node       = node.getLabel();
+            event.lambda     = String.join(",", lambda);
+            event.root       = node.isRoot();
+            event.vectorized = joined.F == null;
+            event.dlSize     = D_L.size();
+            event.drSize     = D_R.size();
+            event.fSize      = joined.fSize;
+            event.gSize      = joined.gSize;
+            event.cSize      = C.size();
+            event.dSize      = D.size();
+            event.probes     = joined.probes;
+            event.commit();
+        }
+        if (listener != null) {
+            listener.onNode(new NodeStats(node, lambda, false, joined.F == null,
+                    System.nanoTime() - joinStarted, allocatedSince(allocStart), joined.probes,
+                    D_L.size(), D_R.size(), C_L.size(), C_R.size(), threshold,
+                    joined.fSize, joined.gSize, joined.F, joined.G, joined.light, C, D));
+        }
+
+        // Children's sets have been copied or joined into C and D
+        left.release();
+        right.release();
+        Result result = new Result(C, D);
+        return adapt(node, finished(node, cacheKey == null ? result : admit(cacheKey, result, started), false, 0, 0),
+                     output);
+    }
+
+    /**
+     * Records a node whose result is final. Leaves and cache hits are
+     * reported to the listener here; joined nodes report in {@link #lw}.
+     */
+    private Result finished(TreeNode node, Result result, boolean cached, long started, long allocStart) {
+        if (cached) {
+            NodeExecutionEvent event = new NodeExecutionEvent();
+            if (event.shouldCommit()) {
+                event.node   = node.getLabel();
+                event.root   = node.isRoot();
+                event.cached = true;
+                event.cSize  = result.getC().size();
+                event.dSize  = result.getD().size();
+                event.commit();
+            }
+        }
+        progress.add(new QueryCancelledException.NodeProgress(
+                node.getLabel(), result.getC().size(), result.getD().size()));
+        if (listener != null && (cached || node.isLeaf())) {
+            long nanos = cached ? 0 : System.nanoTime() - started;
+            long bytes = cached ? 0 : allocatedSince(allocStart);
+            listener.onNode(new NodeStats(node, cached, nanos, bytes, result.getC(), result.getD()));
+        }
+        return result;
+    }
+
+    private static long allocatedSince(long allocStart) {
+        long now = NodeStats.currentThreadAllocatedBytes();
+        return now < 0 || allocStart < 0 ? -1 : now - allocStart;
+    }
+
+    private static int countNodes(TreeNode n) {
+        return n == null ? 0 : 1 + countNodes(n.leftChild()) + countNodes(n.rightChild());
+    }
+
+    /** One node's own join output (C without C_L/C_R) with its key-set sizes. */
+    private static final class NodeJoin {
+        final Set<Tuple> C, D;
+        final Set<Tuple> F, G, light; // null on the vectorized path
+        final int        fSize, gSize;
+        final long       probes;
+
+        NodeJoin(Set<Tuple> C, Set<Tuple> D, Set<Tuple> F, Set<Tuple> G, Set<Tuple> light,
+                 int fSize, int gSize, long probes) {
+            this.C = C;
+            this.D = D;
+            this.F = F;
+            this.G = G;
+            this.light  = light;
+            this.fSize  = fSize;
+            this.gSize  = gSize;
+            this.probes = probes;
+        }
+    }
+
+    /**
+     * Node join over Tuple objects: the fallback when the inputs cannot be
+     * dictionary-encoded. Returns the node's own C (without C_L/C_R) and D;
+     * D stays empty with {@code skipLight}, when the caller keeps it as a view.
+     */
+    private NodeJoin joinTupleAtATime(TreeNode node, Set<Tuple> D_L, Set<Tuple> D_R, List<String> lambda,
+                                      int threshold, boolean skipLight) {
         // F = π_λ(D_L) ∩ π_λ(D_R)
-        Set<Tuple> F = project(D_L, lambda);
-        F.retainAll(project(D_R, lambda));
+        Set<Tuple> F = TuplePhases.intersectKeys(D_L, D_R, lambda);
 
+        long probes = 0;
         Set<Tuple> G = new HashSet<>();
         if (D_R.isEmpty()) {
             F.clear(); // F = G = ∅ if |DR| = 0
         } else {
-            double p = getSizeBound();
-            int threshold = (int) Math.ceil(p / D_R.size()); // ⌈P / |DR|⌉
-            
-            for (Tuple t : F) {
-                // Calculate |D_L[t]|: count tuples in D_L that match t on lambda
-                long dl_t_size = 0;
-                for (Tuple dl : D_L) {
-                    if (dl.projectOn(lambda).equals(t)) {
-                        dl_t_size++;
-                    }
-                }
-                
-                if (dl_t_size + 1 <= threshold) {
-                    G.add(t);
-                }
-            }
+            G = TuplePhases.heavyKeys(F, D_L, lambda, threshold, cancellation);
         }
 
-        Set<Tuple> C, D;
+        Set<Tuple> lightKeys = new HashSet<>(F);
+        lightKeys.removeAll(G); //returns a boolean not a set
+
+        Set<Tuple> C = newSet(), D = newSet();
         if (node.isRoot()) {
-            C = join(D_L, D_R);
-            C.addAll(C_L);
-            C.addAll(C_R);
-            D = new HashSet<>();
+            probes += TuplePhases.join(D_L, D_R, C, cancellation);
         } else {
-            C = conditionalJoin(D_L, D_R, G, lambda);
-            C.addAll(C_L);
-            C.addAll(C_R);
- 
-            Set<Tuple> lightKeys = new HashSet<>(F);
-            lightKeys.removeAll(G); //returns a boolean not a set
-            D = conditionalJoin(D_L, D_R, lightKeys, lambda);
+            probes += TuplePhases.conditionalJoin(D_L, D_R, G, lambda, C, cancellation);
+            if (!skipLight) probes += TuplePhases.conditionalJoin(D_L, D_R, lightKeys, lambda, D, cancellation);
         }
 
-        return new Result(C, D);
+        return new NodeJoin(C, D, F, G, lightKeys, F.size(), G.size(), probes);
     }
 
-    // --- Helpers (projection, join, pruning) ---
+    /**
+     * Offers {@code result} to the cache; if it is admitted or already cached,
+     * hands back the shared result instead. Budget-held sets of {@code result}
+     * are then released: the cache either copied them or did not need them.
+     */
+    private Result admit(String key, Result result, long startedNanos) {
+        Result shared = subtreeCache.put(key, result.getC(), result.getD(), System.nanoTime() - startedNanos);
+        if (shared == null) return result;
+        result.release();
+        return shared;
+    }
+
+    // --- Helpers ---
+    private Set<Tuple> newSet() {
+        if (budget == null) return new PackedTupleSet();
+        SpillableTupleSet set = new SpillableTupleSet(budget);
+        allocated.add(set);
+        return set;
+    }
+
+    private static boolean isSpilled(Set<Tuple> s) {
+        return s instanceof SpillableTupleSet && ((SpillableTupleSet) s).isSpilled();
+    }
+
+
     private List<String> getSeparator(TreeNode node) {
         Set<String> leftAttrs = getContextAttributes(node.leftChild());
         Set<String> rightAttrs = getContextAttributes(node.rightChild());
@@ -112,73 +593,76 @@ public class LoomisWhitneyInstance {
         return new ArrayList<>(leftAttrs);
     }
 
-    private Set<String> getContextAttributes(TreeNode n) {
-        if (n == null) return new HashSet<>();
-        if (n.isLeaf()) {
-            Relation r = relations.get(n.getLabel());
-            return r != null ? new HashSet<>(r.getColumns()) : new HashSet<>();
-        }
-        Set<String> attrs = getContextAttributes(n.leftChild());
-        attrs.addAll(getContextAttributes(n.rightChild()));
-        return attrs;
+    /**
+     * Canonical cache key of the subtree at {@code node}: its shape over
+     * (relation, columns, version) leaves, plus λ and the bound P that fixes
+     * the heavy/light threshold.
+     */
+    private String subtreeKey(TreeNode node) {
+        List<String> lambda = getSeparator(node);
+        Collections.sort(lambda);
+        return canonicalForm(node) + "|λ=" + lambda + "|P=" + getSizeBound()
+                + (node.isRoot() ? "|root" : "") + filterKey();
     }
 
-    private Set<Tuple> project(Collection<Tuple> tuples, List<String> attrs) {
-        Set<Tuple> projected = new HashSet<>();
-        if (attrs == null || attrs.isEmpty()) return projected;
-        for (Tuple t : tuples) {
-            projected.add(t.projectOn(attrs));
-        }
-        return projected;
+    /** Cache key suffix naming the relations the semijoin filters were built from; empty without filters. */
+    private String filterKey() {
+        if (!filterApplies()) return "";
+        List<String> leaves = new ArrayList<>();
+        for (Relation r : relations.values()) leaves.add(r.getName() + r.getColumns() + "@" + r.getVersion());
+        Collections.sort(leaves);
+        return "|sip=" + leaves;
     }
 
-    private Set<Tuple> join(Set<Tuple> left, Set<Tuple> right) {
-        Set<Tuple> result = new HashSet<>();
-        for (Tuple l : left) {
-            for (Tuple r : right) {
-                if (l.canJoin(r)) {
-                    result.add(l.join(r));
-                }
-            }
+    /**
+     * The query's semijoin filter, built on first use; null when disabled,
+     * pointless, or unsafe for this tree (see {@link #splitInsensitive}).
+     */
+    private SemijoinFilter filter() {
+        if (!filterApplies()) return null;
+        if (filter == null) filter = SemijoinFilter.build(relations.values(), cancellation);
+        return filter;
+    }
+
+    private boolean filterApplies() {
+        if (filterApplies == null) {
+            filterApplies = semijoinFilter && relations.size() >= 2
+                    && splitInsensitive(queryTree, getContextAttributes(queryTree).size());
         }
-        return result;
+        return filterApplies;
     }
 
-    private Set<Tuple> conditionalJoin(Set<Tuple> left, Set<Tuple> right,
-                                       Set<Tuple> keys, List<String> lambda) {
-        if (keys.isEmpty() || left.isEmpty() || right.isEmpty()) return new HashSet<>();
-        Set<Tuple> result = new HashSet<>();
-        for (Tuple l : left) {
-            if (!keys.contains(l.projectOn(lambda))) continue;
-            for (Tuple r : right) {
-                if (l.canJoin(r)) {
-                    result.add(l.join(r));
-                }
-            }
+    /**
+     * True if every internal node below the root binds all {@code n} query
+     * attributes. Heavy tuples a node puts in C are then full tuples, so the
+     * result does not depend on which keys are heavy; elsewhere a partial C
+     * tuple is dropped by the prune, and shrinking D_R (which moves the
+     * threshold) would change the result.
+     */
+    private boolean splitInsensitive(TreeNode n, int attrs) {
+        if (n == null || n.isLeaf()) return true;
+        if (!n.isRoot() && getContextAttributes(n).size() < attrs) return false;
+        return splitInsensitive(n.leftChild(), attrs) && splitInsensitive(n.rightChild(), attrs);
+    }
+
+    private String canonicalForm(TreeNode n) {
+        if (n.isLeaf()) {
+            Relation r = relations.get(n.getLabel());
+            if (r == null) return n.getLabel();
+            return r.getName() + r.getColumns() + "@" + r.getVersion();
         }
-        return result;
+        return "(" + canonicalForm(n.leftChild()) + "⋈" + canonicalForm(n.rightChild()) + ")";
     }
 
-    private Set<Tuple> prune(Set<Tuple> candidates, List<String> allAttrs) {
-        Set<Tuple> finalResult = new HashSet<>();
-        for (Tuple t : candidates) {
-            if (t.getAttributeMap().keySet().containsAll(allAttrs)) {
-                // Ensure the tuple is valid across all base relations
-                boolean valid = true;
-                for (Relation rel : relations.values()) {
-                    List<String> relCols = rel.getColumns();
-                    Tuple projected = t.projectOn(relCols);
-                    if (!rel.getTuples().contains(projected)) {
-                        valid = false;
-                        break;
-                    }
-                }
-                if (valid) {
-                    finalResult.add(t);
-                }
-            }
+    private Set<String> getContextAttributes(TreeNode n) {
+        if (n == null) return new HashSet<>();
+        if (n.isLeaf()) {
+            Relation r = relations.get(n.getLabel());
+            return r != null ? new HashSet<>(r.getColumns()) : new HashSet<>();
         }
-        return finalResult;
+        Set<String> attrs = getContextAttributes(n.leftChild());
+        attrs.addAll(getContextAttributes(n.rightChild()));
+        return attrs;
     }
 
 }
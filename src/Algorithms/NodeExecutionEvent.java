@@ -0,0 +1,30 @@
+package Algorithms;
+
+import jdk.jfr.*;
+
+/**
+ * JFR event for one LW tree node. The duration covers the node's own work
+ * (building a leaf's D, or the join at an internal node), not its children,
+ * so nested nodes do not double count. Stack traces are off to keep it cheap
+ * enough for always-on recordings.
+ */
+@Name("lw.NodeExecution")
+@Label("LW Node Execution")
+@Category({"Conjunctive Query", "Loomis-Whitney"})
+@Description("Evaluation of one node of the LW query tree")
+@StackTrace(false)
+class NodeExecutionEvent extends Event {
+
+    @Label("Node")           String  node;
+    @Label("Lambda")         String  lambda;
+    @Label("Root")           boolean root;
+    @Label("Cached")         boolean cached;
+    @Label("Vectorized")     boolean vectorized;
+    @Label("|D_L|")          int     dlSize;
+    @Label("|D_R|")          int     drSize;
+    @Label("|F|")            int     fSize;
+    @Label("|G|")            int     gSize;
+    @Label("|C|")            int     cSize;
+    @Label("|D|")            int     dSize;
+    @Label("Probes")         long    probes;
+}
@@ -0,0 +1,98 @@
+package Algorithms;
+
+import database.Tuple;
+import tree.TreeNode;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+
+/**
+ * What one tree node did during an LW run, as reported to an
+ * {@link ExecutionListener}. Leaves only fill in D; nodes served from a
+ * {@link tree.SubtreeCache} only fill in C and D.
+ */
+public final class NodeStats {
+
+    // ── Identification ────────────────────────────────────────────────────────
+    public final TreeNode     node;
+    public final List<String> lambda;        // join attributes (empty for leaves)
+    public final boolean      cached;        // served from the subtree cache, nothing joined
+    public final boolean      vectorized;    // joined by the batch kernels over int codes
+
+    // ── Cost ──────────────────────────────────────────────────────────────────
+    public final long wallNanos;             // this node only, children excluded
+    public final long allocatedBytes;        // heap allocated by this node, -1 if not measurable
+    public final long probes;                // (D_L row, D_R row) candidate pairs examined
+
+    // ── Set sizes ─────────────────────────────────────────────────────────────
+    public final int DL_size, DR_size;       // inputs from child D-sets
+    public final int CL_size, CR_size;       // inputs from child C-sets
+    public final int threshold;              // ⌈P / |D_R|⌉
+    public final int F_size;                 // |π_λ(D_L) ∩ π_λ(D_R)|
+    public final int G_size;                 // keys with |D_L[t]| + 1 <= threshold → C
+    public final int light_size;             // F \ G → D
+    public final int C_size, D_size;         // outputs, C including C_L ∪ C_R
+
+    // ── Sets (read-only views) ────────────────────────────────────────────────
+    /** Key sets; null when the node ran vectorized (keys are never materialised as tuples). */
+    public final Set<Tuple> F, G, light;
+    /** The node's outputs. */
+    public final Set<Tuple> C, D;
+
+    NodeStats(TreeNode node, List<String> lambda, boolean cached, boolean vectorized,
+              long wallNanos, long allocatedBytes, long probes,
+              int DL_size, int DR_size, int CL_size, int CR_size, int threshold,
+              int F_size, int G_size,
+              Set<Tuple> F, Set<Tuple> G, Set<Tuple> light, Set<Tuple> C, Set<Tuple> D) {
+        this.node           = node;
+        this.lambda         = Collections.unmodifiableList(new ArrayList<>(lambda));
+        this.cached         = cached;
+        this.vectorized     = vectorized;
+        this.wallNanos      = wallNanos;
+        this.allocatedBytes = allocatedBytes;
+        this.probes         = probes;
+        this.DL_size = DL_size;  this.DR_size = DR_size;
+        this.CL_size = CL_size;  this.CR_size = CR_size;
+        this.threshold  = threshold;
+        this.F_size     = F_size;
+        this.G_size     = G_size;
+        this.light_size = F_size - G_size;
+        this.C_size     = C.size();
+        this.D_size     = D.size();
+        this.F     = F     == null ? null : Collections.unmodifiableSet(F);
+        this.G     = G     == null ? null : Collections.unmodifiableSet(G);
+        this.light = light == null ? null : Collections.unmodifiableSet(light);
+        this.C     = Collections.unmodifiableSet(C);
+        this.D     = Collections.unmodifiableSet(D);
+    }
+
+    /** Stats of a leaf or cached node: outputs only. */
+    NodeStats(TreeNode node, boolean cached, long wallNanos, long allocatedBytes, Set<Tuple> C, Set<Tuple> D) {
+        this(node, Collections.emptyList(), cached, false, wallNanos, allocatedBytes, 0,
+             0, 0, 0, 0, 0, 0, 0, null, null, null, C, D);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s λ=%s %s%.3f ms alloc=%d B probes=%d |F|=%d |G|=%d |F\\G|=%d |C|=%d |D|=%d",
+                node.getLabel(), lambda, cached ? "cached " : "", wallNanos / 1e6, allocatedBytes,
+                probes, F_size, G_size, light_size, C_size, D_size);
+    }
+
+    // ── Allocation counter ────────────────────────────────────────────────────
+
+    private static final com.sun.management.ThreadMXBean THREADS = threadBean();
+
+    private static com.sun.management.ThreadMXBean threadBean() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) return null;
+        com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) bean;
+        return hotspot.isThreadAllocatedMemorySupported() && hotspot.isThreadAllocatedMemoryEnabled()
+               ? hotspot : null;
+    }
+
+    /** Bytes allocated so far by the calling thread, or -1 if the JVM cannot tell. */
+    static long currentThreadAllocatedBytes() {
+        return THREADS == null ? -1 : THREADS.getCurrentThreadAllocatedBytes();
+    }
+}
@@ -0,0 +1,16 @@
+package Algorithms;
+
+import jdk.jfr.*;
+
+/** JFR event for the final prune of C against the base relations. */
+@Name("lw.Prune")
+@Label("LW Prune")
+@Category({"Conjunctive Query", "Loomis-Whitney"})
+@Description("Filtering the root's C down to full tuples present in every relation")
+@StackTrace(false)
+class PruneEvent extends Event {
+
+    @Label("Candidates")  int candidates;
+    @Label("Results")     int results;
+    @Label("Relations")   int relations;
+}
@@ -0,0 +1,69 @@
+package Algorithms;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Thrown by {@link LoomisWhitneyInstance} when its {@link CancellationToken}
+ * stops the query. By the time it reaches the caller the query's
+ * intermediates have been released, and it carries how far evaluation got.
+ */
+public class QueryCancelledException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    /** |C| and |D| of one tree node that finished before the stop. */
+    public static final class NodeProgress {
+        public final String label;
+        public final long   cSize;
+        public final long   dSize;
+
+        public NodeProgress(String label, long cSize, long dSize) {
+            this.label = label;
+            this.cSize = cSize;
+            this.dSize = dSize;
+        }
+
+        @Override
+        public String toString() { return label + " |C|=" + cSize + " |D|=" + dSize; }
+    }
+
+    private final CancellationToken.Reason reason;
+    private final List<NodeProgress>       completed;
+    private final int                      totalNodes;
+    private final long                     elapsedNanos;
+
+    QueryCancelledException(CancellationToken.Reason reason) {
+        this(reason, Collections.emptyList(), 0, 0);
+    }
+
+    QueryCancelledException(CancellationToken.Reason reason, List<NodeProgress> completed,
+                            int totalNodes, long elapsedNanos) {
+        super(describe(reason, completed.size(), totalNodes, elapsedNanos));
+        this.reason       = reason;
+        this.completed    = Collections.unmodifiableList(completed);
+        this.totalNodes   = totalNodes;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public CancellationToken.Reason getReason() { return reason; }
+
+    /** Nodes that finished, in completion order (children before parents). */
+    public List<NodeProgress> getCompletedNodes() { return completed; }
+
+    public int  getTotalNodes()   { return totalNodes; }
+    public long getElapsedNanos() { return elapsedNanos; }
+
+    /** Multi-line report: the summary followed by one line per finished node. */
+    public String progressReport() {
+        StringBuilder sb = new StringBuilder(getMessage());
+        for (NodeProgress p : completed) sb.append("\n  ").append(p);
+        return sb.toString();
+    }
+
+    private static String describe(CancellationToken.Reason reason, int done, int total, long nanos) {
+        String what = reason == CancellationToken.Reason.TIMED_OUT ? "Query timed out" : "Query cancelled";
+        if (total == 0) return what;
+        return String.format("%s after %.1f ms: %d of %d tree nodes finished", what, nanos / 1e6, done, total);
+    }
+}
@@ -0,0 +1,116 @@
+package Algorithms;
+
+import Algorithms.hash.BloomFilter;
+import database.Relation;
+import database.Tuple;
+
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Sideways information passing for one query: for every join attribute
+ * (one held by two or more relations), the values that occur in all of
+ * those relations. A row whose value for such an attribute is missing from
+ * some other relation can never reach the output, so leaf D sets drop it
+ * before the recursion starts.
+ *
+ * <p>Each attribute's filter is built with one scan per relation holding
+ * it, smallest relation first, each scan keeping only values the filter so
+ * far accepts. While the smallest relation has at most
+ * {@link #EXACT_LIMIT} rows the filter is an exact value set (a semijoin);
+ * above that it is a chain of {@link BloomFilter}s, each sized to the
+ * values that passed the previous one. Either way no row that joins is
+ * ever dropped; a Bloom filter only keeps a few dangling ones.
+ *
+ * <p>Null values are never filtered: in the tuple model null joins with
+ * anything, so a relation holding a null in a column does not narrow that
+ * attribute's filter either.
+ */
+public final class SemijoinFilter {
+
+    /** Largest smallest-relation size filtered with an exact value set. */
+    public static final int EXACT_LIMIT = 1 << 16;
+
+    private final Map<String, Predicate<Object>> filters;   // join attribute → accepts value
+
+    private SemijoinFilter(Map<String, Predicate<Object>> filters) {
+        this.filters = filters;
+    }
+
+    /** Builds the filters of every attribute that two or more of {@code relations} share. */
+    public static SemijoinFilter build(Collection<Relation> relations, CancellationToken cancel) {
+        Map<String, List<Relation>> holders = new LinkedHashMap<>();
+        for (Relation r : relations) {
+            for (String col : new LinkedHashSet<>(r.getColumns())) {
+                holders.computeIfAbsent(col, c -> new ArrayList<>()).add(r);
+            }
+        }
+        Map<String, Predicate<Object>> filters = new HashMap<>();
+        for (Map.Entry<String, List<Relation>> e : holders.entrySet()) {
+            if (e.getValue().size() < 2) continue;
+            List<Relation> rels = new ArrayList<>(e.getValue());
+            rels.sort(Comparator.comparingInt(Relation::size));
+            Predicate<Object> f = rels.get(0).size() <= EXACT_LIMIT
+                    ? exact(e.getKey(), rels, cancel) : bloom(e.getKey(), rels, cancel);
+            if (f != null) filters.put(e.getKey(), f);
+        }
+        return new SemijoinFilter(filters);
+    }
+
+    /** True if no filter rules {@code row} of {@code rel} out. */
+    public boolean accepts(Relation rel, Tuple row) {
+        List<String> cols = rel.getColumns();
+        for (int c = 0; c < cols.size(); c++) {
+            Predicate<Object> f = filters.get(cols.get(c));
+            Object v = row.getValue(c);
+            if (f != null && v != null && !f.test(v)) return false;
+        }
+        return true;
+    }
+
+    /** Attributes that have a filter. */
+    public Set<String> attributes() { return Collections.unmodifiableSet(filters.keySet()); }
+
+    // ── Construction ──────────────────────────────────────────────────────────
+
+    private static Predicate<Object> exact(String attr, List<Relation> rels, CancellationToken cancel) {
+        Set<Object> values = null;   // null: no relation has narrowed the attribute yet
+        for (Relation r : rels) {
+            Set<Object> kept = new HashSet<>();
+            Set<Object> current = values;
+            if (scan(r, attr, cancel, current == null ? v -> true : current::contains, kept::add)) values = kept;
+        }
+        return values == null ? null : values::contains;
+    }
+
+    private static Predicate<Object> bloom(String attr, List<Relation> rels, CancellationToken cancel) {
+        BloomFilter filter = null;
+        for (Relation r : rels) {
+            // Values of r the filter so far accepts: a superset of the intersection, at most |r| of them
+            List<Object> passed = new ArrayList<>();
+            BloomFilter current = filter;
+            if (!scan(r, attr, cancel, current == null ? v -> true : current::mightContain, passed::add)) continue;
+            filter = new BloomFilter(passed.size());
+            for (Object v : passed) filter.add(v);
+        }
+        return filter == null ? null : filter::mightContain;
+    }
+
+    /**
+     * Passes the values of {@code attr} in {@code r} that {@code keep}
+     * accepts to {@code out}. Returns false if the column holds a null,
+     * which joins with every value: then {@code r} narrows nothing.
+     */
+    private static boolean scan(Relation r, String attr, CancellationToken cancel,
+                                Predicate<Object> keep, Consumer<Object> out) {
+        int idx = r.columnIndex(attr);
+        for (Tuple t : r.getTuples()) {
+            cancel.checkpoint();
+            Object v = t.getValue(idx);
+            if (v == null) return false;
+            if (keep.test(v)) out.accept(v);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,145 @@
+package Algorithms;
+
+import Algorithms.hash.PackedTupleSet;
+import database.Relation;
+import database.Tuple;
+
+import java.util.*;
+
+/**
+ * The tuple-at-a-time phases of one LW node, in the order the node runs
+ * them: project, intersect into F, split F by degree into G and F\G, join,
+ * and finally prune at the root. {@link LoomisWhitneyInstance} composes
+ * them; they are public so each phase can be benchmarked on its own.
+ */
+public final class TuplePhases {
+
+    private TuplePhases() { }
+
+    /** π_attrs(tuples); empty when {@code attrs} is empty. */
+    public static Set<Tuple> project(Collection<Tuple> tuples, List<String> attrs) {
+        Set<Tuple> projected = new HashSet<>();
+        if (attrs == null || attrs.isEmpty()) return projected;
+        if (tuples instanceof JoinView) return ((JoinView) tuples).project(attrs);
+        for (Tuple t : tuples) {
+            projected.add(t.projectOn(attrs));
+        }
+        return projected;
+    }
+
+    /** F = π_λ(D_L) ∩ π_λ(D_R). */
+    public static Set<Tuple> intersectKeys(Set<Tuple> DL, Set<Tuple> DR, List<String> lambda) {
+        Set<Tuple> F = project(DL, lambda);
+        F.retainAll(project(DR, lambda));
+        return F;
+    }
+
+    /**
+     * G = {t ∈ F : |D_L[t]| + 1 <= threshold}, counting |D_L[t]| with a scan
+     * of D_L per key. A {@link JoinView} D_L counts all keys in one pass
+     * over its grouped rows instead.
+     */
+    public static Set<Tuple> heavyKeys(Set<Tuple> F, Set<Tuple> DL, List<String> lambda, int threshold,
+                                       CancellationToken cancel) {
+        Set<Tuple> G = new HashSet<>();
+        if (DL instanceof JoinView) {
+            Map<Tuple, Long> degree = ((JoinView) DL).degrees(lambda);
+            for (Tuple t : F) {
+                cancel.checkpoint();
+                if (degree.getOrDefault(t, 0L) + 1 <= threshold) G.add(t);
+            }
+            return G;
+        }
+        for (Tuple t : F) {
+            // Calculate |D_L[t]|: count tuples in D_L that match t on lambda
+            long dl_t_size = 0;
+            for (Tuple dl : DL) {
+                cancel.checkpoint();
+                if (dl.projectOn(lambda).equals(t)) {
+                    dl_t_size++;
+                }
+            }
+
+            if (dl_t_size + 1 <= threshold) {
+                G.add(t);
+            }
+        }
+        return G;
+    }
+
+    /**
+     * Adds every joinable (l, r) pair to {@code out}; returns the pairs
+     * examined. A {@link JoinView} on either side is read without storing
+     * its joined tuples: the outer loop streams it, and an inner view is
+     * probed group by group (see {@link JoinView#joinWith}).
+     */
+    public static long join(Set<Tuple> left, Set<Tuple> right, Set<Tuple> out, CancellationToken cancel) {
+        long probes = 0;
+        for (Tuple l : left) {
+            probes += probe(l, right, out, cancel);
+        }
+        return probes;
+    }
+
+    /** As {@link #join}, restricted to left tuples whose λ-projection is in {@code keys}. */
+    public static long conditionalJoin(Set<Tuple> left, Set<Tuple> right, Set<Tuple> keys,
+                                       List<String> lambda, Set<Tuple> out, CancellationToken cancel) {
+        if (keys.isEmpty() || left.isEmpty() || right.isEmpty()) return 0;
+        long probes = 0;
+        for (Tuple l : left) {
+            if (!keys.contains(l.projectOn(lambda))) continue;
+            probes += probe(l, right, out, cancel);
+        }
+        return probes;
+    }
+
+    /** Joins {@code l} with every tuple of {@code right} it can join. */
+    private static long probe(Tuple l, Set<Tuple> right, Set<Tuple> out, CancellationToken cancel) {
+        if (right instanceof JoinView) return ((JoinView) right).joinWith(l, out, cancel);
+        long probes = 0;
+        for (Tuple r : right) {
+            cancel.checkpoint();
+            probes++;
+            if (l.canJoin(r)) {
+                out.add(l.join(r));
+            }
+        }
+        return probes;
+    }
+
+    /**
+     * Keeps the candidates that bind every attribute in {@code allAttrs} and
+     * whose projection onto each relation is one of its rows. Each
+     * relation's rows are packed into a set once, so a check is one probe
+     * rather than a scan of the relation.
+     */
+    public static Set<Tuple> prune(Set<Tuple> candidates, List<String> allAttrs,
+                                   Collection<Relation> relations, CancellationToken cancel) {
+        Set<Tuple> finalResult = new HashSet<>();
+        if (candidates.isEmpty()) return finalResult;
+        Map<Relation, Set<Tuple>> rows = new IdentityHashMap<>();
+        for (Relation rel : relations) {
+            cancel.checkpoint();
+            rows.put(rel, new PackedTupleSet(rel.getTuples()));
+        }
+        for (Tuple t : candidates) {
+            cancel.checkpoint();
+            if (t.getAttributeMap().keySet().containsAll(allAttrs)) {
+                // Ensure the tuple is valid across all base relations
+                boolean valid = true;
+                for (Relation rel : relations) {
+                    List<String> relCols = rel.getColumns();
+                    Tuple projected = t.projectOn(relCols);
+                    if (!rows.get(rel).contains(projected)) {
+                        valid = false;
+                        break;
+                    }
+                }
+                if (valid) {
+                    finalResult.add(t);
+                }
+            }
+        }
+        return finalResult;
+    }
+}
@@ -0,0 +1,95 @@
+package Algorithms.bitmap;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/** Sparse container: a sorted array of at most {@link #ARRAY_MAX} values. */
+final class ArrayContainer extends Container {
+
+    char[] content;
+    int    cardinality;
+
+    ArrayContainer() { this(new char[4], 0); }
+
+    ArrayContainer(char[] content, int cardinality) {
+        this.content     = content;
+        this.cardinality = cardinality;
+    }
+
+    @Override
+    Container add(char x) {
+        int pos = Arrays.binarySearch(content, 0, cardinality, x);
+        if (pos >= 0) return this;
+        if (cardinality >= ARRAY_MAX) return toBitmap().add(x);
+        int ins = -pos - 1;
+        if (cardinality == content.length) content = Arrays.copyOf(content, Math.min(ARRAY_MAX, cardinality * 2));
+        System.arraycopy(content, ins, content, ins + 1, cardinality - ins);
+        content[ins] = x;
+        cardinality++;
+        return this;
+    }
+
+    @Override
+    boolean contains(char x) {
+        return Arrays.binarySearch(content, 0, cardinality, x) >= 0;
+    }
+
+    @Override
+    int cardinality() { return cardinality; }
+
+    @Override
+    Container and(Container other) {
+        char[] out = new char[Math.min(cardinality, other.cardinality())];
+        int k = 0;
+        if (other instanceof ArrayContainer) {
+            ArrayContainer o = (ArrayContainer) other;
+            int i = 0, j = 0;
+            while (i < cardinality && j < o.cardinality) {
+                char a = content[i], b = o.content[j];
+                if (a < b)      i++;
+                else if (a > b) j++;
+                else { out[k++] = a; i++; j++; }
+            }
+        } else {
+            for (int i = 0; i < cardinality; i++) {
+                if (other.contains(content[i])) out[k++] = content[i];
+            }
+        }
+        return new ArrayContainer(out, k);
+    }
+
+    @Override
+    Container andNot(Container other) {
+        char[] out = new char[cardinality];
+        int k = 0;
+        if (other instanceof ArrayContainer) {
+            ArrayContainer o = (ArrayContainer) other;
+            int j = 0;
+            for (int i = 0; i < cardinality; i++) {
+                char a = content[i];
+                while (j < o.cardinality && o.content[j] < a) j++;
+                if (j >= o.cardinality || o.content[j] != a) out[k++] = a;
+            }
+        } else {
+            for (int i = 0; i < cardinality; i++) {
+                if (!other.contains(content[i])) out[k++] = content[i];
+            }
+        }
+        return new ArrayContainer(out, k);
+    }
+
+    @Override
+    void forEach(int high, IntConsumer action) {
+        for (int i = 0; i < cardinality; i++) action.accept(high | content[i]);
+    }
+
+    BitmapContainer toBitmap() {
+        BitmapContainer b = new BitmapContainer();
+        for (int i = 0; i < cardinality; i++) {
+            char x = content[i];
+            b.words[x >>> 6] |= 1L << x;
+        }
+        b.cardinality = cardinality;
+        return b;
+    }
+}
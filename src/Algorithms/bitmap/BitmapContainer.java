@@ -0,0 +1,96 @@
+package Algorithms.bitmap;
+
+import java.util.function.IntConsumer;
+
+/** Dense container: 1024 words covering all 65536 values of a chunk. */
+final class BitmapContainer extends Container {
+
+    final long[] words = new long[1024];
+    int          cardinality;
+
+    @Override
+    Container add(char x) {
+        long before = words[x >>> 6];
+        long after  = before | (1L << x);
+        words[x >>> 6] = after;
+        if (before != after) cardinality++;
+        return this;
+    }
+
+    @Override
+    boolean contains(char x) {
+        return (words[x >>> 6] & (1L << x)) != 0;
+    }
+
+    @Override
+    int cardinality() { return cardinality; }
+
+    @Override
+    Container and(Container other) {
+        if (other instanceof ArrayContainer) return other.and(this);
+        BitmapContainer o = (BitmapContainer) other;
+        BitmapContainer out = new BitmapContainer();
+        int card = 0;
+        for (int i = 0; i < 1024; i++) {
+            long w = words[i] & o.words[i];
+            out.words[i] = w;
+            card += Long.bitCount(w);
+        }
+        out.cardinality = card;
+        return out.shrink();
+    }
+
+    @Override
+    Container andNot(Container other) {
+        BitmapContainer out = new BitmapContainer();
+        if (other instanceof ArrayContainer) {
+            ArrayContainer o = (ArrayContainer) other;
+            System.arraycopy(words, 0, out.words, 0, 1024);
+            out.cardinality = cardinality;
+            for (int i = 0; i < o.cardinality; i++) {
+                char x = o.content[i];
+                long bit = 1L << x;
+                if ((out.words[x >>> 6] & bit) != 0) {
+                    out.words[x >>> 6] &= ~bit;
+                    out.cardinality--;
+                }
+            }
+        } else {
+            BitmapContainer o = (BitmapContainer) other;
+            int card = 0;
+            for (int i = 0; i < 1024; i++) {
+                long w = words[i] & ~o.words[i];
+                out.words[i] = w;
+                card += Long.bitCount(w);
+            }
+            out.cardinality = card;
+        }
+        return out.shrink();
+    }
+
+    @Override
+    void forEach(int high, IntConsumer action) {
+        for (int i = 0; i < 1024; i++) {
+            long w = words[i];
+            while (w != 0) {
+                action.accept(high | (i << 6) | Long.numberOfTrailingZeros(w));
+                w &= w - 1;
+            }
+        }
+    }
+
+    /** Converts to an array container when few enough values remain. */
+    Container shrink() {
+        if (cardinality > ARRAY_MAX) return this;
+        char[] content = new char[cardinality];
+        int k = 0;
+        for (int i = 0; i < 1024; i++) {
+            long w = words[i];
+            while (w != 0) {
+                content[k++] = (char) ((i << 6) | Long.numberOfTrailingZeros(w));
+                w &= w - 1;
+            }
+        }
+        return new ArrayContainer(content, cardinality);
+    }
+}
@@ -0,0 +1,27 @@
+package Algorithms.bitmap;
+
+import java.util.function.IntConsumer;
+
+/**
+ * Set of 16-bit values (the low half of an int) inside one Roaring chunk.
+ * Operations may return a container of a different kind, or the receiver
+ * itself, so callers always keep the returned reference.
+ */
+abstract class Container {
+
+    /** Containers holding more values than this are stored as bitmaps. */
+    static final int ARRAY_MAX = 4096;
+
+    abstract Container add(char x);
+
+    abstract boolean contains(char x);
+
+    abstract int cardinality();
+
+    abstract Container and(Container other);
+
+    abstract Container andNot(Container other);
+
+    /** Calls {@code action} with {@code high | value} for each value, ascending. */
+    abstract void forEach(int high, IntConsumer action);
+}
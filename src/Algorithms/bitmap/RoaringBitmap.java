@@ -0,0 +1,151 @@
+package Algorithms.bitmap;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Compressed set of non-negative ints in the Roaring layout: values are
+ * split by their high 16 bits into chunks, and each chunk is held in an
+ * {@link ArrayContainer} (sorted values, when sparse) or a
+ * {@link BitmapContainer} (1024 words, when dense).
+ *
+ * <p>Intersection and difference work chunk by chunk and, between two dense
+ * chunks, word by word, so set algebra over dictionary codes costs a few
+ * instructions per 64 values instead of one hash probe per value.
+ *
+ * <p>Results of {@link #and} and {@link #andNot} may share containers with
+ * their inputs; treat them as read-only.
+ */
+public final class RoaringBitmap {
+
+    private char[]      keys       = new char[4];
+    private Container[] containers = new Container[4];
+    private int         size;   // number of chunks in use
+
+    // ── Construction ──────────────────────────────────────────────────────────
+
+    /**
+     * Bulk-builds the set of {@code codes[0..n)}. Intended for dense
+     * dictionary codes: a flat bitset over {@code [0, max]} is filled first
+     * and then cut into containers.
+     */
+    public static RoaringBitmap fromCodes(int[] codes, int n) {
+        int max = -1;
+        for (int i = 0; i < n; i++) max = Math.max(max, codes[i]);
+        if (max < 0) return new RoaringBitmap();
+        long[] bits = new long[(max >>> 6) + 1];
+        for (int i = 0; i < n; i++) bits[codes[i] >>> 6] |= 1L << codes[i];
+        return fromWords(bits);
+    }
+
+    private static RoaringBitmap fromWords(long[] bits) {
+        RoaringBitmap rb = new RoaringBitmap();
+        for (int chunk = 0; chunk * 1024 < bits.length; chunk++) {
+            BitmapContainer c = new BitmapContainer();
+            int base = chunk * 1024;
+            int len  = Math.min(1024, bits.length - base);
+            System.arraycopy(bits, base, c.words, 0, len);
+            int card = 0;
+            for (int i = 0; i < len; i++) card += Long.bitCount(c.words[i]);
+            if (card == 0) continue;
+            c.cardinality = card;
+            rb.append((char) chunk, c.shrink());
+        }
+        return rb;
+    }
+
+    public void add(int x) {
+        char high = (char) (x >>> 16);
+        int i = Arrays.binarySearch(keys, 0, size, high);
+        if (i >= 0) {
+            containers[i] = containers[i].add((char) x);
+        } else {
+            insertAt(-i - 1, high, new ArrayContainer().add((char) x));
+        }
+    }
+
+    // ── Queries ───────────────────────────────────────────────────────────────
+
+    public boolean contains(int x) {
+        int i = Arrays.binarySearch(keys, 0, size, (char) (x >>> 16));
+        return i >= 0 && containers[i].contains((char) x);
+    }
+
+    public int cardinality() {
+        int n = 0;
+        for (int i = 0; i < size; i++) n += containers[i].cardinality();
+        return n;
+    }
+
+    public boolean isEmpty() { return size == 0; }
+
+    /** Calls {@code action} for every value in ascending order. */
+    public void forEach(IntConsumer action) {
+        for (int i = 0; i < size; i++) containers[i].forEach(keys[i] << 16, action);
+    }
+
+    public int[] toArray() {
+        int[] out = new int[cardinality()];
+        int[] k = {0};
+        forEach(v -> out[k[0]++] = v);
+        return out;
+    }
+
+    // ── Set algebra ───────────────────────────────────────────────────────────
+
+    /** {@code a ∩ b} */
+    public static RoaringBitmap and(RoaringBitmap a, RoaringBitmap b) {
+        RoaringBitmap out = new RoaringBitmap();
+        int i = 0, j = 0;
+        while (i < a.size && j < b.size) {
+            char ka = a.keys[i], kb = b.keys[j];
+            if (ka < kb)      i++;
+            else if (ka > kb) j++;
+            else {
+                Container c = a.containers[i].and(b.containers[j]);
+                if (c.cardinality() > 0) out.append(ka, c);
+                i++;
+                j++;
+            }
+        }
+        return out;
+    }
+
+    /** {@code a \ b} */
+    public static RoaringBitmap andNot(RoaringBitmap a, RoaringBitmap b) {
+        RoaringBitmap out = new RoaringBitmap();
+        int j = 0;
+        for (int i = 0; i < a.size; i++) {
+            char ka = a.keys[i];
+            while (j < b.size && b.keys[j] < ka) j++;
+            Container c = (j < b.size && b.keys[j] == ka)
+                        ? a.containers[i].andNot(b.containers[j])
+                        : a.containers[i];
+            if (c.cardinality() > 0) out.append(ka, c);
+        }
+        return out;
+    }
+
+    @Override
+    public String toString() {
+        return "RoaringBitmap{cardinality=" + cardinality() + ", chunks=" + size + "}";
+    }
+
+    // ── Internal ──────────────────────────────────────────────────────────────
+
+    private void append(char key, Container c) {
+        insertAt(size, key, c);
+    }
+
+    private void insertAt(int pos, char key, Container c) {
+        if (size == keys.length) {
+            keys       = Arrays.copyOf(keys, size * 2);
+            containers = Arrays.copyOf(containers, size * 2);
+        }
+        System.arraycopy(keys, pos, keys, pos + 1, size - pos);
+        System.arraycopy(containers, pos, containers, pos + 1, size - pos);
+        keys[pos]       = key;
+        containers[pos] = c;
+        size++;
+    }
+}
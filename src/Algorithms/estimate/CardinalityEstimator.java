@@ -0,0 +1,358 @@
+package Algorithms.estimate;
+
+import database.Relation;
+import database.Tuple;
+import tree.TreeNode;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Sampling-based estimates of join sizes, in the style of wander join.
+ *
+ * <p>A <i>walk</i> over a set of relations samples one tuple uniformly from
+ * the first relation, then repeatedly picks a uniformly random tuple of the
+ * next relation among those agreeing with everything bound so far (found
+ * through a hash index on exactly those attributes). If the walk completes,
+ * the product of the choice counts is an unbiased estimate of the join size;
+ * a walk that dead-ends contributes 0. Averaging many walks gives the
+ * estimate and, through the central limit theorem, a 95% confidence interval.
+ *
+ * <p>{@link #estimateNodes} applies the LW heavy/light split to the walks:
+ * a walk counts towards a node's D only if its λ key is light, judged by
+ * the key's degree in the left child and the threshold {@code ⌈P / |D_R|⌉}.
+ * The children's D sets are approximated by their subtrees' full joins,
+ * which is exact for leaf children.
+ *
+ * <p>Indexes are built lazily, once per (stored relation, bound column
+ * positions) pair, and shared by all estimates made by one instance. They
+ * are keyed on the stored data rather than the query's aliases, so the
+ * occurrences of a self-joined relation ({@code E(a,b), E(b,c)}) share one
+ * row list and every index one of them needs.
+ */
+public class CardinalityEstimator {
+
+    /** Point estimate with a 95% confidence interval. */
+    public static class Estimate {
+        public final double value;
+        public final double low, high;
+        public final long   walks;      // walks performed
+        public final long   completed;  // walks that reached the last relation
+
+        Estimate(double value, double low, double high, long walks, long completed) {
+            this.value     = value;
+            this.low       = low;
+            this.high      = high;
+            this.walks     = walks;
+            this.completed = completed;
+        }
+
+        /** Half-width of the interval relative to the estimate (∞ for a zero estimate). */
+        public double relativeError() {
+            return value == 0 ? Double.POSITIVE_INFINITY : (high - value) / value;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%.1f [%.1f, %.1f] (%d walks, %d completed)",
+                                 value, low, high, walks, completed);
+        }
+    }
+
+    private static final double Z_95      = 1.96;
+    private static final int    MIN_WALKS = 1000;
+    private static final int    CHECK_EVERY = 64;  // walks between clock reads
+    private static final int    DEGREE_WALKS = 64; // per λ key of an internal left child
+    private static final int    SIZE_WALKS   = 4096; // for |D_R| of an internal right child
+
+    private final Map<String, Relation> relations;
+    private final TreeNode              queryTree;
+    private final Random                rng;
+    private final Map<String, List<Tuple>>                    distinctRows = new HashMap<>();  // by storage key
+    private final Map<String, Map<List<Object>, List<Tuple>>> indexes      = new HashMap<>();  // by storage key + positions
+
+    public CardinalityEstimator(Map<String, Relation> relations, TreeNode queryTree, long seed) {
+        this.relations = relations;
+        this.queryTree = queryTree;
+        this.rng       = new Random(seed);
+    }
+
+    // ── Public API ────────────────────────────────────────────────────────────
+
+    /** Estimate of |Q(D)|, the full join of all relations, within {@code timeBudgetMillis}. */
+    public Estimate estimateOutput(long timeBudgetMillis) {
+        return sample(leaves(queryTree), Long.MAX_VALUE, 0, deadline(timeBudgetMillis));
+    }
+
+    /**
+     * Estimated |D| of every internal node: its subtree's join restricted to
+     * λ keys that are light at that node (see the class comment). The root
+     * sends everything to C, so its estimate is 0. The time budget is split
+     * evenly.
+     */
+    public Map<TreeNode, Estimate> estimateNodes(long timeBudgetMillis) {
+        List<TreeNode> internal = new ArrayList<>();
+        collectInternal(queryTree, internal);
+        Map<TreeNode, Estimate> out = new LinkedHashMap<>();
+        long share = Math.max(1, timeBudgetMillis / Math.max(1, internal.size()));
+        for (TreeNode n : internal) {
+            out.put(n, n.isRoot() ? new Estimate(0, 0, 0, 0, 0) : estimateD(n, deadline(share)));
+        }
+        return out;
+    }
+
+    /**
+     * Estimated join size of every internal node's subtree, which bounds the
+     * |C| + |D| that node can produce. The time budget is split evenly.
+     */
+    public Map<TreeNode, Estimate> estimateSubtrees(long timeBudgetMillis) {
+        List<TreeNode> internal = new ArrayList<>();
+        collectInternal(queryTree, internal);
+        Map<TreeNode, Estimate> out = new LinkedHashMap<>();
+        long share = Math.max(1, timeBudgetMillis / Math.max(1, internal.size()));
+        for (TreeNode n : internal) out.put(n, sample(leaves(n), Long.MAX_VALUE, 0, deadline(share)));
+        return out;
+    }
+
+    /**
+     * Approximate |Q(D)| for dashboards: samples until the 95% interval is
+     * within {@code relativeError} of the estimate (e.g. 0.05 for ±5%) or the
+     * time budget runs out, whichever comes first.
+     */
+    public Estimate approximateCount(double relativeError, long timeBudgetMillis) {
+        return sample(leaves(queryTree), Long.MAX_VALUE, relativeError, deadline(timeBudgetMillis));
+    }
+
+    // ── Sampling ──────────────────────────────────────────────────────────────
+
+    private Estimate sample(List<String> rels, long maxWalks, double targetError, long deadline) {
+        return sample(rels, Collections.emptyMap(), b -> true, maxWalks, targetError, deadline);
+    }
+
+    /**
+     * Samples the join of {@code rels} with the attributes of {@code given}
+     * fixed to its values, counting only walks whose bindings {@code keep}
+     * accepts.
+     */
+    private Estimate sample(List<String> rels, Map<String, Object> given, Predicate<Map<String, Object>> keep,
+                            long maxWalks, double targetError, long deadline) {
+        List<String> order = walkOrder(rels, given.keySet());
+        List<List<String>> boundAttrs = boundAttributes(order, given.keySet());
+        for (String r : order) {
+            if (rows(r).isEmpty()) return new Estimate(0, 0, 0, 0, 0);
+        }
+
+        long n = 0, completed = 0;
+        double sum = 0, sumSq = 0;
+        Map<String, Object> bound = new HashMap<>();
+        while (n < maxWalks) {
+            bound.clear();
+            bound.putAll(given);
+            double x = walk(order, boundAttrs, bound);
+            if (x > 0 && !keep.test(bound)) x = 0;
+            n++;
+            if (x > 0) completed++;
+            sum   += x;
+            sumSq += x * x;
+            if (n % CHECK_EVERY == 0) {
+                if (System.nanoTime() > deadline) break;
+                if (targetError > 0 && n >= MIN_WALKS) {
+                    double mean = sum / n;
+                    if (mean > 0 && halfWidth(n, sum, sumSq) <= targetError * mean) break;
+                }
+            }
+        }
+        double mean = sum / n;
+        double hw   = halfWidth(n, sum, sumSq);
+        return new Estimate(mean, Math.max(0, mean - hw), mean + hw, n, completed);
+    }
+
+    /** One random walk extending {@code bound}; returns 1/p for a completed walk, 0 otherwise. */
+    private double walk(List<String> order, List<List<String>> boundAttrs, Map<String, Object> bound) {
+        double inverseP = 1;
+        for (int i = 0; i < order.size(); i++) {
+            String rel = order.get(i);
+            List<String> keyAttrs = boundAttrs.get(i);
+            List<String> columns  = relations.get(rel).getColumns();
+            List<Tuple> candidates;
+            if (keyAttrs.isEmpty()) {
+                candidates = rows(rel);
+            } else {
+                List<Object> key = new ArrayList<>(keyAttrs.size());
+                for (String a : keyAttrs) key.add(bound.get(a));
+                candidates = index(rel, keyAttrs).get(key);
+                if (candidates == null) return 0;
+            }
+            // Rows may come from another alias of the same storage: read them by position
+            Tuple t = candidates.get(rng.nextInt(candidates.size()));
+            inverseP *= candidates.size();
+            for (int c = 0; c < columns.size(); c++) bound.put(columns.get(c), t.getValue(c));
+        }
+        return inverseP;
+    }
+
+    private static double halfWidth(long n, double sum, double sumSq) {
+        if (n < 2) return Double.POSITIVE_INFINITY;
+        double mean = sum / n;
+        double var  = Math.max(0, (sumSq - n * mean * mean) / (n - 1));
+        return Z_95 * Math.sqrt(var / n);
+    }
+
+    // ── Node D sets ───────────────────────────────────────────────────────────
+
+    /**
+     * Walks over {@code node}'s subtree, keeping those whose λ key is light:
+     * {@code |D_L[key]| + 1 > ⌈P / |D_R|⌉}, as in the algorithm.
+     */
+    private Estimate estimateD(TreeNode node, long deadline) {
+        Set<String> leftAttrs = attributes(node.leftChild());
+        List<String> lambda = new ArrayList<>(attributes(node.rightChild()));
+        lambda.retainAll(leftAttrs);
+        if (lambda.isEmpty()) return new Estimate(0, 0, 0, 0, 0);   // the algorithm sends a cross product to C
+
+        double dr = size(node.rightChild(), deadline);
+        double threshold = dr == 0 ? 0 : Math.ceil(sizeBound() / dr);
+        Map<List<Object>, Double> degrees = new HashMap<>();
+        return sample(leaves(node), Collections.emptyMap(), bound -> {
+            List<Object> key = new ArrayList<>(lambda.size());
+            for (String a : lambda) key.add(bound.get(a));
+            double degree = degrees.computeIfAbsent(key, k -> degree(node.leftChild(), lambda, k, deadline));
+            return degree + 1 > threshold;
+        }, Long.MAX_VALUE, 0, deadline);
+    }
+
+    /** Rows of {@code n}'s subtree with λ = {@code key}: exact for a leaf, sampled otherwise. */
+    private double degree(TreeNode n, List<String> lambda, List<Object> key, long deadline) {
+        if (n.isLeaf()) {
+            List<Tuple> rows = index(n.getLabel(), lambda).get(key);
+            return rows == null ? 0 : rows.size();
+        }
+        Map<String, Object> given = new HashMap<>();
+        for (int i = 0; i < lambda.size(); i++) given.put(lambda.get(i), key.get(i));
+        return sample(leaves(n), given, b -> true, DEGREE_WALKS, 0, deadline).value;
+    }
+
+    /** Size of {@code n}'s subtree: a leaf's distinct rows, or a sampled join size. */
+    private double size(TreeNode n, long deadline) {
+        if (n.isLeaf()) return rows(n.getLabel()).size();
+        return sample(leaves(n), SIZE_WALKS, 0, deadline).value;
+    }
+
+    /** The LW bound P = ∏ |R|^(1/(n-1)) over all relations, as the algorithm computes it. */
+    private double sizeBound() {
+        Set<String> attrs = new HashSet<>();
+        for (Relation r : relations.values()) attrs.addAll(r.getColumns());
+        double p = 1;
+        for (Relation r : relations.values()) p *= Math.pow(r.size(), 1.0 / (attrs.size() - 1));
+        return p;
+    }
+
+    private Set<String> attributes(TreeNode n) {
+        Set<String> out = new HashSet<>();
+        for (String leaf : leaves(n)) out.addAll(relations.get(leaf).getColumns());
+        return out;
+    }
+
+    // ── Walk planning ─────────────────────────────────────────────────────────
+
+    /**
+     * Starts at the smallest relation, then always continues with the one
+     * sharing the most attributes with those already visited, so every step
+     * is as constrained as possible and dead ends show up early.
+     */
+    private List<String> walkOrder(List<String> rels, Set<String> given) {
+        List<String> remaining = new ArrayList<>(rels);
+        remaining.sort(Comparator.comparingInt(r -> rows(r).size()));
+        List<String> order = new ArrayList<>();
+        Set<String> bound = new HashSet<>(given);
+        while (!remaining.isEmpty()) {
+            String best = remaining.get(0);
+            int bestShared = -1;
+            for (String r : remaining) {
+                int shared = 0;
+                for (String a : relations.get(r).getColumns()) if (bound.contains(a)) shared++;
+                if (shared > bestShared) { best = r; bestShared = shared; }
+            }
+            remaining.remove(best);
+            order.add(best);
+            bound.addAll(relations.get(best).getColumns());
+        }
+        return order;
+    }
+
+    /** For each step of {@code order}, the attributes of that relation bound by earlier steps. */
+    private List<List<String>> boundAttributes(List<String> order, Set<String> given) {
+        List<List<String>> out = new ArrayList<>();
+        Set<String> bound = new HashSet<>(given);
+        for (String r : order) {
+            List<String> key = new ArrayList<>();
+            for (String a : relations.get(r).getColumns()) if (bound.contains(a)) key.add(a);
+            out.add(key);
+            bound.addAll(relations.get(r).getColumns());
+        }
+        return out;
+    }
+
+    // ── Lookup structures ─────────────────────────────────────────────────────
+
+    /**
+     * Identifies the stored data behind {@code rel}: renamed views keep their
+     * base relation's name and version, so all aliases of one relation agree.
+     */
+    private String storageKey(String rel) {
+        Relation r = relations.get(rel);
+        return r.getName() + "@" + r.getVersion() + r.getColumnTypes();
+    }
+
+    /** Distinct rows of a relation (the algorithm works on sets), in column order. */
+    private List<Tuple> rows(String rel) {
+        return distinctRows.computeIfAbsent(storageKey(rel), k -> {
+            // Distinct by position, so the list means the same under every alias's names
+            Map<List<Object>, Tuple> distinct = new LinkedHashMap<>();
+            for (Tuple t : relations.get(rel).getTuples()) distinct.putIfAbsent(t.getValues(), t);
+            return new ArrayList<>(distinct.values());
+        });
+    }
+
+    /** Rows of {@code rel} grouped by their values at the columns of {@code keyAttrs}. */
+    private Map<List<Object>, List<Tuple>> index(String rel, List<String> keyAttrs) {
+        List<String> columns = relations.get(rel).getColumns();
+        int[] positions = new int[keyAttrs.size()];
+        for (int i = 0; i < positions.length; i++) positions[i] = columns.indexOf(keyAttrs.get(i));
+        return indexes.computeIfAbsent(storageKey(rel) + Arrays.toString(positions), k -> {
+            Map<List<Object>, List<Tuple>> idx = new HashMap<>();
+            for (Tuple t : rows(rel)) {
+                List<Object> key = new ArrayList<>(positions.length);
+                for (int p : positions) key.add(t.getValue(p));
+                idx.computeIfAbsent(key, x -> new ArrayList<>()).add(t);
+            }
+            return idx;
+        });
+    }
+
+    // ── Tree helpers ──────────────────────────────────────────────────────────
+
+    private static List<String> leaves(TreeNode n) {
+        List<String> out = new ArrayList<>();
+        collectLeaves(n, out);
+        return out;
+    }
+
+    private static void collectLeaves(TreeNode n, List<String> out) {
+        if (n == null) return;
+        if (n.isLeaf()) { out.add(n.getLabel()); return; }
+        collectLeaves(n.leftChild(), out);
+        collectLeaves(n.rightChild(), out);
+    }
+
+    private static void collectInternal(TreeNode n, List<TreeNode> out) {
+        if (n == null || n.isLeaf()) return;
+        collectInternal(n.leftChild(), out);
+        collectInternal(n.rightChild(), out);
+        out.add(n);
+    }
+
+    private static long deadline(long millis) {
+        return System.nanoTime() + millis * 1_000_000L;
+    }
+}
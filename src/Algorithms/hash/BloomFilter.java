@@ -0,0 +1,56 @@
+package Algorithms.hash;
+
+/**
+ * Bloom filter over arbitrary values, keyed by {@link Object#hashCode}:
+ * {@link #mightContain} never misses a value that was added, and wrongly
+ * accepts others with probability about 1% at the sized capacity. Probe
+ * positions come from one 64-bit mix of the hash split in two
+ * (Kirsch–Mitzenmacher double hashing), so adding or testing a value costs
+ * one hash plus {@value #HASHES} word probes.
+ */
+public final class BloomFilter {
+
+    private static final int BITS_PER_KEY = 10;
+    private static final int HASHES       = 7;
+
+    private final long[] words;
+    private final int    mask;   // bit index mask; the bit count is a power of two
+
+    /** A filter sized for {@code expected} distinct values. */
+    public BloomFilter(int expected) {
+        long bits = Math.max(64, (long) expected * BITS_PER_KEY);
+        int size  = (int) Math.min(1L << 30, Long.highestOneBit(bits - 1) << 1);
+        this.words = new long[Math.max(1, size >>> 6)];
+        this.mask  = words.length * 64 - 1;
+    }
+
+    public void add(Object value) {
+        long h = mix(value);
+        int h1 = (int) h, h2 = (int) (h >>> 32) | 1;
+        for (int i = 0; i < HASHES; i++) {
+            int bit = (h1 + i * h2) & mask;
+            words[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    public boolean mightContain(Object value) {
+        long h = mix(value);
+        int h1 = (int) h, h2 = (int) (h >>> 32) | 1;
+        for (int i = 0; i < HASHES; i++) {
+            int bit = (h1 + i * h2) & mask;
+            if ((words[bit >>> 6] & 1L << bit) == 0) return false;
+        }
+        return true;
+    }
+
+    /** Heap bytes held by the bit array. */
+    public long footprintBytes() { return 16L + 8L * words.length; }
+
+    /** 64-bit finaliser (SplitMix64) of the value's hash code. */
+    private static long mix(Object value) {
+        long z = (value == null ? 0 : value.hashCode()) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,50 @@
+package Algorithms.hash;
+
+/**
+ * Packs up to {@link #MAX_WIDTH} non-negative dictionary codes into one
+ * long, {@code 64 / width} bits each (at most 31), first column in the
+ * high bits. Equal code rows pack to equal longs, so a packed key can be
+ * hashed and compared as a single primitive.
+ */
+public final class KeyPacker {
+
+    /** Widest key that is packed; wider ones stay as separate columns. */
+    public static final int MAX_WIDTH = 4;
+
+    private final int width;
+    private final int bits;
+    private final long mask;
+
+    /** @throws IllegalArgumentException if {@code width} is not in [1, {@link #MAX_WIDTH}] */
+    public KeyPacker(int width) {
+        if (width < 1 || width > MAX_WIDTH) {
+            throw new IllegalArgumentException("Cannot pack " + width + " columns into a long");
+        }
+        this.width = width;
+        this.bits  = Math.min(31, 64 / width);
+        this.mask  = (1L << bits) - 1;
+    }
+
+    /** True if every code below {@code domain} fits in a column. */
+    public boolean fits(int domain) { return domain - 1 <= mask; }
+
+    public int width() { return width; }
+
+    public long pack(int[] codes) {
+        long key = 0;
+        for (int c = 0; c < width; c++) key = key << bits | codes[c];
+        return key;
+    }
+
+    /** Packs row {@code row} of column-major {@code codes}. */
+    public long pack(int[][] codes, int row) {
+        long key = 0;
+        for (int c = 0; c < width; c++) key = key << bits | codes[c][row];
+        return key;
+    }
+
+    /** The code of column {@code column} in {@code key}. */
+    public int code(long key, int column) {
+        return (int) (key >>> (bits * (width - 1 - column)) & mask);
+    }
+}
@@ -0,0 +1,160 @@
+package Algorithms.hash;
+
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * Set of primitive longs with open addressing and linear probing: one
+ * {@code long[]} of slots and nothing per entry. Slot value 0 marks an
+ * empty slot, so the key 0 itself is tracked by a flag.
+ *
+ * <p>Removal shifts the rest of the probe run back instead of leaving
+ * tombstones, so lookups never slow down after deletes.
+ */
+public final class LongHashSet {
+
+    private static final int MIN_CAPACITY = 8;
+
+    private long[]  slots;
+    private int     mask;
+    private int     used;       // non-zero keys in slots
+    private boolean hasZero;
+
+    public LongHashSet() {
+        this(0);
+    }
+
+    /** A set that holds {@code expected} keys without resizing. */
+    public LongHashSet(int expected) {
+        int capacity = capacityFor(expected);
+        this.slots = new long[capacity];
+        this.mask  = capacity - 1;
+    }
+
+    public boolean add(long key) {
+        if (key == 0) {
+            if (hasZero) return false;
+            return hasZero = true;
+        }
+        int i = slot(key, mask);
+        for (long k; (k = slots[i]) != 0; i = (i + 1) & mask) {
+            if (k == key) return false;
+        }
+        slots[i] = key;
+        if (++used > (slots.length >> 2) * 3) rehash(slots.length << 1);
+        return true;
+    }
+
+    public boolean contains(long key) {
+        if (key == 0) return hasZero;
+        int i = slot(key, mask);
+        for (long k; (k = slots[i]) != 0; i = (i + 1) & mask) {
+            if (k == key) return true;
+        }
+        return false;
+    }
+
+    public boolean remove(long key) {
+        if (key == 0) {
+            boolean had = hasZero;
+            hasZero = false;
+            return had;
+        }
+        int i = slot(key, mask);
+        for (long k; (k = slots[i]) != 0; i = (i + 1) & mask) {
+            if (k == key) {
+                shiftBack(i);
+                used--;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int size() { return used + (hasZero ? 1 : 0); }
+
+    public boolean isEmpty() { return size() == 0; }
+
+    public void clear() {
+        slots   = new long[MIN_CAPACITY];
+        mask    = MIN_CAPACITY - 1;
+        used    = 0;
+        hasZero = false;
+    }
+
+    /** Heap bytes held by the slot array. */
+    public long footprintBytes() { return 16L + 8L * slots.length; }
+
+    /** Keys in slot order; the set must not change while it is iterated. */
+    public PrimitiveIterator.OfLong iterator() {
+        return new PrimitiveIterator.OfLong() {
+            private int     next = hasZero ? -1 : advance(0);
+            private boolean zeroPending = hasZero;
+
+            private int advance(int from) {
+                while (from < slots.length && slots[from] == 0) from++;
+                return from;
+            }
+
+            @Override
+            public boolean hasNext() { return zeroPending || next < slots.length; }
+
+            @Override
+            public long nextLong() {
+                if (zeroPending) {
+                    zeroPending = false;
+                    next = advance(0);
+                    return 0;
+                }
+                if (next >= slots.length) throw new NoSuchElementException();
+                long key = slots[next];
+                next = advance(next + 1);
+                return key;
+            }
+        };
+    }
+
+    // ── Internal ──────────────────────────────────────────────────────────────
+
+    /** Fibonacci hashing: the high bits of key·φ, which spread packed codes well. */
+    static int slot(long key, int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    static int capacityFor(int expected) {
+        long needed = Math.max(MIN_CAPACITY, (long) expected * 4 / 3 + 1);
+        if (needed > 1 << 30) throw new IllegalArgumentException("Too many keys: " + expected);
+        return Integer.highestOneBit((int) needed - 1) << 1;
+    }
+
+    /** Closes the gap at {@code gap} by moving later keys of the run whose home is at or before it. */
+    private void shiftBack(int gap) {
+        int i = gap;
+        while (true) {
+            i = (i + 1) & mask;
+            long k = slots[i];
+            if (k == 0) break;
+            int home = slot(k, mask);
+            // k may fill the gap unless its home lies cyclically in (gap, i]
+            boolean stays = gap <= i ? (gap < home && home <= i) : (gap < home || home <= i);
+            if (!stays) {
+                slots[gap] = k;
+                gap = i;
+            }
+        }
+        slots[gap] = 0;
+    }
+
+    private void rehash(int capacity) {
+        long[] old = slots;
+        slots = new long[capacity];
+        mask  = capacity - 1;
+        for (long k : old) {
+            if (k == 0) continue;
+            int i = slot(k, mask);
+            while (slots[i] != 0) i = (i + 1) & mask;
+            slots[i] = k;
+        }
+    }
+}
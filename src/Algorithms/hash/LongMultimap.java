@@ -0,0 +1,71 @@
+package Algorithms.hash;
+
+import java.util.Arrays;
+
+/**
+ * Read-only multimap from packed long keys to the row ids carrying them,
+ * built once over a key column. Distinct keys sit in an open-addressing
+ * table with linear probing; each slot holds the key, its first row and its
+ * row count, and rows with the same key are chained through one
+ * {@code int[] next} array. Nothing is allocated per row or per key.
+ */
+public final class LongMultimap {
+
+    private final long[] keys;      // slot → key
+    private final int[]  heads;     // slot → first row id, or -1 if the slot is empty
+    private final int[]  counts;    // slot → rows with that key
+    private final int[]  next;      // row id → next row id with the same key, or -1
+    private final int    mask;
+    private final int    distinct;
+
+    /** Indexes rows {@code [0, rows)} of {@code rowKeys}. */
+    public LongMultimap(long[] rowKeys, int rows) {
+        int capacity = LongHashSet.capacityFor(rows);
+        this.keys   = new long[capacity];
+        this.heads  = new int[capacity];
+        this.counts = new int[capacity];
+        this.next   = new int[Math.max(1, rows)];
+        this.mask   = capacity - 1;
+        Arrays.fill(heads, -1);
+        int n = 0;
+        // Insert in reverse so each chain lists rows in ascending order
+        for (int r = rows - 1; r >= 0; r--) {
+            long key = rowKeys[r];
+            int s = LongHashSet.slot(key, mask);
+            while (heads[s] >= 0 && keys[s] != key) s = (s + 1) & mask;
+            if (heads[s] < 0) {
+                keys[s] = key;
+                n++;
+            }
+            next[r]  = heads[s];
+            heads[s] = r;
+            counts[s]++;
+        }
+        this.distinct = n;
+    }
+
+    /** First row with {@code key}, or -1. */
+    public int first(long key) {
+        int s = find(key);
+        return s < 0 ? -1 : heads[s];
+    }
+
+    /** Row after {@code row} with the same key, or -1. */
+    public int next(int row) { return next[row]; }
+
+    /** Number of rows with {@code key}. */
+    public int count(long key) {
+        int s = find(key);
+        return s < 0 ? 0 : counts[s];
+    }
+
+    /** Number of distinct keys. */
+    public int distinctKeys() { return distinct; }
+
+    private int find(long key) {
+        for (int s = LongHashSet.slot(key, mask); heads[s] >= 0; s = (s + 1) & mask) {
+            if (keys[s] == key) return s;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,220 @@
+package Algorithms.hash;
+
+import database.Dictionary;
+import database.Tuple;
+
+import java.util.*;
+
+/**
+ * Set of tuples stored as packed dictionary codes: each distinct value is
+ * kept once in a {@link Dictionary}, and each tuple of up to
+ * {@link KeyPacker#MAX_WIDTH} attributes is one long in a
+ * {@link LongHashSet} for its schema. No {@code Tuple}, list or hash node
+ * is kept per element; {@link #iterator()} decodes tuples as it goes, and
+ * all tuples of one schema share an attribute map.
+ *
+ * <p>Tuples wider than that, and schemas whose values outgrow the bits of
+ * their columns, are kept in a plain {@link HashSet} instead. Membership
+ * follows {@link Tuple#equals}, so a set may mix schemas freely.
+ *
+ * <p>Not thread-safe for writers, but {@link #contains} and iteration keep
+ * no scratch state, so a set that is no longer modified can be read by
+ * several threads at once. The iterator does not support removal, and the
+ * set must not change while it is iterated.
+ */
+public final class PackedTupleSet extends AbstractSet<Tuple> {
+
+    private Dictionary                 dict  = new Dictionary();
+    private final Map<Set<String>, Part> parts = new HashMap<>();
+    private Set<Tuple>                 wide;                    // tuples that do not pack; null while empty
+
+    // Last schema looked up, since consecutive tuples nearly always share one;
+    // one immutable object, so concurrent readers always see a consistent triple
+    private Lookup last;
+
+    private static final class Lookup {
+        final Map<String, Integer> map;
+        final Part                 part;
+        final boolean              sameLayout;
+
+        Lookup(Map<String, Integer> map, Part part) {
+            this.map        = map;
+            this.part       = part;
+            this.sameLayout = part != null && part.attributeMap.equals(map);
+        }
+    }
+
+    /** Tuples of one attribute set, packed in a fixed column order. */
+    private static final class Part {
+        final Map<String, Integer> attributeMap;   // of decoded tuples
+        final String[]             names;          // column order of the packed codes
+        final KeyPacker            packer;
+        final LongHashSet          keys = new LongHashSet();
+        final int[]                codes;
+        boolean                    demoted;        // values outgrew the packing; tuples live in wide
+
+        Part(Map<String, Integer> layout) {
+            this.attributeMap = Collections.unmodifiableMap(new HashMap<>(layout));
+            this.names        = new String[layout.size()];
+            for (Map.Entry<String, Integer> e : layout.entrySet()) names[e.getValue()] = e.getKey();
+            this.packer       = new KeyPacker(names.length);
+            this.codes        = new int[names.length];
+        }
+    }
+
+    public PackedTupleSet() { }
+
+    public PackedTupleSet(Collection<Tuple> tuples) {
+        addAll(tuples);
+    }
+
+    @Override
+    public boolean add(Tuple t) {
+        Lookup l = lookup(t, true);
+        Part p = l.part;
+        if (p == null || p.demoted) return wide().add(t);
+        for (int c = 0; c < p.codes.length; c++) {
+            int code = dict.encode(value(t, l, c));
+            if (!p.packer.fits(code + 1)) {
+                demote(p);
+                return wide().add(t);
+            }
+            p.codes[c] = code;
+        }
+        return p.keys.add(p.packer.pack(p.codes));
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (!(o instanceof Tuple)) return false;
+        Tuple t = (Tuple) o;
+        Lookup l = lookup(t, false);
+        Part p = l == null ? null : l.part;
+        if (p == null || p.demoted) return wide != null && wide.contains(t);
+        int[] codes = new int[p.codes.length];
+        return encodeExisting(t, l, codes) && p.keys.contains(p.packer.pack(codes));
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (!(o instanceof Tuple)) return false;
+        Tuple t = (Tuple) o;
+        Lookup l = lookup(t, false);
+        Part p = l == null ? null : l.part;
+        if (p == null || p.demoted) return wide != null && wide.remove(t);
+        return encodeExisting(t, l, p.codes) && p.keys.remove(p.packer.pack(p.codes));
+    }
+
+    @Override
+    public int size() {
+        int n = wide == null ? 0 : wide.size();
+        for (Part p : parts.values()) {
+            if (!p.demoted) n += p.keys.size();
+        }
+        return n;
+    }
+
+    @Override
+    public void clear() {
+        dict = new Dictionary();
+        parts.clear();
+        wide = null;
+        last = null;
+    }
+
+    @Override
+    public Iterator<Tuple> iterator() {
+        List<Iterator<Tuple>> its = new ArrayList<>();
+        for (Part p : parts.values()) {
+            if (!p.demoted && !p.keys.isEmpty()) its.add(decoding(p));
+        }
+        if (wide != null) its.add(wide.iterator());
+        Iterator<Iterator<Tuple>> outer = its.iterator();
+        return new Iterator<Tuple>() {
+            private Iterator<Tuple> current = Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext()) {
+                    if (!outer.hasNext()) return false;
+                    current = outer.next();
+                }
+                return true;
+            }
+
+            @Override
+            public Tuple next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                return current.next();
+            }
+        };
+    }
+
+    // ── Internal ──────────────────────────────────────────────────────────────
+
+    private Iterator<Tuple> decoding(Part p) {
+        PrimitiveIterator.OfLong keys = p.keys.iterator();
+        return new Iterator<Tuple>() {
+            @Override
+            public boolean hasNext() { return keys.hasNext(); }
+
+            @Override
+            public Tuple next() {
+                long key = keys.nextLong();
+                Object[] vals = new Object[p.names.length];
+                for (int c = 0; c < vals.length; c++) vals[c] = dict.decode(p.packer.code(key, c));
+                return new Tuple(Arrays.asList(vals), p.attributeMap);
+            }
+        };
+    }
+
+    /**
+     * The part holding tuples of {@code t}'s schema (created if
+     * {@code create}), with how to read its columns from {@code t}. Null when
+     * there is no part and {@code create} is false; the part is null when the
+     * schema is too wide to pack.
+     */
+    private Lookup lookup(Tuple t, boolean create) {
+        Map<String, Integer> m = t.getAttributeMap();
+        Lookup l = last;
+        if (l != null && l.map == m) return l;
+        Part p = parts.get(m.keySet());
+        if (p == null && create && m.size() >= 1 && m.size() <= KeyPacker.MAX_WIDTH) {
+            p = new Part(m);
+            parts.put(new HashSet<>(m.keySet()), p);
+        }
+        if (p == null && !create) return null;
+        l    = new Lookup(m, p);
+        last = l;
+        return l;
+    }
+
+    private static Object value(Tuple t, Lookup l, int column) {
+        return l.sameLayout ? t.getValue(column) : t.getValueByAttribute(l.part.names[column]);
+    }
+
+    /** Fills {@code codes} from {@code t} without adding to the dictionary; false if a value is unknown. */
+    private boolean encodeExisting(Tuple t, Lookup l, int[] codes) {
+        Part p = l.part;
+        for (int c = 0; c < codes.length; c++) {
+            int code = dict.lookup(value(t, l, c));
+            if (code < 0 || !p.packer.fits(code + 1)) return false;
+            codes[c] = code;
+        }
+        return true;
+    }
+
+    /** Moves the tuples of {@code p} to the wide set; its schema is not packed from now on. */
+    private void demote(Part p) {
+        Iterator<Tuple> it = decoding(p);
+        Set<Tuple> w = wide();
+        while (it.hasNext()) w.add(it.next());
+        p.keys.clear();
+        p.demoted = true;
+    }
+
+    private Set<Tuple> wide() {
+        if (wide == null) wide = new HashSet<>();
+        return wide;
+    }
+}
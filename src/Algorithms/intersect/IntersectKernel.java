@@ -0,0 +1,15 @@
+package Algorithms.intersect;
+
+/** One strategy for intersecting two strictly increasing int arrays. */
+interface IntersectKernel {
+
+    /**
+     * Writes {@code a[0..aLen) ∩ b[0..bLen)} in ascending order into
+     * {@code out} (which must hold {@code min(aLen, bLen)} values) and
+     * returns the number written.
+     */
+    int intersect(int[] a, int aLen, int[] b, int bLen, int[] out);
+
+    /** Values compared per step. */
+    int lanes();
+}
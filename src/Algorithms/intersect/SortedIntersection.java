@@ -0,0 +1,112 @@
+package Algorithms.intersect;
+
+/**
+ * Intersection kernels for sorted, duplicate-free int arrays — the inner
+ * loop of attribute-at-a-time worst-case optimal joins.
+ *
+ * <ul>
+ *   <li>{@link #merge} — linear two-pointer merge, best for similar sizes;</li>
+ *   <li>{@link #gallop} — exponential search of the larger array for each
+ *       value of the smaller, best when sizes differ by an order of magnitude;</li>
+ *   <li>{@link #simd} — block compare on the Vector API
+ *       ({@code jdk.incubator.vector}); falls back to {@link #merge} when
+ *       the module is not available at runtime.</li>
+ * </ul>
+ *
+ * {@link #intersect} picks among them by size ratio and availability. The
+ * SIMD kernel lives in the {@code src-vector/} source root, compiled
+ * separately with {@code --add-modules jdk.incubator.vector}; this class
+ * only loads it by name, so {@code src/} builds without the module. Run
+ * with {@code --add-modules jdk.incubator.vector} to enable it, or set
+ * {@code -Dlw.intersect.scalar=true} to force the scalar kernels.
+ */
+public final class SortedIntersection {
+
+    /** Size ratio above which galloping beats a linear scan. */
+    static final int GALLOP_RATIO = 32;
+
+    private static final IntersectKernel SIMD = loadSimd();
+
+    private SortedIntersection() { }
+
+    // ── Entry points ──────────────────────────────────────────────────────────
+
+    /** Intersects with the best kernel for the inputs; see the class comment. */
+    public static int intersect(int[] a, int aLen, int[] b, int bLen, int[] out) {
+        if (aLen == 0 || bLen == 0) return 0;
+        if (aLen > bLen) return intersect(b, bLen, a, aLen, out);
+        if ((long) aLen * GALLOP_RATIO < bLen) return gallop(a, aLen, b, bLen, out);
+        return simd(a, aLen, b, bLen, out);
+    }
+
+    /** Convenience form returning a right-sized array. */
+    public static int[] intersect(int[] a, int[] b) {
+        int[] out = new int[Math.min(a.length, b.length)];
+        int n = intersect(a, a.length, b, b.length, out);
+        return n == out.length ? out : java.util.Arrays.copyOf(out, n);
+    }
+
+    public static int merge(int[] a, int aLen, int[] b, int bLen, int[] out) {
+        return merge(a, 0, aLen, b, 0, bLen, out, 0);
+    }
+
+    public static int gallop(int[] small, int smallLen, int[] large, int largeLen, int[] out) {
+        int k = 0, lo = 0;
+        for (int i = 0; i < smallLen && lo < largeLen; i++) {
+            int v = small[i];
+            // Exponential probe for the first position >= v, then binary search
+            int step = 1, hi = lo;
+            while (hi < largeLen && large[hi] < v) {
+                lo = hi + 1;
+                hi += step;
+                step <<= 1;
+            }
+            hi = Math.min(hi, largeLen - 1);
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (large[mid] < v) lo = mid + 1;
+                else                hi = mid - 1;
+            }
+            if (lo < largeLen && large[lo] == v) out[k++] = v;
+        }
+        return k;
+    }
+
+    public static int simd(int[] a, int aLen, int[] b, int bLen, int[] out) {
+        return SIMD != null ? SIMD.intersect(a, aLen, b, bLen, out) : merge(a, aLen, b, bLen, out);
+    }
+
+    /** True if the Vector API kernel was loaded. */
+    public static boolean isSimdAvailable() { return SIMD != null; }
+
+    /** Human-readable name of the kernel {@link #simd} dispatches to. */
+    public static String simdKernelName() {
+        return SIMD != null ? "vector-api(" + SIMD.lanes() + " lanes)" : "scalar-merge";
+    }
+
+    // ── Internal ──────────────────────────────────────────────────────────────
+
+    /** Merges {@code a[i..aEnd)} with {@code b[j..bEnd)} into {@code out[k..]}; returns values written. */
+    static int merge(int[] a, int i, int aEnd, int[] b, int j, int bEnd, int[] out, int k) {
+        int start = k;
+        while (i < aEnd && j < bEnd) {
+            int x = a[i], y = b[j];
+            if (x < y)      i++;
+            else if (x > y) j++;
+            else { out[k++] = x; i++; j++; }
+        }
+        return k - start;
+    }
+
+    private static IntersectKernel loadSimd() {
+        if (Boolean.getBoolean("lw.intersect.scalar")) return null;
+        if (!ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) return null;
+        try {
+            IntersectKernel k = (IntersectKernel) Class.forName("Algorithms.intersect.VectorIntersection")
+                                                       .getDeclaredConstructor().newInstance();
+            return k.lanes() >= 4 ? k : null;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package Algorithms.vector;
+
+/**
+ * Tight, allocation-free loops over int-coded columns.
+ *
+ * <p>Every kernel is a counted loop over primitive arrays with no calls or
+ * object dereferences in its body, which is the shape C2 unrolls and, where
+ * the body allows it, auto-vectorises with SIMD instructions.
+ */
+public final class BatchKernels {
+
+    private BatchKernels() { }
+
+    private static final int SEED = 0x9E3779B9;
+
+    /**
+     * {@code out[i] = hash(keys[0][from+i], keys[1][from+i], ...)} for
+     * {@code i < n}. Equal key rows always get equal hashes.
+     */
+    public static void hash(int[][] keys, int from, int n, int[] out) {
+        for (int i = 0; i < n; i++) out[i] = SEED;
+        for (int[] col : keys) {
+            for (int i = 0; i < n; i++) out[i] = out[i] * 0x01000193 ^ col[from + i];
+        }
+        for (int i = 0; i < n; i++) {
+            int h = out[i];
+            h ^= h >>> 16;
+            h *= 0x85EBCA6B;
+            h ^= h >>> 13;
+            out[i] = h;
+        }
+    }
+
+    /**
+     * Branch-free selection: writes into {@code sel} the offsets {@code i < n}
+     * with {@code values[from+i] >= 0} and returns how many there are.
+     */
+    public static int selectNonNegative(int[] values, int from, int n, int[] sel) {
+        int k = 0;
+        for (int i = 0; i < n; i++) {
+            sel[k] = i;
+            k += (values[from + i] >>> 31) ^ 1;
+        }
+        return k;
+    }
+
+    /**
+     * Branch-free selection: writes into {@code sel} the offsets {@code i < n}
+     * with {@code values[from+i] == wanted} and returns how many there are.
+     */
+    public static int selectEquals(int[] values, int from, int n, int wanted, int[] sel) {
+        int k = 0;
+        for (int i = 0; i < n; i++) {
+            sel[k] = i;
+            k += values[from + i] == wanted ? 1 : 0;
+        }
+        return k;
+    }
+
+    /** True if rows {@code a} of {@code left} and {@code b} of {@code right} carry equal codes. */
+    static boolean keysEqual(int[][] left, int a, int[][] right, int b) {
+        for (int c = 0; c < left.length; c++) {
+            if (left[c][a] != right[c][b]) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,27 @@
+package Algorithms.vector;
+
+/**
+ * Scratch state for one batch of up to {@link #CAPACITY} rows: the window
+ * {@code [from, from + size)} into the encoded columns, a hash per row and a
+ * selection vector of the row offsets still alive after filtering.
+ *
+ * <p>One instance is reused for every batch of a pass, so the inner loops
+ * touch the same few kilobytes of memory throughout.
+ */
+final class ColumnBatch {
+
+    static final int CAPACITY = 1024;
+
+    final int[] hashes = new int[CAPACITY];
+    final int[] sel    = new int[CAPACITY];
+
+    int from;       // first row of the window
+    int size;       // rows in the window
+    int selCount;   // live entries in sel
+
+    void reset(int from, int totalRows) {
+        this.from     = from;
+        this.size     = Math.min(CAPACITY, totalRows - from);
+        this.selCount = 0;
+    }
+}
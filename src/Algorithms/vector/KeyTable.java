@@ -0,0 +1,53 @@
+package Algorithms.vector;
+
+import java.util.Arrays;
+
+/**
+ * Open hash table over multi-column int keys, kept entirely in primitive
+ * arrays: a power-of-two bucket array of row heads and a {@code next} chain
+ * per row. Rows with equal keys are chained together, so the table doubles
+ * as a multimap from key to row ids.
+ */
+final class KeyTable {
+
+    private final int[][] keys;     // key columns, indexed by row id
+    private final int[]   hashes;   // hash per row id
+    private final int[]   heads;    // bucket → first row id, or -1
+    private final int[]   next;     // row id → next row id in bucket, or -1
+    private final int     mask;
+
+    /** Indexes rows {@code [0, rows)} of {@code keys} whose hashes are given. */
+    KeyTable(int[][] keys, int[] hashes, int rows) {
+        this.keys   = keys;
+        this.hashes = hashes;
+        int buckets = Integer.highestOneBit(Math.max(1, rows) * 2 - 1) << 1;
+        this.heads  = new int[buckets];
+        this.next   = new int[Math.max(1, rows)];
+        this.mask   = buckets - 1;
+        Arrays.fill(heads, -1);
+        // Insert in reverse so each chain lists rows in ascending order
+        for (int r = rows - 1; r >= 0; r--) {
+            int b = hashes[r] & mask;
+            next[r]  = heads[b];
+            heads[b] = r;
+        }
+    }
+
+    /** First row whose key equals row {@code row} of {@code probe}, or -1. */
+    int find(int[][] probe, int row, int hash) {
+        return scan(heads[hash & mask], probe, row, hash);
+    }
+
+    /** Next row after {@code match} with the same key, or -1. */
+    int findNext(int match, int[][] probe, int row, int hash) {
+        return scan(next[match], probe, row, hash);
+    }
+
+    private int scan(int r, int[][] probe, int row, int hash) {
+        while (r >= 0) {
+            if (hashes[r] == hash && BatchKernels.keysEqual(keys, r, probe, row)) return r;
+            r = next[r];
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,400 @@
+package Algorithms.vector;
+
+import Algorithms.CancellationToken;
+import Algorithms.IndexedRows;
+import Algorithms.JoinView;
+import Algorithms.bitmap.RoaringBitmap;
+import Algorithms.hash.KeyPacker;
+import Algorithms.hash.LongHashSet;
+import Algorithms.hash.LongMultimap;
+import database.Dictionary;
+import database.Tuple;
+
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Batch-at-a-time evaluation of one internal LW node.
+ *
+ * <p>The λ columns of D_L and D_R are dictionary-encoded once into int
+ * arrays. Everything after that — hashing, building the D_R hash table,
+ * finding F = π_λ(D_L) ∩ π_λ(D_R), counting |D_L[t]| per key, splitting
+ * heavy from light keys and probing for join partners — runs over
+ * {@link ColumnBatch}es of int codes with {@link BatchKernels} loops. Only
+ * the final join output touches {@link Tuple} objects again, and all output
+ * tuples of a node share one attribute map.
+ *
+ * <p>Inputs are read through {@link IndexedRows}. A {@link JoinView} input
+ * is encoded and emitted from its grouped rows by position, so its joined
+ * tuples are never stored; each one is built only as part of an output
+ * tuple.
+ *
+ * <p>When λ is a single attribute the key sets are compressed bitmaps over
+ * the dictionary codes instead; see {@link #evaluateSingleKey}. When it has
+ * a few attributes whose codes fit in one long, keys are packed and the
+ * tables are primitive open-addressing ones; see {@link #evaluatePacked}.
+ *
+ * <p>{@link #evaluate} returns {@code null} when the inputs do not fit the
+ * encoded model (null join values, or tuples whose schemas differ); the
+ * caller then falls back to the tuple-at-a-time path.
+ *
+ * <p>The loops check the query's {@link CancellationToken} once per batch and
+ * once per emitted tuple, so a cancelled node stops mid-batch.
+ */
+public final class VectorizedJoin {
+
+    // Join class of each D_L row, by its λ key
+    private static final int NO_MATCH = -1;
+    private static final int HEAVY    = 0;   // key in G   → joined into C
+    private static final int LIGHT    = 1;   // key in F\G → joined into D
+    private static final int ANY      = 2;   // root: every matching key → C
+
+    /** C and D of a node plus the sizes of its key sets. */
+    public static final class Output {
+        public final Set<Tuple> C;
+        public final Set<Tuple> D;
+        public final int fSize, gSize;
+        public final long probes;
+
+        Output(Set<Tuple> C, Set<Tuple> D, int fSize, int gSize, long probes) {
+            this.C = C;
+            this.D = D;
+            this.fSize  = fSize;
+            this.gSize  = gSize;
+            this.probes = probes;
+        }
+    }
+
+    private VectorizedJoin() { }
+
+    /**
+     * Computes the node's join outputs. At the root every match goes to C;
+     * elsewhere keys with {@code |D_L[t]| + 1 <= threshold} go to C and the
+     * rest of F to D, exactly as the tuple-at-a-time algorithm does.
+     *
+     * @param newSet factory for the output sets
+     * @param cancel checked while the node runs
+     * @return the outputs (C excludes C_L/C_R), or null if not applicable
+     */
+    public static Output evaluate(Collection<Tuple> DL, Collection<Tuple> DR, List<String> lambda,
+                                  boolean root, int threshold, Supplier<Set<Tuple>> newSet,
+                                  CancellationToken cancel) {
+        return evaluate(DL, DR, lambda, root, threshold, false, newSet, cancel);
+    }
+
+    /**
+     * As {@link #evaluate(Collection, Collection, List, boolean, int, Supplier, CancellationToken)};
+     * with {@code skipLight} the light-key join is left out and D comes back
+     * empty, for a caller that keeps D as a view instead.
+     */
+    public static Output evaluate(Collection<Tuple> DL, Collection<Tuple> DR, List<String> lambda,
+                                  boolean root, int threshold, boolean skipLight,
+                                  Supplier<Set<Tuple>> newSet, CancellationToken cancel) {
+        Set<Tuple> C = newSet.get(), D = newSet.get();
+        if (DL.isEmpty() || DR.isEmpty()) return new Output(C, D, 0, 0, 0);
+        if (lambda.isEmpty() && !root) return new Output(C, D, 0, 0, 0); // F = ∅ without λ
+
+        IndexedRows L = IndexedRows.of(DL);
+        IndexedRows R = L == null ? null : IndexedRows.of(DR);
+        if (R == null) return null;
+        Dictionary dict = new Dictionary();
+        int[][] lk = encode(L, lambda, dict);
+        int[][] rk = lk == null ? null : encode(R, lambda, dict);
+        if (rk == null) return null;
+        if (lambda.size() == 1) {
+            return evaluateSingleKey(L, lk[0], R, rk[0], dict.size(), root, threshold, skipLight, C, D, cancel);
+        }
+        KeyPacker packer = lambda.size() >= 2 && lambda.size() <= KeyPacker.MAX_WIDTH
+                ? new KeyPacker(lambda.size()) : null;
+        if (packer != null && packer.fits(dict.size())) {
+            return evaluatePacked(L, pack(lk, L.size(), packer), R, pack(rk, R.size(), packer),
+                                  root, threshold, skipLight, C, D, cancel);
+        }
+
+        // Build side: hash every D_R key, batch by batch
+        int nL = L.size(), nR = R.size();
+        int[] rh = new int[nR];
+        hashAll(rk, nR, rh);
+        KeyTable rTable = new KeyTable(rk, rh, nR);
+
+        // Pass 1 over D_L: which keys are in F, and |D_L[t]| for each
+        int[] lh = new int[nL];
+        hashAll(lk, nL, lh);
+        KeyTable lTable = new KeyTable(lk, lh, nL);
+        int[] rep    = new int[nL];   // representative D_L row of each row's key, or -1
+        int[] degree = new int[nL];   // indexed by representative row
+        long probes  = 0;
+        int  fSize   = 0;
+        ColumnBatch batch = new ColumnBatch();
+        for (int from = 0; from < nL; from += ColumnBatch.CAPACITY) {
+            cancel.check();
+            batch.reset(from, nL);
+            for (int i = 0; i < batch.size; i++) {
+                int row = from + i;
+                probes++;
+                if (rTable.find(lk, row, lh[row]) < 0) {
+                    rep[row] = NO_MATCH;
+                    continue;
+                }
+                int r = lTable.find(lk, row, lh[row]);
+                rep[row] = r;
+                if (degree[r]++ == 0) fSize++;
+            }
+        }
+
+        // Classify rows: G = {t ∈ F : |D_L[t]| + 1 <= threshold}
+        int[] cls = new int[nL];
+        int gSize = 0;
+        for (int row = 0; row < nL; row++) {
+            int r = rep[row];
+            boolean heavy = r >= 0 && degree[r] + 1 <= threshold;
+            if (r < 0)      cls[row] = NO_MATCH;
+            else if (root)  cls[row] = ANY;
+            else            cls[row] = heavy ? HEAVY : LIGHT;
+            if (r == row && heavy) gSize++;
+        }
+        if (lambda.isEmpty()) fSize = gSize = 0; // root cross product: F is empty by definition
+
+        // Pass 2: probe D_R for each selected D_L row and emit joined tuples
+        OutputSchema schema = new OutputSchema(L, R);
+        for (int from = 0; from < nL; from += ColumnBatch.CAPACITY) {
+            cancel.check();
+            batch.reset(from, nL);
+            if (root) {
+                batch.selCount = BatchKernels.selectNonNegative(cls, from, batch.size, batch.sel);
+                probes += emit(batch, L, lk, lh, R, rTable, schema, C, cancel);
+            } else {
+                batch.selCount = BatchKernels.selectEquals(cls, from, batch.size, HEAVY, batch.sel);
+                probes += emit(batch, L, lk, lh, R, rTable, schema, C, cancel);
+                if (skipLight) continue;
+                batch.selCount = BatchKernels.selectEquals(cls, from, batch.size, LIGHT, batch.sel);
+                probes += emit(batch, L, lk, lh, R, rTable, schema, D, cancel);
+            }
+        }
+        return new Output(C, D, fSize, gSize, probes);
+    }
+
+    /**
+     * Single-attribute λ: the codes are dense ints, so F, G and F\G are kept
+     * as {@link RoaringBitmap}s and built with word-level AND / AND-NOT,
+     * |D_L[t]| is an array indexed by code, and D_R is grouped by code
+     * (CSR layout) so probing needs no hashing at all.
+     */
+    private static Output evaluateSingleKey(IndexedRows L, int[] lc, IndexedRows R, int[] rc, int domain,
+                                            boolean root, int threshold, boolean skipLight,
+                                            Set<Tuple> C, Set<Tuple> D,
+                                            CancellationToken cancel) {
+        int nL = L.size(), nR = R.size();
+        RoaringBitmap F = RoaringBitmap.and(RoaringBitmap.fromCodes(lc, nL), RoaringBitmap.fromCodes(rc, nR));
+
+        int[] degree = new int[domain];
+        for (int i = 0; i < nL; i++) degree[lc[i]]++;
+        RoaringBitmap G = new RoaringBitmap();
+        F.forEach(code -> { if (degree[code] + 1 <= threshold) G.add(code); });
+        RoaringBitmap light = RoaringBitmap.andNot(F, G);
+
+        // D_R rows of code c are rows[start[c] .. start[c+1])
+        int[] start = new int[domain + 1];
+        for (int i = 0; i < nR; i++) start[rc[i] + 1]++;
+        for (int c = 0; c < domain; c++) start[c + 1] += start[c];
+        int[] rows = new int[nR];
+        int[] fill = Arrays.copyOf(start, domain);
+        for (int i = 0; i < nR; i++) rows[fill[rc[i]]++] = i;
+
+        OutputSchema schema = new OutputSchema(L, R);
+        ColumnBatch batch = new ColumnBatch();
+        long probes = 0;
+        for (int from = 0; from < nL; from += ColumnBatch.CAPACITY) {
+            cancel.check();
+            batch.reset(from, nL);
+            batch.selCount = selectMembers(lc, from, batch.size, root ? F : G, batch.sel);
+            probes += emitGrouped(batch, L, lc, R, start, rows, schema, C, cancel);
+            if (!root && !skipLight) {
+                batch.selCount = selectMembers(lc, from, batch.size, light, batch.sel);
+                probes += emitGrouped(batch, L, lc, R, start, rows, schema, D, cancel);
+            }
+        }
+        return new Output(C, D, F.cardinality(), G.cardinality(), probes);
+    }
+
+    /**
+     * λ of two to {@link KeyPacker#MAX_WIDTH} attributes whose codes fit in
+     * a long: each key is one packed long, D_R and D_L are indexed by
+     * {@link LongMultimap}s (whose per-key row counts are |D_L[t]|), and F
+     * and G are {@link LongHashSet}s.
+     */
+    private static Output evaluatePacked(IndexedRows L, long[] lp, IndexedRows R, long[] rp,
+                                         boolean root, int threshold, boolean skipLight,
+                                         Set<Tuple> C, Set<Tuple> D, CancellationToken cancel) {
+        int nL = L.size();
+        LongMultimap rTable = new LongMultimap(rp, R.size());
+        LongMultimap lTable = new LongMultimap(lp, nL);
+        LongHashSet F = new LongHashSet(), G = new LongHashSet();
+        int[] cls = new int[nL];
+        long probes = 0;
+        for (int row = 0; row < nL; row++) {
+            if ((row & (ColumnBatch.CAPACITY - 1)) == 0) cancel.check();
+            long key = lp[row];
+            probes++;
+            if (rTable.first(key) < 0) {
+                cls[row] = NO_MATCH;
+                continue;
+            }
+            boolean heavy = lTable.count(key) + 1 <= threshold;
+            if (F.add(key) && heavy) G.add(key);
+            cls[row] = root ? ANY : heavy ? HEAVY : LIGHT;
+        }
+
+        OutputSchema schema = new OutputSchema(L, R);
+        ColumnBatch batch = new ColumnBatch();
+        for (int from = 0; from < nL; from += ColumnBatch.CAPACITY) {
+            cancel.check();
+            batch.reset(from, nL);
+            if (root) {
+                batch.selCount = BatchKernels.selectNonNegative(cls, from, batch.size, batch.sel);
+                probes += emitPacked(batch, L, lp, R, rTable, schema, C, cancel);
+            } else {
+                batch.selCount = BatchKernels.selectEquals(cls, from, batch.size, HEAVY, batch.sel);
+                probes += emitPacked(batch, L, lp, R, rTable, schema, C, cancel);
+                if (skipLight) continue;
+                batch.selCount = BatchKernels.selectEquals(cls, from, batch.size, LIGHT, batch.sel);
+                probes += emitPacked(batch, L, lp, R, rTable, schema, D, cancel);
+            }
+        }
+        return new Output(C, D, F.size(), G.size(), probes);
+    }
+
+    private static long emitPacked(ColumnBatch batch, IndexedRows L, long[] lp, IndexedRows R, LongMultimap rTable,
+                                   OutputSchema schema, Set<Tuple> out, CancellationToken cancel) {
+        long probes = 0;
+        for (int j = 0; j < batch.selCount; j++) {
+            int row = batch.from + batch.sel[j];
+            for (int m = rTable.first(lp[row]); m >= 0; m = rTable.next(m)) {
+                probes++;
+                cancel.checkpoint();
+                out.add(schema.join(L, row, R, m));
+            }
+        }
+        return probes;
+    }
+
+    private static long[] pack(int[][] codes, int rows, KeyPacker packer) {
+        long[] packed = new long[rows];
+        for (int r = 0; r < rows; r++) packed[r] = packer.pack(codes, r);
+        return packed;
+    }
+
+    private static int selectMembers(int[] codes, int from, int n, RoaringBitmap keys, int[] sel) {
+        int k = 0;
+        for (int i = 0; i < n; i++) {
+            sel[k] = i;
+            k += keys.contains(codes[from + i]) ? 1 : 0;
+        }
+        return k;
+    }
+
+    private static long emitGrouped(ColumnBatch batch, IndexedRows L, int[] lc, IndexedRows R,
+                                    int[] start, int[] rows, OutputSchema schema, Set<Tuple> out,
+                                    CancellationToken cancel) {
+        long probes = 0;
+        for (int j = 0; j < batch.selCount; j++) {
+            int row  = batch.from + batch.sel[j];
+            int code = lc[row];
+            for (int p = start[code]; p < start[code + 1]; p++) {
+                cancel.checkpoint();
+                out.add(schema.join(L, row, R, rows[p]));
+            }
+            probes += start[code + 1] - start[code];
+        }
+        return probes;
+    }
+
+    // ── Kernels over the whole input ──────────────────────────────────────────
+
+    private static void hashAll(int[][] keys, int n, int[] out) {
+        int[] scratch = new int[ColumnBatch.CAPACITY];
+        for (int from = 0; from < n; from += ColumnBatch.CAPACITY) {
+            int size = Math.min(ColumnBatch.CAPACITY, n - from);
+            BatchKernels.hash(keys, from, size, scratch);
+            System.arraycopy(scratch, 0, out, from, size);
+        }
+    }
+
+    /** Joins the selected D_L rows of {@code batch} with their D_R partners into {@code out}. */
+    private static long emit(ColumnBatch batch, IndexedRows L, int[][] lk, int[] lh,
+                             IndexedRows R, KeyTable rTable, OutputSchema schema, Set<Tuple> out,
+                             CancellationToken cancel) {
+        long probes = 0;
+        for (int j = 0; j < batch.selCount; j++) {
+            int row = batch.from + batch.sel[j];
+            int h = lh[row];
+            for (int m = rTable.find(lk, row, h); m >= 0; m = rTable.findNext(m, lk, row, h)) {
+                probes++;
+                cancel.checkpoint();
+                out.add(schema.join(L, row, R, m));
+            }
+        }
+        return probes;
+    }
+
+    // ── Encoding ──────────────────────────────────────────────────────────────
+
+    /**
+     * Column-major λ codes of {@code rows}, or null if some λ value is null
+     * (null matches anything in the tuple model, which codes cannot express)
+     * or missing from the schema.
+     */
+    private static int[][] encode(IndexedRows rows, List<String> lambda, Dictionary dict) {
+        Map<String, Integer> schema = rows.attributeMap();
+        int[] idx = new int[lambda.size()];
+        for (int c = 0; c < idx.length; c++) {
+            Integer i = schema.get(lambda.get(c));
+            if (i == null) return null;
+            idx[c] = i;
+        }
+        int n = rows.size();
+        int[][] codes = new int[idx.length][n];
+        for (int r = 0; r < n; r++) {
+            for (int c = 0; c < idx.length; c++) {
+                Object v = rows.value(r, idx[c]);
+                if (v == null) return null;
+                codes[c][r] = dict.encode(v);
+            }
+        }
+        return codes;
+    }
+
+    /** Value layout of joined tuples: all left values, then right's non-shared ones. */
+    private static final class OutputSchema {
+        final Map<String, Integer> attributeMap;
+        final int[] rightExtra;   // value indexes in right tuples to append
+        final int   width;
+
+        OutputSchema(IndexedRows left, IndexedRows right) {
+            Map<String, Integer> map = new HashMap<>(left.attributeMap());
+            int w = map.size();
+            String[] rightNames = new String[right.attributeMap().size()];
+            for (Map.Entry<String, Integer> e : right.attributeMap().entrySet()) {
+                rightNames[e.getValue()] = e.getKey();
+            }
+            List<Integer> extra = new ArrayList<>();
+            for (int i = 0; i < rightNames.length; i++) {
+                if (!map.containsKey(rightNames[i])) {
+                    map.put(rightNames[i], w++);
+                    extra.add(i);
+                }
+            }
+            this.attributeMap = Collections.unmodifiableMap(map);
+            this.rightExtra   = extra.stream().mapToInt(Integer::intValue).toArray();
+            this.width        = w;
+        }
+
+        /** Row {@code l} of {@code left} joined with row {@code r} of {@code right}. */
+        Tuple join(IndexedRows left, int l, IndexedRows right, int r) {
+            List<Object> vals = new ArrayList<>(width);
+            left.appendTo(l, vals);
+            for (int i : rightExtra) vals.add(right.value(r, i));
+            return new Tuple(vals, attributeMap);
+        }
+    }
+}
@@ -0,0 +1,658 @@
+package benchmark;
+
+import Algorithms.CancellationToken;
+import Algorithms.LoomisWhitneyInstance;
+import Algorithms.QueryCancelledException;
+import database.CsvLoader;
+import database.Relation;
+import database.RelationFile;
+import database.Tuple;
+import query.ConjunctiveQuery;
+import tree.QueryTreeBuilder;
+import tree.TreeNode;
+
+import java.io.*;
+import java.lang.management.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Headless benchmark of a query suite: every case is run on every engine
+ * and thread count with warm-up and measured iterations, and the results
+ * are written as JSON or CSV and checked against a stored baseline.
+ *
+ * <p>Per (case, engine, threads) it records latency percentiles, throughput,
+ * output size, peak heap and GC time. With T threads, T copies of the query
+ * run concurrently, each {@code iterations} times, and all latencies are
+ * pooled. Single-threaded measurements also get a phase breakdown from
+ * separate profiled runs: each tree node's own time (by its label) and
+ * {@code prune}, the rest of the query.
+ *
+ * <p>A phase regresses when its median grows by more than the threshold
+ * and by more than the noise floor; a changed output size or a case that no
+ * longer completes is also a regression. Any regression exits with status 1.
+ *
+ * <p>CLI: {@code java -cp bin benchmark.BenchmarkRunner [options]}; run with
+ * {@code --help} for the options.
+ */
+public final class BenchmarkRunner {
+
+    /** Query implementations a suite can be run on. */
+    public enum Engine {
+        VECTORIZED, SCALAR;
+
+        String id() { return name().toLowerCase(Locale.ROOT); }
+    }
+
+    /** One named query over its own catalog. */
+    public static final class Case {
+        public final String                name;
+        public final String                query;
+        public final Map<String, Relation> catalog;
+
+        public Case(String name, String query, Map<String, Relation> catalog) {
+            this.name    = name;
+            this.query   = query;
+            this.catalog = catalog;
+        }
+    }
+
+    /** Result of one case on one engine at one thread count. Times are in milliseconds. */
+    public static final class Measurement {
+        public final String caseName, engine, query;
+        public final int    threads;
+        public final long   outputRows;            // -1 if the case failed
+        public final double p50, p90, p99, max, mean;
+        public final double throughput;             // queries per second over all threads
+        public final double peakHeapMb;
+        public final long   gcMillis, gcCount;
+        public final Map<String, Double> phases;    // median per phase; empty unless single-threaded
+        public final String error;                  // null on success
+
+        Measurement(String caseName, String engine, String query, int threads, long outputRows,
+                    double p50, double p90, double p99, double max, double mean, double throughput,
+                    double peakHeapMb, long gcMillis, long gcCount, Map<String, Double> phases, String error) {
+            this.caseName   = caseName;
+            this.engine     = engine;
+            this.query      = query;
+            this.threads    = threads;
+            this.outputRows = outputRows;
+            this.p50 = p50;  this.p90 = p90;  this.p99 = p99;
+            this.max = max;  this.mean = mean;
+            this.throughput = throughput;
+            this.peakHeapMb = peakHeapMb;
+            this.gcMillis   = gcMillis;
+            this.gcCount    = gcCount;
+            this.phases     = Collections.unmodifiableMap(phases);
+            this.error      = error;
+        }
+
+        static Measurement failed(String caseName, String engine, String query, int threads, String error) {
+            return new Measurement(caseName, engine, query, threads, -1, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+                                   Collections.emptyMap(), error);
+        }
+
+        /** Identifies this measurement across runs. */
+        public String key() { return caseName + "/" + engine + "/t" + threads; }
+    }
+
+    /** One phase that got slower (or a case whose output or status changed). */
+    public static final class Regression {
+        public final String key, phase, detail;
+
+        Regression(String key, String phase, String detail) {
+            this.key    = key;
+            this.phase  = phase;
+            this.detail = detail;
+        }
+
+        @Override
+        public String toString() { return key + " " + phase + ": " + detail; }
+    }
+
+    /** Phase of a measurement holding the whole-query median. */
+    public static final String TOTAL = "total";
+    /** Phase for everything outside the tree nodes: the final prune and bookkeeping. */
+    public static final String PRUNE = "prune";
+
+    private List<Engine>  engines      = Arrays.asList(Engine.values());
+    private List<Integer> threadCounts = Collections.singletonList(1);
+    private int           warmup       = 3;
+    private int           iterations   = 10;
+    private int           profileRuns  = 3;
+    private long          timeoutMs    = 60_000;
+    private PrintStream   log          = System.out;
+
+    public void setEngines(List<Engine> engines)       { this.engines = new ArrayList<>(engines); }
+    public void setThreadCounts(List<Integer> threads) { this.threadCounts = new ArrayList<>(threads); }
+    public void setWarmup(int warmup)                  { this.warmup = Math.max(0, warmup); }
+    public void setIterations(int iterations)          { this.iterations = Math.max(1, iterations); }
+    /** Profiled (per-phase) runs per single-threaded measurement; 0 disables the breakdown. */
+    public void setProfileRuns(int runs)               { this.profileRuns = Math.max(0, runs); }
+    /** Per-execution timeout; a case that exceeds it is recorded as failed. */
+    public void setTimeoutMs(long timeoutMs)           { this.timeoutMs = timeoutMs; }
+    /** Progress output; null for none. */
+    public void setLog(PrintStream log)                { this.log = log; }
+
+    // ── Running ───────────────────────────────────────────────────────────────
+
+    public List<Measurement> run(List<Case> suite) throws InterruptedException {
+        List<Measurement> out = new ArrayList<>();
+        for (Case c : suite) {
+            Map<String, Relation> relations;
+            try {
+                relations = ConjunctiveQuery.parse(c.query).bind(c.catalog);
+            } catch (IllegalArgumentException e) {
+                for (Engine engine : engines) {
+                    for (int t : threadCounts) out.add(Measurement.failed(c.name, engine.id(), c.query, t, e.getMessage()));
+                }
+                continue;
+            }
+            for (Engine engine : engines) {
+                for (int threads : threadCounts) {
+                    Measurement m = measure(c, relations, engine, threads);
+                    out.add(m);
+                    if (log != null) log.println(summary(m));
+                }
+            }
+        }
+        return out;
+    }
+
+    private Measurement measure(Case c, Map<String, Relation> relations, Engine engine, int threads)
+            throws InterruptedException {
+        long rows = -1;
+        try {
+            for (int i = 0; i < Math.max(1, warmup); i++) rows = execute(relations, engine, null).size();
+        } catch (QueryCancelledException e) {
+            return Measurement.failed(c.name, engine.id(), c.query, threads, e.getMessage());
+        }
+
+        System.gc();
+        long[] gcBefore = gcTotals();
+        HeapSampler heap = new HeapSampler();
+
+        long[] latencies = new long[threads * iterations];
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int offset = t * iterations;
+                workers.add(pool.submit(() -> {
+                    for (int i = 0; i < iterations; i++) {
+                        long t0 = System.nanoTime();
+                        execute(relations, engine, null);
+                        latencies[offset + i] = System.nanoTime() - t0;
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> f : workers) f.get();
+        } catch (ExecutionException e) {
+            String msg = e.getCause() instanceof QueryCancelledException
+                    ? e.getCause().getMessage() : String.valueOf(e.getCause());
+            return Measurement.failed(c.name, engine.id(), c.query, threads, msg);
+        } finally {
+            pool.shutdownNow();
+            heap.close();
+        }
+        long wall = System.nanoTime() - start;
+
+        long[] gcAfter = gcTotals();
+        long peakHeap = heap.peak();
+
+        Map<String, Double> phases = threads == 1 ? profile(relations, engine) : new LinkedHashMap<>();
+
+        Arrays.sort(latencies);
+        double mean = 0;
+        for (long l : latencies) mean += l;
+        mean /= latencies.length;
+        return new Measurement(c.name, engine.id(), c.query, threads, rows,
+                pct(latencies, 50), pct(latencies, 90), pct(latencies, 99),
+                latencies[latencies.length - 1] / 1e6, mean / 1e6,
+                latencies.length / (wall / 1e9), peakHeap / (1024.0 * 1024.0),
+                gcAfter[0] - gcBefore[0], gcAfter[1] - gcBefore[1], phases, null);
+    }
+
+    /**
+     * Highest total heap in use seen while measuring, polled every
+     * {@value #PERIOD_MICROS} µs. Unlike the per-pool peaks, which are
+     * reached at different moments, every sample is one point in time; a
+     * peak shorter than the period can be missed.
+     */
+    private static final class HeapSampler implements AutoCloseable {
+        private static final long PERIOD_MICROS = 1_000;
+
+        private final MemoryMXBean             memory = ManagementFactory.getMemoryMXBean();
+        private final AtomicLong               peak   = new AtomicLong();
+        private final ScheduledExecutorService timer  = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "heap-sampler");
+            t.setDaemon(true);
+            return t;
+        });
+
+        HeapSampler() {
+            sample();
+            timer.scheduleAtFixedRate(this::sample, PERIOD_MICROS, PERIOD_MICROS, TimeUnit.MICROSECONDS);
+        }
+
+        private void sample() {
+            peak.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+        }
+
+        long peak() { return peak.get(); }
+
+        @Override
+        public void close() {
+            timer.shutdownNow();
+            sample();
+        }
+    }
+
+    /** Median time per tree node (by label) and of the remainder, over the profiled runs. */
+    private Map<String, Double> profile(Map<String, Relation> relations, Engine engine) {
+        Map<String, List<Long>> samples = new LinkedHashMap<>();
+        for (int run = 0; run < profileRuns; run++) {
+            Map<String, Long> nodes = new LinkedHashMap<>();
+            long t0 = System.nanoTime();
+            execute(relations, engine, nodes);
+            long total = System.nanoTime() - t0;
+            long inNodes = 0;
+            for (Map.Entry<String, Long> e : nodes.entrySet()) {
+                samples.computeIfAbsent(e.getKey(), k -> new ArrayList<>()).add(e.getValue());
+                inNodes += e.getValue();
+            }
+            samples.computeIfAbsent(PRUNE, k -> new ArrayList<>()).add(Math.max(0, total - inNodes));
+        }
+        Map<String, Double> medians = new LinkedHashMap<>();
+        for (Map.Entry<String, List<Long>> e : samples.entrySet()) {
+            long[] sorted = e.getValue().stream().mapToLong(Long::longValue).sorted().toArray();
+            medians.put(e.getKey(), pct(sorted, 50));
+        }
+        return medians;
+    }
+
+    /**
+     * One execution as a client would issue it: plan, then evaluate. With
+     * {@code nodeNanos} set, each node's own wall time is added under its label.
+     */
+    private Set<Tuple> execute(Map<String, Relation> relations, Engine engine, Map<String, Long> nodeNanos) {
+        TreeNode root = QueryTreeBuilder.build(relations);
+        LoomisWhitneyInstance lw = new LoomisWhitneyInstance(relations, root);
+        lw.setVectorized(engine == Engine.VECTORIZED);
+        lw.setCancellationToken(CancellationToken.withTimeout(timeoutMs, TimeUnit.MILLISECONDS));
+        if (nodeNanos != null) {
+            lw.setExecutionListener(s -> nodeNanos.merge(s.node.getLabel(), s.wallNanos, Long::sum));
+        }
+        return lw.execute();
+    }
+
+    private static long[] gcTotals() {
+        long millis = 0, count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, gc.getCollectionTime());
+            count  += Math.max(0, gc.getCollectionCount());
+        }
+        return new long[]{millis, count};
+    }
+
+    private static double pct(long[] sorted, double p) {
+        int idx = (int) Math.ceil(p / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(idx, sorted.length - 1))] / 1e6;
+    }
+
+    private static String summary(Measurement m) {
+        if (m.error != null) return String.format("%-40s FAILED: %s", m.key(), m.error);
+        return String.format("%-40s p50=%9.3f p90=%9.3f p99=%9.3f ms  %8.1f q/s  rows=%,d  heap=%.0f MB  gc=%d ms",
+                             m.key(), m.p50, m.p90, m.p99, m.throughput, m.outputRows, m.peakHeapMb, m.gcMillis);
+    }
+
+    // ── Suites ────────────────────────────────────────────────────────────────
+
+    /**
+     * Built-in suite over {@link DatabaseGenerator} data with about
+     * {@code scale} rows per relation: uniform and Zipf triangles, the
+     * worst-case and skewed triangles, the 4-attribute Loomis-Whitney
+     * instance, and 4-clique / 4-cycle over one random graph.
+     */
+    public static List<Case> defaultSuite(int scale, long seed) throws IOException {
+        int domain   = Math.max(2, scale / 10);
+        int vertices = Math.max(8, scale / 4);
+        List<Case> suite = new ArrayList<>();
+
+        Map<String, Relation> db = new HashMap<>();
+        String q = new DatabaseGenerator(seed).triangle(RowSink.relations(db), scale, ValueDistribution.uniform(domain));
+        suite.add(new Case("triangle-uniform", q, db));
+
+        db = new HashMap<>();
+        q = new DatabaseGenerator(seed).triangle(RowSink.relations(db), scale, ValueDistribution.zipf(domain, 1.1));
+        suite.add(new Case("triangle-zipf", q, db));
+
+        db = new HashMap<>();
+        q = new DatabaseGenerator(seed).triangleWorstCase(RowSink.relations(db), scale);
+        suite.add(new Case("triangle-worst", q, db));
+
+        db = new HashMap<>();
+        q = new DatabaseGenerator(seed).triangleSkew(RowSink.relations(db), scale);
+        suite.add(new Case("triangle-skew", q, db));
+
+        db = new HashMap<>();
+        q = new DatabaseGenerator(seed).loomisWhitney(RowSink.relations(db), 4, Math.max(2, (int) Math.round(Math.cbrt(scale))));
+        suite.add(new Case("lw4", q, db));
+
+        DatabaseGenerator graphs = new DatabaseGenerator(seed);
+        long[] edges = graphs.edges(vertices, scale, ValueDistribution.uniform(vertices));
+        db = new HashMap<>();
+        q = graphs.clique(RowSink.relations(db), 4, vertices, edges);
+        suite.add(new Case("clique4", q, db));
+
+        db = new HashMap<>();
+        q = graphs.cycle(RowSink.relations(db), 4, vertices, edges);
+        suite.add(new Case("cycle4", q, db));
+        return suite;
+    }
+
+    /**
+     * Reads a suite file of {@code name = query} lines ({@code #} starts a
+     * comment) over the {@code .csv} and {@code .lwr} relations in
+     * {@code dataDir}, loaded once and shared by all cases.
+     */
+    public static List<Case> loadSuite(File suiteFile, File dataDir) throws IOException {
+        Map<String, Relation> catalog = new HashMap<>();
+        File[] files = dataDir.listFiles();
+        if (files == null) throw new IOException("Not a directory: " + dataDir);
+        Arrays.sort(files);
+        Map<String, File> csvs = new LinkedHashMap<>();
+        for (File f : files) {
+            String n = f.getName();
+            if (n.endsWith(RelationFile.EXTENSION)) {
+                Relation r = RelationFile.read(f);
+                catalog.put(r.getName(), r);
+            } else if (n.endsWith(".csv")) {
+                csvs.put(n.substring(0, n.length() - 4), f);
+            }
+        }
+        csvs.keySet().removeAll(catalog.keySet());
+        catalog.putAll(CsvLoader.loadAll(csvs));
+
+        List<Case> suite = new ArrayList<>();
+        int lineNo = 0;
+        for (String line : Files.readAllLines(suiteFile.toPath(), StandardCharsets.UTF_8)) {
+            lineNo++;
+            int hash = line.indexOf('#');
+            if (hash >= 0) line = line.substring(0, hash);
+            if (line.isBlank()) continue;
+            int eq = line.indexOf('=');
+            if (eq <= 0) throw new IllegalArgumentException(suiteFile + ":" + lineNo + ": expected 'name = query'");
+            suite.add(new Case(line.substring(0, eq).trim(), line.substring(eq + 1).trim(), catalog));
+        }
+        return suite;
+    }
+
+    // ── Result files ──────────────────────────────────────────────────────────
+
+    private static final String CSV_HEADER =
+            "case,engine,threads,phase,p50_ms,p90_ms,p99_ms,max_ms,mean_ms,throughput_qps,"
+          + "output_rows,peak_heap_mb,gc_ms,gc_count,error";
+
+    /** Writes {@code .csv} (one row per phase, {@code total} first) or otherwise JSON. */
+    public static void write(List<Measurement> results, File file) throws IOException {
+        String text = file.getName().endsWith(".csv") ? toCsv(results) : toJson(results);
+        Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String toJson(List<Measurement> results) {
+        Map<String, Object> doc = new LinkedHashMap<>();
+        doc.put("timestamp", java.time.Instant.now().toString());
+        doc.put("java", System.getProperty("java.vm.name") + " " + System.getProperty("java.version"));
+        doc.put("cpus", Runtime.getRuntime().availableProcessors());
+        doc.put("maxHeapMb", Runtime.getRuntime().maxMemory() / (1024 * 1024));
+        List<Object> list = new ArrayList<>();
+        for (Measurement m : results) {
+            Map<String, Object> r = new LinkedHashMap<>();
+            r.put("case", m.caseName);
+            r.put("engine", m.engine);
+            r.put("threads", m.threads);
+            r.put("query", m.query);
+            if (m.error != null) {
+                r.put("error", m.error);
+            } else {
+                r.put("outputRows", m.outputRows);
+                Map<String, Object> lat = new LinkedHashMap<>();
+                lat.put("p50", m.p50);
+                lat.put("p90", m.p90);
+                lat.put("p99", m.p99);
+                lat.put("max", m.max);
+                lat.put("mean", m.mean);
+                r.put("latencyMs", lat);
+                r.put("throughputQps", m.throughput);
+                r.put("peakHeapMb", m.peakHeapMb);
+                r.put("gcMs", m.gcMillis);
+                r.put("gcCount", m.gcCount);
+                r.put("phasesMs", m.phases);
+            }
+            list.add(r);
+        }
+        doc.put("results", list);
+        StringBuilder sb = new StringBuilder();
+        Json.write(sb, doc, "");
+        return sb.append('\n').toString();
+    }
+
+    static String toCsv(List<Measurement> results) {
+        StringBuilder sb = new StringBuilder(CSV_HEADER).append('\n');
+        for (Measurement m : results) {
+            String id = csv(m.caseName) + "," + m.engine + "," + m.threads + ",";
+            if (m.error != null) {
+                sb.append(id).append(TOTAL).append(",,,,,,,,,,,").append(csv(m.error)).append('\n');
+                continue;
+            }
+            sb.append(id).append(TOTAL).append(String.format(Locale.ROOT,
+                    ",%.4f,%.4f,%.4f,%.4f,%.4f,%.2f,%d,%.1f,%d,%d,%n",
+                    m.p50, m.p90, m.p99, m.max, m.mean, m.throughput, m.outputRows,
+                    m.peakHeapMb, m.gcMillis, m.gcCount));
+            for (Map.Entry<String, Double> e : m.phases.entrySet()) {
+                sb.append(id).append(csv(e.getKey()))
+                  .append(String.format(Locale.ROOT, ",%.4f,,,,,,,,,,%n", e.getValue()));
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String csv(String s) {
+        if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0) return s;
+        return '"' + s.replace("\"", "\"\"").replace('\n', ' ') + '"';
+    }
+
+    // ── Baseline comparison ───────────────────────────────────────────────────
+
+    /** A stored run, reduced to what {@link #compare} needs. */
+    public static final class Baseline {
+        final Map<String, Map<String, Double>> phases     = new LinkedHashMap<>();  // key → phase → median ms
+        final Map<String, Long>                outputRows = new HashMap<>();
+        final Set<String>                      failed     = new HashSet<>();
+    }
+
+    /** Reads a file written by {@link #write}, in either format. */
+    public static Baseline readBaseline(File file) throws IOException {
+        String text = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+        Baseline b = new Baseline();
+        if (file.getName().endsWith(".csv")) {
+            String[] lines = text.split("\r?\n");
+            if (lines.length == 0 || !lines[0].equals(CSV_HEADER)) {
+                throw new IOException(file + ": not a benchmark result CSV");
+            }
+            for (int i = 1; i < lines.length; i++) {
+                if (lines[i].isEmpty()) continue;
+                List<String> f = splitCsv(lines[i]);
+                String key = f.get(0) + "/" + f.get(1) + "/t" + f.get(2);
+                if (!f.get(14).isEmpty()) { b.failed.add(key); continue; }
+                b.phases.computeIfAbsent(key, k -> new LinkedHashMap<>()).put(f.get(3), Double.parseDouble(f.get(4)));
+                if (f.get(3).equals(TOTAL)) b.outputRows.put(key, Long.parseLong(f.get(10)));
+            }
+            return b;
+        }
+        Object doc = Json.parse(text);
+        Object results = doc instanceof Map ? ((Map<?, ?>) doc).get("results") : null;
+        if (!(results instanceof List)) throw new IOException(file + ": no \"results\" array");
+        for (Object o : (List<?>) results) {
+            Map<?, ?> r = (Map<?, ?>) o;
+            String key = r.get("case") + "/" + r.get("engine") + "/t" + ((Number) r.get("threads")).intValue();
+            if (r.get("error") != null) { b.failed.add(key); continue; }
+            Map<String, Double> phases = new LinkedHashMap<>();
+            phases.put(TOTAL, ((Number) ((Map<?, ?>) r.get("latencyMs")).get("p50")).doubleValue());
+            Object p = r.get("phasesMs");
+            if (p instanceof Map) {
+                for (Map.Entry<?, ?> e : ((Map<?, ?>) p).entrySet()) {
+                    phases.put(String.valueOf(e.getKey()), ((Number) e.getValue()).doubleValue());
+                }
+            }
+            b.phases.put(key, phases);
+            b.outputRows.put(key, ((Number) r.get("outputRows")).longValue());
+        }
+        return b;
+    }
+
+    private static List<String> splitCsv(String line) {
+        List<String> out = new ArrayList<>();
+        StringBuilder cur = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') { cur.append('"'); i++; }
+                else if (c == '"') quoted = false;
+                else cur.append(c);
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                out.add(cur.toString());
+                cur.setLength(0);
+            } else {
+                cur.append(c);
+            }
+        }
+        out.add(cur.toString());
+        return out;
+    }
+
+    /**
+     * Regressions of {@code current} against {@code baseline}: a phase whose
+     * median exceeds the baseline by more than {@code threshold} (0.10 = 10 %)
+     * and by more than {@code minDeltaMs}, a changed output size, or a case
+     * that completed in the baseline but fails now. Cases absent from the
+     * baseline are not compared.
+     */
+    public static List<Regression> compare(List<Measurement> current, Baseline baseline,
+                                           double threshold, double minDeltaMs) {
+        List<Regression> out = new ArrayList<>();
+        for (Measurement m : current) {
+            String key = m.key();
+            Map<String, Double> before = baseline.phases.get(key);
+            if (before == null) continue;
+            if (m.error != null) {
+                out.add(new Regression(key, TOTAL, "failed: " + m.error));
+                continue;
+            }
+            Long rows = baseline.outputRows.get(key);
+            if (rows != null && rows != m.outputRows) {
+                out.add(new Regression(key, "outputRows", rows + " -> " + m.outputRows));
+            }
+            Map<String, Double> now = new LinkedHashMap<>();
+            now.put(TOTAL, m.p50);
+            now.putAll(m.phases);
+            for (Map.Entry<String, Double> e : now.entrySet()) {
+                Double was = before.get(e.getKey());
+                if (was == null) continue;
+                double is = e.getValue();
+                if (is > was * (1 + threshold) && is - was > minDeltaMs) {
+                    out.add(new Regression(key, e.getKey(), String.format(Locale.ROOT,
+                            "%.3f ms -> %.3f ms (%+.1f%%)", was, is, 100 * (is - was) / was)));
+                }
+            }
+        }
+        return out;
+    }
+
+    // ── CLI ───────────────────────────────────────────────────────────────────
+
+    private static final String USAGE = String.join("\n",
+        "Usage: BenchmarkRunner [options]",
+        "  --suite FILE        'name = query' lines over --data (default: built-in generated suite)",
+        "  --data DIR          directory of .csv / .lwr relations for --suite",
+        "  --scale N           rows per relation of the built-in suite          [200]",
+        "  --seed S            seed of the built-in suite                       [42]",
+        "  --engines LIST      vectorized,scalar                                [both]",
+        "  --threads LIST      concurrent executions, e.g. 1,4                  [1]",
+        "  --warmup N          warm-up executions per measurement               [3]",
+        "  --iterations N      measured executions per thread                   [10]",
+        "  --profile N         profiled executions for the phase breakdown      [3]",
+        "  --timeout-ms MS     per-execution timeout                            [60000]",
+        "  --out FILE          write results (.csv, otherwise JSON)",
+        "  --baseline FILE     compare with a stored run; exit 1 on regression",
+        "  --threshold F       allowed slowdown per phase, 0.10 = 10%           [0.10]",
+        "  --min-delta-ms MS   ignore slowdowns smaller than this               [1.0]");
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opt = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--help") || !args[i].startsWith("--") || i + 1 >= args.length) {
+                System.err.println(USAGE);
+                System.exit(args[i].equals("--help") ? 0 : 2);
+            }
+            opt.put(args[i].substring(2), args[++i]);
+        }
+
+        BenchmarkRunner runner = new BenchmarkRunner();
+        if (opt.containsKey("engines")) {
+            List<Engine> engines = new ArrayList<>();
+            for (String e : opt.get("engines").split(",")) engines.add(Engine.valueOf(e.trim().toUpperCase(Locale.ROOT)));
+            runner.setEngines(engines);
+        }
+        if (opt.containsKey("threads")) {
+            List<Integer> threads = new ArrayList<>();
+            for (String t : opt.get("threads").split(",")) threads.add(Integer.parseInt(t.trim()));
+            runner.setThreadCounts(threads);
+        }
+        runner.setWarmup(Integer.parseInt(opt.getOrDefault("warmup", "3")));
+        runner.setIterations(Integer.parseInt(opt.getOrDefault("iterations", "10")));
+        runner.setProfileRuns(Integer.parseInt(opt.getOrDefault("profile", "3")));
+        runner.setTimeoutMs(Long.parseLong(opt.getOrDefault("timeout-ms", "60000")));
+
+        List<Case> suite;
+        if (opt.containsKey("suite")) {
+            if (!opt.containsKey("data")) throw new IllegalArgumentException("--suite needs --data");
+            suite = loadSuite(new File(opt.get("suite")), new File(opt.get("data")));
+        } else {
+            suite = defaultSuite(Integer.parseInt(opt.getOrDefault("scale", "200")),
+                                 Long.parseLong(opt.getOrDefault("seed", "42")));
+        }
+
+        List<Measurement> results = runner.run(suite);
+        if (opt.containsKey("out")) {
+            File out = new File(opt.get("out"));
+            write(results, out);
+            System.out.println("Results written to " + out);
+        }
+
+        boolean failed = false;
+        for (Measurement m : results) failed |= m.error != null;
+        if (opt.containsKey("baseline")) {
+            List<Regression> regressions = compare(results, readBaseline(new File(opt.get("baseline"))),
+                    Double.parseDouble(opt.getOrDefault("threshold", "0.10")),
+                    Double.parseDouble(opt.getOrDefault("min-delta-ms", "1.0")));
+            if (regressions.isEmpty()) {
+                System.out.println("No regressions against " + opt.get("baseline"));
+            } else {
+                System.out.println(regressions.size() + " regression(s) against " + opt.get("baseline") + ":");
+                for (Regression r : regressions) System.out.println("  " + r);
+                failed = true;
+            }
+        }
+        System.exit(failed ? 1 : 0);
+    }
+}
@@ -0,0 +1,280 @@
+package benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Synthetic databases for scale-testing the engine.
+ *
+ * <ul>
+ *   <li><b>Random</b> — the triangle query over relations whose values
+ *       follow a {@link ValueDistribution} (uniform or Zipf).</li>
+ *   <li><b>Worst-case</b> — instances that meet the AGM bound: the complete
+ *       {@code [m]×[m]} triangle, and the full Loomis-Whitney instance over
+ *       k attributes where every relation is {@code [m]^(k-1)}. Plus the
+ *       skewed triangle, where every pairwise join is quadratic but the
+ *       output is linear — the case binary join plans cannot handle.</li>
+ *   <li><b>Graph</b> — one random edge relation, copied (with renamed
+ *       columns) into every atom of a k-clique or k-cycle query.</li>
+ * </ul>
+ *
+ * Each pattern streams its relations into a {@link RowSink.Factory} (CSV,
+ * binary {@code .lwr}, or in-memory) and returns the query text that joins
+ * them. Random draws come from one seeded {@link Random}, so a seed always
+ * yields the same database.
+ *
+ * <p>CLI: {@code java -cp bin benchmark.DatabaseGenerator <pattern> [options]};
+ * run without arguments for the options.
+ */
+public final class DatabaseGenerator {
+
+    private final Random rnd;
+
+    public DatabaseGenerator(long seed) {
+        this.rnd = new Random(seed);
+    }
+
+    // ── Random instances ──────────────────────────────────────────────────────
+
+    /**
+     * Triangle R(A,B), S(B,C), T(A,C) with {@code rows} rows per relation,
+     * every value drawn independently from {@code dist}. Rows may repeat;
+     * the engine treats relations as sets.
+     */
+    public String triangle(RowSink.Factory out, long rows, ValueDistribution dist) throws IOException {
+        for (String[] atom : TRIANGLE) {
+            try (RowSink sink = out.open(atom[0], List.of(atom[1], atom[2]))) {
+                for (long r = 0; r < rows; r++) sink.accept(dist.next(rnd), dist.next(rnd));
+            }
+        }
+        return TRIANGLE_QUERY;
+    }
+
+    // ── Worst-case instances ──────────────────────────────────────────────────
+
+    /**
+     * AGM-tight triangle: each relation is {@code [m]×[m]} with
+     * {@code m = ⌊√rows⌋}, so the output has {@code m³ = rows^(3/2)} tuples.
+     */
+    public String triangleWorstCase(RowSink.Factory out, long rows) throws IOException {
+        int m = (int) Math.sqrt(rows);
+        for (String[] atom : TRIANGLE) {
+            try (RowSink sink = out.open(atom[0], List.of(atom[1], atom[2]))) {
+                product(sink, 2, m);
+            }
+        }
+        return TRIANGLE_QUERY;
+    }
+
+    /**
+     * Skewed triangle: each relation is {(0,j)} ∪ {(j,0)} for j &lt; n with
+     * n = rows / 2, so 2n − 1 ≈ {@code rows} rows. Any two relations join to
+     * Θ(n²) tuples while the triangle output has only Θ(n).
+     */
+    public String triangleSkew(RowSink.Factory out, long rows) throws IOException {
+        int n = (int) Math.max(1, rows / 2);
+        for (String[] atom : TRIANGLE) {
+            try (RowSink sink = out.open(atom[0], List.of(atom[1], atom[2]))) {
+                sink.accept(0, 0);
+                for (int j = 1; j < n; j++) {
+                    sink.accept(0, j);
+                    sink.accept(j, 0);
+                }
+            }
+        }
+        return TRIANGLE_QUERY;
+    }
+
+    /**
+     * Full Loomis-Whitney instance on attributes A1..Ak: relation Ri covers
+     * every attribute but Ai and is the complete {@code [m]^(k-1)}, so with
+     * N = m^(k-1) rows per relation the output is m^k = N^(k/(k-1)).
+     */
+    public String loomisWhitney(RowSink.Factory out, int k, int m) throws IOException {
+        if (k < 3) throw new IllegalArgumentException("Loomis-Whitney needs k >= 3 attributes: " + k);
+        List<String> atoms = new ArrayList<>();
+        for (int i = 1; i <= k; i++) {
+            List<String> cols = new ArrayList<>();
+            for (int a = 1; a <= k; a++) if (a != i) cols.add("A" + a);
+            try (RowSink sink = out.open("R" + i, cols)) {
+                product(sink, k - 1, m);
+            }
+            atoms.add("R" + i + "(" + String.join(",", cols) + ")");
+        }
+        return String.join(", ", atoms);
+    }
+
+    /** Every row of {@code [m]^arity}, in lexicographic order. */
+    private static void product(RowSink sink, int arity, int m) throws IOException {
+        if (m <= 0) return;
+        int[] row = new int[arity];
+        while (true) {
+            sink.accept(row);
+            int i = arity - 1;
+            while (i >= 0 && ++row[i] == m) row[i--] = 0;
+            if (i < 0) return;
+        }
+    }
+
+    // ── Graph instances ───────────────────────────────────────────────────────
+
+    /**
+     * Distinct undirected edges (u &lt; v, no loops) between {@code vertices}
+     * vertices, endpoints drawn from {@code dist} (Zipf gives a power-law
+     * degree sequence). Packed as {@code u * vertices + v}, sorted. Dense
+     * requests may return fewer than {@code edges} when draws keep colliding.
+     */
+    public long[] edges(int vertices, long edges, ValueDistribution dist) {
+        if (dist.domain() != vertices) {
+            throw new IllegalArgumentException("Distribution domain must equal the vertex count");
+        }
+        long max = (long) vertices * (vertices - 1) / 2;
+        long target = Math.min(edges, max);
+        long[] packed = new long[(int) Math.min(Integer.MAX_VALUE - 8, target)];
+        int n = 0;
+        for (int round = 0; round < 8 && n < target; round++) {
+            // Oversample the shortfall, then sort and drop duplicates
+            while (n < packed.length) {
+                int u = dist.next(rnd), v = dist.next(rnd);
+                if (u == v) continue;
+                packed[n++] = (long) Math.min(u, v) * vertices + Math.max(u, v);
+            }
+            Arrays.sort(packed, 0, n);
+            int unique = 0;
+            for (int i = 0; i < n; i++) {
+                if (unique == 0 || packed[i] != packed[unique - 1]) packed[unique++] = packed[i];
+            }
+            n = unique;
+        }
+        return n == packed.length ? packed : Arrays.copyOf(packed, n);
+    }
+
+    /**
+     * k-clique: relation E{i}{j}(Ai, Aj) for every i &lt; j, each a copy of
+     * the edge set oriented u &lt; v, so every clique is found exactly once.
+     */
+    public String clique(RowSink.Factory out, int k, int vertices, long[] edges) throws IOException {
+        if (k < 3) throw new IllegalArgumentException("Clique needs k >= 3: " + k);
+        List<String> atoms = new ArrayList<>();
+        for (int i = 1; i <= k; i++) {
+            for (int j = i + 1; j <= k; j++) {
+                String name = "E" + i + j;
+                writeEdges(out.open(name, List.of("A" + i, "A" + j)), vertices, edges, false);
+                atoms.add(name + "(A" + i + ",A" + j + ")");
+            }
+        }
+        return String.join(", ", atoms);
+    }
+
+    /**
+     * k-cycle: relation E{i}(Ai, A(i+1)), closing with Ek(Ak, A1), each a
+     * copy of the edge set in both directions.
+     */
+    public String cycle(RowSink.Factory out, int k, int vertices, long[] edges) throws IOException {
+        if (k < 3) throw new IllegalArgumentException("Cycle needs k >= 3: " + k);
+        List<String> atoms = new ArrayList<>();
+        for (int i = 1; i <= k; i++) {
+            String a = "A" + i, b = "A" + (i % k + 1);
+            writeEdges(out.open("E" + i, List.of(a, b)), vertices, edges, true);
+            atoms.add("E" + i + "(" + a + "," + b + ")");
+        }
+        return String.join(", ", atoms);
+    }
+
+    private static void writeEdges(RowSink sink, int vertices, long[] edges, boolean symmetric)
+            throws IOException {
+        try (sink) {
+            for (long e : edges) {
+                int u = (int) (e / vertices), v = (int) (e % vertices);
+                sink.accept(u, v);
+                if (symmetric) sink.accept(v, u);
+            }
+        }
+    }
+
+    private static final String[][] TRIANGLE = {{"R", "A", "B"}, {"S", "B", "C"}, {"T", "A", "C"}};
+    private static final String     TRIANGLE_QUERY = "R(A,B), S(B,C), T(A,C)";
+
+    // ── CLI ───────────────────────────────────────────────────────────────────
+
+    private static final String USAGE = String.join("\n",
+        "Usage: DatabaseGenerator <pattern> [options]",
+        "  patterns: triangle | triangle-worst | triangle-skew | lw | clique | cycle",
+        "  --rows N        rows per relation (triangle*), edges (clique, cycle)   [100000]",
+        "  --domain D      value domain (triangle), vertices (clique, cycle)      [rows / 10]",
+        "  --dist SPEC     uniform | zipf | zipf:<s>                              [uniform]",
+        "  --k K           attributes (lw) or query size (clique, cycle)          [4]",
+        "  --m M           per-attribute domain of the lw instance                [10]",
+        "  --format F      csv | lwr | both                                       [csv]",
+        "  --out DIR       output directory                                       [data]",
+        "  --seed S        random seed                                            [42]");
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        String pattern = args[0];
+        Map<String, String> opt = new HashMap<>();
+        for (int i = 1; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--")) throw new IllegalArgumentException("Expected an option at '" + args[i] + "'");
+            opt.put(args[i].substring(2), args[i + 1]);
+        }
+        long   rows   = Long.parseLong(opt.getOrDefault("rows", "100000"));
+        int    domain = Integer.parseInt(opt.getOrDefault("domain", String.valueOf(Math.max(2, rows / 10))));
+        int    k      = Integer.parseInt(opt.getOrDefault("k", "4"));
+        int    m      = Integer.parseInt(opt.getOrDefault("m", "10"));
+        long   seed   = Long.parseLong(opt.getOrDefault("seed", "42"));
+        String format = opt.getOrDefault("format", "csv");
+        File   dir    = new File(opt.getOrDefault("out", "data"));
+        if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Cannot create " + dir);
+
+        RowSink.Factory sinks;
+        switch (format) {
+            case "csv":  sinks = RowSink.csv(dir); break;
+            case "lwr":  sinks = RowSink.binary(dir); break;
+            case "both": sinks = RowSink.both(RowSink.csv(dir), RowSink.binary(dir)); break;
+            default: throw new IllegalArgumentException("Unknown format '" + format + "' (csv, lwr, both)");
+        }
+
+        // Report each relation as its sink closes
+        Map<String, Long> written = new LinkedHashMap<>();
+        RowSink.Factory counted = (name, columns) -> {
+            RowSink sink = sinks.open(name, columns);
+            return new RowSink() {
+                @Override public void accept(int... row) throws IOException { sink.accept(row); }
+                @Override public long rows() { return sink.rows(); }
+                @Override public void close() throws IOException {
+                    sink.close();
+                    written.put(name + columns, sink.rows());
+                }
+            };
+        };
+
+        DatabaseGenerator gen = new DatabaseGenerator(seed);
+        long t0 = System.nanoTime();
+        String query;
+        switch (pattern) {
+            case "triangle":       query = gen.triangle(counted, rows, ValueDistribution.parse(opt.getOrDefault("dist", "uniform"), domain)); break;
+            case "triangle-worst": query = gen.triangleWorstCase(counted, rows); break;
+            case "triangle-skew":  query = gen.triangleSkew(counted, rows); break;
+            case "lw":             query = gen.loomisWhitney(counted, k, m); break;
+            case "clique":
+            case "cycle": {
+                long[] edges = gen.edges(domain, rows, ValueDistribution.parse(opt.getOrDefault("dist", "uniform"), domain));
+                query = pattern.equals("clique") ? gen.clique(counted, k, domain, edges)
+                                                 : gen.cycle(counted, k, domain, edges);
+                break;
+            }
+            default: throw new IllegalArgumentException("Unknown pattern '" + pattern + "'\n" + USAGE);
+        }
+        double secs = (System.nanoTime() - t0) / 1e9;
+
+        for (Map.Entry<String, Long> e : written.entrySet()) {
+            System.out.printf("  %-24s %,d rows%n", e.getKey(), e.getValue());
+        }
+        System.out.printf("Wrote %d relation(s) to %s (%s) in %.2f s%n", written.size(), dir, format, secs);
+        System.out.println("Query: " + query);
+    }
+}
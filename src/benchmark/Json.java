@@ -0,0 +1,187 @@
+package benchmark;
+
+import java.util.*;
+
+/**
+ * Just enough JSON for benchmark result files: {@link #write} for the
+ * values the runner emits and {@link #parse} to read a stored baseline
+ * back. Objects become {@link LinkedHashMap}s, arrays {@link ArrayList}s,
+ * numbers {@link Double}s.
+ */
+final class Json {
+
+    private Json() {}
+
+    // ── Writing ───────────────────────────────────────────────────────────────
+
+    /** Appends {@code value} (Map, Collection, Number, Boolean, null or anything else as a string). */
+    static void write(StringBuilder out, Object value, String indent) {
+        if (value == null) {
+            out.append("null");
+        } else if (value instanceof Number || value instanceof Boolean) {
+            double d = value instanceof Number ? ((Number) value).doubleValue() : 0;
+            out.append(Double.isFinite(d) || value instanceof Boolean ? value.toString() : "null");
+        } else if (value instanceof Map) {
+            String inner = indent + "  ";
+            out.append('{');
+            boolean first = true;
+            for (Map.Entry<?, ?> e : ((Map<?, ?>) value).entrySet()) {
+                out.append(first ? "\n" : ",\n").append(inner);
+                quote(out, String.valueOf(e.getKey()));
+                out.append(": ");
+                write(out, e.getValue(), inner);
+                first = false;
+            }
+            out.append(first ? "}" : "\n" + indent + "}");
+        } else if (value instanceof Collection) {
+            String inner = indent + "  ";
+            out.append('[');
+            boolean first = true;
+            for (Object v : (Collection<?>) value) {
+                out.append(first ? "\n" : ",\n").append(inner);
+                write(out, v, inner);
+                first = false;
+            }
+            out.append(first ? "]" : "\n" + indent + "]");
+        } else {
+            quote(out, value.toString());
+        }
+    }
+
+    private static void quote(StringBuilder out, String s) {
+        out.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"':  out.append("\\\""); break;
+                case '\\': out.append("\\\\"); break;
+                case '\n': out.append("\\n"); break;
+                case '\r': out.append("\\r"); break;
+                case '\t': out.append("\\t"); break;
+                default:
+                    if (c < 0x20) out.append(String.format("\\u%04x", (int) c));
+                    else out.append(c);
+            }
+        }
+        out.append('"');
+    }
+
+    // ── Parsing ───────────────────────────────────────────────────────────────
+
+    static Object parse(String text) {
+        Json.Parser p = new Json.Parser(text);
+        Object v = p.value();
+        p.skipSpace();
+        if (p.pos != text.length()) throw p.error("trailing content");
+        return v;
+    }
+
+    private static final class Parser {
+        final String s;
+        int pos;
+
+        Parser(String s) { this.s = s; }
+
+        Object value() {
+            skipSpace();
+            if (pos >= s.length()) throw error("unexpected end");
+            char c = s.charAt(pos);
+            switch (c) {
+                case '{': return object();
+                case '[': return array();
+                case '"': return string();
+                case 't': return literal("true", Boolean.TRUE);
+                case 'f': return literal("false", Boolean.FALSE);
+                case 'n': return literal("null", null);
+                default:  return number();
+            }
+        }
+
+        Map<String, Object> object() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            pos++;
+            skipSpace();
+            if (peek() == '}') { pos++; return map; }
+            while (true) {
+                skipSpace();
+                if (peek() != '"') throw error("expected a key");
+                String key = string();
+                skipSpace();
+                expect(':');
+                map.put(key, value());
+                skipSpace();
+                if (peek() == ',') { pos++; continue; }
+                expect('}');
+                return map;
+            }
+        }
+
+        List<Object> array() {
+            List<Object> list = new ArrayList<>();
+            pos++;
+            skipSpace();
+            if (peek() == ']') { pos++; return list; }
+            while (true) {
+                list.add(value());
+                skipSpace();
+                if (peek() == ',') { pos++; continue; }
+                expect(']');
+                return list;
+            }
+        }
+
+        String string() {
+            StringBuilder sb = new StringBuilder();
+            pos++;
+            while (pos < s.length()) {
+                char c = s.charAt(pos++);
+                if (c == '"') return sb.toString();
+                if (c != '\\') { sb.append(c); continue; }
+                if (pos >= s.length()) break;
+                char e = s.charAt(pos++);
+                switch (e) {
+                    case 'n': sb.append('\n'); break;
+                    case 'r': sb.append('\r'); break;
+                    case 't': sb.append('\t'); break;
+                    case 'b': sb.append('\b'); break;
+                    case 'f': sb.append('\f'); break;
+                    case 'u':
+                        if (pos + 4 > s.length()) throw error("bad \\u escape");
+                        sb.append((char) Integer.parseInt(s.substring(pos, pos + 4), 16));
+                        pos += 4;
+                        break;
+                    default: sb.append(e);
+                }
+            }
+            throw error("unterminated string");
+        }
+
+        Double number() {
+            int start = pos;
+            while (pos < s.length() && "+-0123456789.eE".indexOf(s.charAt(pos)) >= 0) pos++;
+            if (start == pos) throw error("unexpected character '" + s.charAt(pos) + "'");
+            return Double.valueOf(s.substring(start, pos));
+        }
+
+        Object literal(String word, Object value) {
+            if (!s.startsWith(word, pos)) throw error("expected " + word);
+            pos += word.length();
+            return value;
+        }
+
+        void skipSpace() {
+            while (pos < s.length() && Character.isWhitespace(s.charAt(pos))) pos++;
+        }
+
+        char peek() { return pos < s.length() ? s.charAt(pos) : '\0'; }
+
+        void expect(char c) {
+            if (peek() != c) throw error("expected '" + c + "'");
+            pos++;
+        }
+
+        IllegalArgumentException error(String what) {
+            return new IllegalArgumentException("Invalid JSON at offset " + pos + ": " + what);
+        }
+    }
+}
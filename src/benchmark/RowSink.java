@@ -0,0 +1,135 @@
+package benchmark;
+
+import database.ColumnType;
+import database.Relation;
+import database.RelationFile;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Destination for generated rows of int values. Rows are streamed, so a
+ * generator never holds more than one relation's encoding in memory.
+ */
+public interface RowSink extends Closeable {
+
+    void accept(int... row) throws IOException;
+
+    /** Rows accepted so far. */
+    long rows();
+
+    /** Opens one sink per generated relation. */
+    @FunctionalInterface
+    interface Factory {
+        RowSink open(String name, List<String> columns) throws IOException;
+    }
+
+    // ── Factories ─────────────────────────────────────────────────────────────
+
+    /** {@code <dir>/<name>.csv} with a header line, as {@link database.CsvLoader} reads it. */
+    static Factory csv(File dir) {
+        return (name, columns) -> {
+            Writer w = new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(new File(dir, name + ".csv")), StandardCharsets.UTF_8), 1 << 16);
+            w.write(String.join(",", columns));
+            w.write('\n');
+            return new RowSink() {
+                private long rows;
+
+                @Override
+                public void accept(int... row) throws IOException {
+                    for (int i = 0; i < row.length; i++) {
+                        if (i > 0) w.write(',');
+                        w.write(Integer.toString(row[i]));
+                    }
+                    w.write('\n');
+                    rows++;
+                }
+
+                @Override public long rows()  { return rows; }
+                @Override public void close() throws IOException { w.close(); }
+            };
+        };
+    }
+
+    /**
+     * {@code <dir>/<name>.lwr} via {@link RelationFile.Writer}. Columns are
+     * {@link ColumnType#LONG}, exactly as the CSV form loads.
+     */
+    static Factory binary(File dir) {
+        return (name, columns) -> {
+            RelationFile.Writer w = new RelationFile.Writer(name, columns, longColumns(columns));
+            return new RowSink() {
+                private final LongCache boxed = new LongCache();
+                private final Object[]  cells = new Object[columns.size()];
+
+                @Override
+                public void accept(int... row) {
+                    for (int i = 0; i < row.length; i++) cells[i] = boxed.get(row[i]);
+                    w.addRow(cells);
+                }
+
+                @Override public long rows()  { return w.size(); }
+                @Override public void close() throws IOException { w.writeTo(new File(dir, name + RelationFile.EXTENSION)); }
+            };
+        };
+    }
+
+    /** In-memory relations, added to {@code target} by name. */
+    static Factory relations(Map<String, Relation> target) {
+        return (name, columns) -> {
+            Relation rel = new Relation(name, columns, longColumns(columns));
+            target.put(name, rel);
+            return new RowSink() {
+                private final LongCache boxed = new LongCache();
+
+                @Override
+                public void accept(int... row) {
+                    Object[] vals = new Object[row.length];
+                    for (int i = 0; i < row.length; i++) vals[i] = boxed.get(row[i]);
+                    rel.addRow(vals);
+                }
+
+                @Override public long rows()  { return rel.size(); }
+                @Override public void close() { }
+            };
+        };
+    }
+
+    /** Every row to both factories' sinks. */
+    static Factory both(Factory a, Factory b) {
+        return (name, columns) -> {
+            RowSink x = a.open(name, columns), y = b.open(name, columns);
+            return new RowSink() {
+                @Override
+                public void accept(int... row) throws IOException {
+                    x.accept(row);
+                    y.accept(row);
+                }
+
+                @Override public long rows() { return x.rows(); }
+
+                @Override
+                public void close() throws IOException {
+                    try (x; y) { /* close both */ }
+                }
+            };
+        };
+    }
+
+    private static List<ColumnType> longColumns(List<String> columns) {
+        return Collections.nCopies(columns.size(), ColumnType.LONG);
+    }
+
+    /** Boxes generated values once each, so equal cells share one {@link Long}. */
+    final class LongCache {
+        private Long[] boxed = new Long[0];
+
+        Long get(int v) {
+            if (v >= boxed.length) boxed = Arrays.copyOf(boxed, Math.max(v + 1, boxed.length * 2));
+            Long b = boxed[v];
+            return b != null ? b : (boxed[v] = (long) v);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package benchmark;
+
+import java.util.Random;
+
+/**
+ * Distribution of attribute values over the domain {@code [0, domain)}.
+ * Zipf puts rank 1 (value 0) at the top, so the same few values are heavy
+ * in every column drawn from it — the skew that makes heavy/light splitting
+ * matter for joins.
+ */
+public abstract class ValueDistribution {
+
+    protected final int domain;
+
+    private ValueDistribution(int domain) {
+        if (domain < 1) throw new IllegalArgumentException("Domain must be positive: " + domain);
+        this.domain = domain;
+    }
+
+    public int domain() { return domain; }
+
+    /** Draws one value in {@code [0, domain)}. */
+    public abstract int next(Random rnd);
+
+    public static ValueDistribution uniform(int domain) {
+        return new ValueDistribution(domain) {
+            @Override public int next(Random rnd) { return rnd.nextInt(this.domain); }
+            @Override public String toString()    { return "uniform(" + this.domain + ")"; }
+        };
+    }
+
+    /** Zipf with P(rank k) ∝ 1/k^exponent, sampled in O(1) time and memory. */
+    public static ValueDistribution zipf(int domain, double exponent) {
+        if (exponent <= 0) throw new IllegalArgumentException("Zipf exponent must be positive: " + exponent);
+        return new Zipf(domain, exponent);
+    }
+
+    /** Parses {@code uniform}, {@code zipf} (exponent 1.0) or {@code zipf:<exponent>}. */
+    public static ValueDistribution parse(String spec, int domain) {
+        if (spec.equalsIgnoreCase("uniform")) return uniform(domain);
+        if (spec.equalsIgnoreCase("zipf"))    return zipf(domain, 1.0);
+        if (spec.toLowerCase().startsWith("zipf:")) {
+            return zipf(domain, Double.parseDouble(spec.substring("zipf:".length())));
+        }
+        throw new IllegalArgumentException("Unknown distribution '" + spec + "' (uniform, zipf, zipf:<s>)");
+    }
+
+    /**
+     * Rejection-inversion sampling (Hörmann &amp; Derflinger, 1996): no
+     * per-domain table, so domains of any size cost the same.
+     */
+    private static final class Zipf extends ValueDistribution {
+        private final double exponent;
+        private final double hIntegralX1, hIntegralN, s;
+
+        Zipf(int domain, double exponent) {
+            super(domain);
+            this.exponent    = exponent;
+            this.hIntegralX1 = hIntegral(1.5) - 1.0;
+            this.hIntegralN  = hIntegral(domain + 0.5);
+            this.s           = 2.0 - hIntegralInverse(hIntegral(2.5) - h(2.0));
+        }
+
+        @Override
+        public int next(Random rnd) {
+            while (true) {
+                double u = hIntegralN + rnd.nextDouble() * (hIntegralX1 - hIntegralN);
+                double x = hIntegralInverse(u);
+                int k = (int) (x + 0.5);
+                if (k < 1) k = 1;
+                else if (k > domain) k = domain;
+                if (k - x <= s || u >= hIntegral(k + 0.5) - h(k)) return k - 1;
+            }
+        }
+
+        private double h(double x)        { return Math.exp(-exponent * Math.log(x)); }
+
+        private double hIntegral(double x) {
+            double logX = Math.log(x);
+            return helper2((1.0 - exponent) * logX) * logX;
+        }
+
+        private double hIntegralInverse(double x) {
+            double t = x * (1.0 - exponent);
+            if (t < -1.0) t = -1.0;
+            return Math.exp(helper1(t) * x);
+        }
+
+        /** log(1 + x) / x, stable near 0. */
+        private static double helper1(double x) {
+            return Math.abs(x) > 1e-8 ? Math.log1p(x) / x : 1.0 - x * (0.5 - x * (1.0 / 3.0 - 0.25 * x));
+        }
+
+        /** (exp(x) - 1) / x, stable near 0. */
+        private static double helper2(double x) {
+            return Math.abs(x) > 1e-8 ? Math.expm1(x) / x : 1.0 + x * 0.5 * (1.0 + x / 3.0 * (1.0 + 0.25 * x));
+        }
+
+        @Override public String toString() { return "zipf(" + domain + ", s=" + exponent + ")"; }
+    }
+}
@@ -0,0 +1,58 @@
+package database;
+
+import java.util.*;
+
+/**
+ * Named relations shared by every query of a long-running process.
+ *
+ * <p>The name → relation map is copy-on-write: writers (serialised on this
+ * catalog) publish a new immutable map, readers take the current one without
+ * locking. {@link #snapshot()} additionally pins every relation at its
+ * current version, so a query sees one consistent state of the catalog even
+ * while rows are appended or relations are replaced.
+ */
+public class Catalog {
+
+    private volatile Map<String, Relation> relations = Collections.emptyMap();
+
+    /** Registers {@code relation} under its name, replacing any previous one. */
+    public synchronized void put(Relation relation) {
+        Map<String, Relation> next = new HashMap<>(relations);
+        next.put(relation.getName(), relation);
+        relations = Collections.unmodifiableMap(next);
+    }
+
+    public Relation get(String name)    { return relations.get(name); }
+
+    public synchronized Relation remove(String name) {
+        Relation removed = relations.get(name);
+        if (removed != null) {
+            Map<String, Relation> next = new HashMap<>(relations);
+            next.remove(name);
+            relations = Collections.unmodifiableMap(next);
+        }
+        return removed;
+    }
+
+    public boolean contains(String name) { return relations.containsKey(name); }
+
+    /** Relation names, sorted. */
+    public List<String> names() {
+        List<String> names = new ArrayList<>(relations.keySet());
+        Collections.sort(names);
+        return names;
+    }
+
+    /**
+     * Point-in-time name → relation map for binding one query. Every relation
+     * in it is a {@link Relation#snapshot()}, unaffected by later writes.
+     */
+    public Map<String, Relation> snapshot() {
+        Map<String, Relation> current = relations;
+        Map<String, Relation> pinned  = new HashMap<>(current.size() * 2);
+        for (Map.Entry<String, Relation> e : current.entrySet()) pinned.put(e.getKey(), e.getValue().snapshot());
+        return Collections.unmodifiableMap(pinned);
+    }
+
+    public int size() { return relations.size(); }
+}
@@ -0,0 +1,190 @@
+package database;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+
+/**
+ * Type of a relation column. Values are stored as the matching Java type,
+ * so equality, hashing and ordering are the type's own instead of text
+ * comparison: {@code 10} and {@code 010} are the same {@link #LONG}.
+ *
+ * <p>CSV headers may declare a type per column ({@code id:long,name}); the
+ * loader infers undeclared ones with {@link #infer}. Query atoms may
+ * declare types the same way ({@code R(a:long,b)}).
+ */
+public enum ColumnType {
+
+    /** Text, stored as a trimmed {@link String}. */
+    STRING,
+    /** 64-bit integers, stored as {@link Long}. */
+    LONG,
+    /** Floating point, stored as {@link Double}. */
+    DOUBLE,
+    /** ISO-8601 calendar dates ({@code 2024-01-31}), stored as {@link LocalDate}. */
+    DATE;
+
+    /**
+     * Parses CSV text as a value of this type.
+     *
+     * @throws IllegalArgumentException if {@code text} is not a value of this type
+     */
+    public Object parse(String text) {
+        try {
+            switch (this) {
+                case LONG:   return Long.valueOf(text);
+                case DOUBLE: return Double.valueOf(text);
+                case DATE:   return LocalDate.parse(text);
+                default:     return text;
+            }
+        } catch (NumberFormatException | DateTimeParseException e) {
+            throw new IllegalArgumentException("'" + text + "' is not a " + name().toLowerCase(Locale.ROOT) + " value");
+        }
+    }
+
+    /** True if {@link #parse} accepts {@code text}. */
+    public boolean accepts(String text) {
+        switch (this) {
+            case LONG:   return isLong(text);
+            case DOUBLE: return isDouble(text);
+            case DATE:   return isDate(text);
+            default:     return true;
+        }
+    }
+
+    /**
+     * Converts a value of another column type to this one, so columns
+     * joined under one attribute compare equal: numbers widen to double,
+     * and anything becomes its text form as a string.
+     *
+     * @throws IllegalArgumentException if {@code value} has no value of this type
+     */
+    public Object convert(Object value) {
+        if (value == null) return null;
+        switch (this) {
+            case STRING:
+                return value.toString();
+            case LONG:
+                if (value instanceof Long) return value;
+                if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+                    return ((Number) value).longValue();
+                }
+                return parse(value.toString().trim());
+            case DOUBLE:
+                if (value instanceof Double) return value;
+                if (value instanceof Number) return ((Number) value).doubleValue();
+                return parse(value.toString().trim());
+            default:
+                return value instanceof LocalDate ? value : parse(value.toString().trim());
+        }
+    }
+
+    /** The type whose values {@code value} belongs to; {@link #STRING} for anything unrecognised. */
+    public static ColumnType of(Object value) {
+        if (value instanceof Long || value instanceof Integer) return LONG;
+        if (value instanceof Double)                           return DOUBLE;
+        if (value instanceof LocalDate)                        return DATE;
+        return STRING;
+    }
+
+    /**
+     * Looks up a type by its name in a header or query; accepts the
+     * usual SQL aliases ({@code int}, {@code bigint}, {@code float},
+     * {@code text}, ...), case-insensitively.
+     *
+     * @throws IllegalArgumentException if the name is not a known type
+     */
+    public static ColumnType named(String name) {
+        switch (name.trim().toLowerCase(Locale.ROOT)) {
+            case "string": case "text": case "varchar": case "str":
+                return STRING;
+            case "long": case "int": case "integer": case "bigint":
+                return LONG;
+            case "double": case "float": case "real": case "decimal":
+                return DOUBLE;
+            case "date":
+                return DATE;
+            default:
+                throw new IllegalArgumentException("Unknown column type '" + name.trim() + "'");
+        }
+    }
+
+    /**
+     * Narrowest type that accepts every non-null value: {@link #LONG}, then
+     * {@link #DOUBLE}, then {@link #DATE}, else {@link #STRING}. Empty
+     * fields are skipped (a typed column reads them as null); a column with
+     * no values at all stays {@link #STRING}.
+     */
+    public static ColumnType infer(Iterable<String> values) {
+        boolean any = false, isLong = true, isDouble = true, isDate = true;
+        for (String v : values) {
+            if (v == null || v.isEmpty()) continue;
+            any = true;
+            if (isLong && !isLong(v))                isLong   = false;
+            if (isDouble && !isLong && !isDouble(v)) isDouble = false;   // every long is a double
+            if (isDate && !isDate(v))                isDate   = false;
+            if (!isLong && !isDouble && !isDate) return STRING;
+        }
+        if (!any)     return STRING;
+        if (isLong)   return LONG;
+        if (isDouble) return DOUBLE;
+        return isDate ? DATE : STRING;
+    }
+
+    /**
+     * Common type for one attribute shared by columns of types {@code a}
+     * and {@code b}: equal types stay, {@link #LONG} and {@link #DOUBLE}
+     * meet at {@link #DOUBLE}, anything else at {@link #STRING}.
+     */
+    public static ColumnType widen(ColumnType a, ColumnType b) {
+        if (a == b) return a;
+        if ((a == LONG && b == DOUBLE) || (a == DOUBLE && b == LONG)) return DOUBLE;
+        return STRING;
+    }
+
+    // ── Recognisers ───────────────────────────────────────────────────────────
+
+    /** Optional sign and 1–18 digits, or a 19-digit value that still fits in a long. */
+    private static boolean isLong(String s) {
+        int n = s.length(), i = 0;
+        if (n > 0 && (s.charAt(0) == '-' || s.charAt(0) == '+')) i++;
+        if (i == n) return false;
+        for (int j = i; j < n; j++) {
+            char ch = s.charAt(j);
+            if (ch < '0' || ch > '9') return false;
+        }
+        if (n - i < 19) return true;
+        try {
+            Long.parseLong(s);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /** Plain decimal or scientific notation; rejects the hex, {@code NaN} and suffix forms Double also takes. */
+    private static boolean isDouble(String s) {
+        int n = s.length();
+        if (n == 0) return false;
+        for (int i = 0; i < n; i++) {
+            char ch = s.charAt(i);
+            if ((ch < '0' || ch > '9') && ch != '.' && ch != '-' && ch != '+' && ch != 'e' && ch != 'E') return false;
+        }
+        try {
+            Double.parseDouble(s);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static boolean isDate(String s) {
+        if (s.length() != 10 || s.charAt(4) != '-' || s.charAt(7) != '-') return false;
+        try {
+            LocalDate.parse(s);
+            return true;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+}
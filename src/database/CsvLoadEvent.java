@@ -0,0 +1,17 @@
+package database;
+
+import jdk.jfr.*;
+
+/** JFR event for reading one relation from CSV. */
+@Name("lw.CsvLoad")
+@Label("CSV Load")
+@Category({"Conjunctive Query", "Ingestion"})
+@Description("Parsing a CSV source into a relation")
+@StackTrace(false)
+class CsvLoadEvent extends Event {
+
+    @Label("Relation")  String relation;
+    @Label("Source")    String source;
+    @Label("Columns")   int    columns;
+    @Label("Rows")      int    rows;
+}
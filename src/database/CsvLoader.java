@@ -0,0 +1,182 @@
+package database;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+/**
+ * Reads a relation from a CSV file whose first line is the header.
+ * Fields are trimmed; short rows are padded with nulls.
+ *
+ * <p>Header fields may declare a column type as {@code name:type}
+ * ({@code id:long,day:date,label}); see {@link ColumnType#named} for the
+ * accepted names. Undeclared columns get the narrowest type that fits all
+ * their values ({@link ColumnType#infer}), so numeric columns load as
+ * {@link Long} or {@link Double} and compare by value. Declare a column
+ * {@code :string} to keep its text as written. In typed columns an empty
+ * field reads as null.
+ *
+ * <p>Files are parsed in parallel through memory-mapped chunks (see
+ * {@link MappedCsvParser}); {@link #loadAll} also loads several files
+ * at once. Readers are parsed line by line.
+ */
+public class CsvLoader {
+
+    private CsvLoader() { }
+
+    public static Relation load(String name, File file) throws IOException {
+        CsvLoadEvent event = new CsvLoadEvent();
+        event.begin();
+        Relation rel = MappedCsvParser.parse(name, file);
+        commit(event, rel, file.getPath());
+        return rel;
+    }
+
+    /**
+     * Loads every {@code name → file} entry concurrently, each file itself
+     * parsed in parallel.
+     *
+     * @return name → relation, in the iteration order of {@code files}
+     */
+    public static Map<String, Relation> loadAll(Map<String, File> files) throws IOException {
+        Map<String, Relation> loaded = new ConcurrentHashMap<>();
+        try {
+            files.entrySet().parallelStream().forEach(e -> {
+                try {
+                    loaded.put(e.getKey(), load(e.getKey(), e.getValue()));
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(e.getValue() + ": " + ex.getMessage(), ex);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw new IOException(e.getMessage(), e.getCause());
+        }
+        Map<String, Relation> ordered = new LinkedHashMap<>();
+        for (String name : files.keySet()) ordered.put(name, loaded.get(name));
+        return ordered;
+    }
+
+    /** Reads CSV text from {@code reader}, which is closed afterwards. */
+    public static Relation load(String name, Reader reader) throws IOException {
+        return load(name, reader, "stream");
+    }
+
+    private static Relation load(String name, Reader reader, String source) throws IOException {
+        CsvLoadEvent event = new CsvLoadEvent();
+        event.begin();
+        try (BufferedReader br = new BufferedReader(reader)) {
+            String headerLine = br.readLine();
+            if (headerLine == null) throw new IOException("CSV file is empty");
+            Header header = new Header(headerLine);
+            int ncols = header.columns.size();
+
+            Dictionary dict = new Dictionary();
+            int[][] codes = new int[ncols][64];
+            int rows = 0;
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (line.trim().isEmpty()) continue;
+                String[] values = line.split(",");
+                if (rows == codes[0].length) {
+                    for (int c = 0; c < ncols; c++) codes[c] = Arrays.copyOf(codes[c], rows * 2);
+                }
+                // Pad with nulls if some columns are missing
+                for (int c = 0; c < ncols; c++) {
+                    codes[c][rows] = c < values.length ? dict.encode(values[c].trim()) : -1;
+                }
+                rows++;
+            }
+            String[] text = new String[dict.size()];
+            for (int i = 0; i < text.length; i++) text[i] = (String) dict.decode(i);
+            Relation rel = typed(name, header, text, codes, rows);
+            commit(event, rel, source);
+            return rel;
+        }
+    }
+
+    // ── Column types ──────────────────────────────────────────────────────────
+
+    /** Column names and declared types from a header line; a null type is inferred from the data. */
+    static final class Header {
+        final List<String>     columns  = new ArrayList<>();
+        final List<ColumnType> declared = new ArrayList<>();
+
+        Header(String line) throws IOException {
+            for (String field : line.split(",")) {
+                int colon = field.lastIndexOf(':');
+                try {
+                    declared.add(colon < 0 ? null : ColumnType.named(field.substring(colon + 1)));
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Header field '" + field.trim() + "': " + e.getMessage());
+                }
+                columns.add((colon < 0 ? field : field.substring(0, colon)).trim());
+            }
+        }
+    }
+
+    /**
+     * Builds the relation from text cells: column c of row r is
+     * {@code text[codes[c][r]]}, -1 meaning null. Each undeclared column's
+     * type is inferred from the distinct values it uses, and each distinct
+     * value of a typed column is parsed once. A typed column with a value
+     * that does not print back as written keeps its codes as the relation's
+     * {@link Relation.CellText}.
+     */
+    static Relation typed(String name, Header header, String[] text, int[][] codes, int size) throws IOException {
+        int ncols = header.columns.size();
+        ColumnType[] types = new ColumnType[ncols];
+        Object[][] parsed = new Object[ncols][];   // per typed column: code → value; null for STRING columns
+        int[][]    kept   = new int[ncols][];      // codes of the typed columns whose text must be kept
+        try {
+            IntStream.range(0, ncols).parallel().forEach(c -> {
+                BitSet used = new BitSet(text.length);
+                int[] col = codes[c];
+                for (int r = 0; r < size; r++) if (col[r] >= 0) used.set(col[r]);
+                ColumnType type = header.declared.get(c);
+                if (type == null) {
+                    List<String> distinct = new ArrayList<>(used.cardinality());
+                    for (int code = used.nextSetBit(0); code >= 0; code = used.nextSetBit(code + 1)) {
+                        distinct.add(text[code]);
+                    }
+                    type = ColumnType.infer(distinct);
+                }
+                types[c] = type;
+                if (type == ColumnType.STRING) return;
+                Object[] values = new Object[text.length];
+                boolean asWritten = true;
+                for (int code = used.nextSetBit(0); code >= 0; code = used.nextSetBit(code + 1)) {
+                    try {
+                        values[code] = text[code].isEmpty() ? null : type.parse(text[code]);
+                    } catch (IllegalArgumentException e) {
+                        throw new IllegalArgumentException(
+                            "Column '" + header.columns.get(c) + "' of " + name + ": " + e.getMessage());
+                    }
+                    if (asWritten) asWritten = text[code].equals(ColumnType.STRING.convert(values[code]));
+                }
+                parsed[c] = values;
+                if (!asWritten) kept[c] = col;
+            });
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        Relation.CellText cellText = Arrays.stream(kept).anyMatch(Objects::nonNull)
+                ? new Relation.CellText(kept, text, size) : null;
+        return Relation.fromCodes(name, header.columns, Arrays.asList(types), codes, size,
+                                  (c, code) -> parsed[c] == null ? text[code] : parsed[c][code], cellText);
+    }
+
+    private static void commit(CsvLoadEvent event, Relation rel, String source) {
+        if (event.shouldCommit()) {
+            event.relation = rel.getName();
+            event.source   = source;
+            event.columns  = rel.columnCount();
+            event.rows     = rel.size();
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package database;
+
+import java.util.*;
+
+/**
+ * Dense dictionary encoding of attribute values: each distinct value gets
+ * the next int code, starting at 0. Equal values (by {@code equals}) always
+ * share a code, so code equality can stand in for value equality.
+ */
+public class Dictionary {
+
+    private final Map<Object, Integer> codes  = new HashMap<>();
+    private final List<Object>         values = new ArrayList<>();
+
+    /** Returns the code of {@code value}, assigning a new one if unseen. */
+    public int encode(Object value) {
+        Integer code = codes.get(value);
+        if (code == null) {
+            code = values.size();
+            codes.put(value, code);
+            values.add(value);
+        }
+        return code;
+    }
+
+    /** Returns the code of {@code value}, or -1 if it has none. */
+    public int lookup(Object value) {
+        Integer code = codes.get(value);
+        return code == null ? -1 : code;
+    }
+
+    public Object decode(int code) { return values.get(code); }
+
+    /** Number of distinct values; codes range over {@code [0, size())}. */
+    public int size() { return values.size(); }
+}
@@ -0,0 +1,312 @@
+package database;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Parses a CSV file through memory-mapped, newline-aligned chunks in
+ * parallel, straight from bytes into per-column dictionary codes.
+ *
+ * <ol>
+ *   <li>The body after the header is cut into chunks of 1–64 MiB, each
+ *       ending just after a line terminator, so every chunk holds whole
+ *       lines and fits in one mapping.</li>
+ *   <li>Each chunk is mapped and parsed on its own worker: fields are
+ *       trimmed in place and looked up in a chunk-local hash table over
+ *       the raw bytes, so a value is only decoded to a String the first
+ *       time the chunk sees it.</li>
+ *   <li>The chunk dictionaries are merged into one (equal values share one
+ *       String instance), the codes are remapped into whole-relation
+ *       columns, and {@link CsvLoader#typed} parses each distinct value
+ *       into its column's type and builds the rows.</li>
+ * </ol>
+ *
+ * Produces exactly what {@link CsvLoader}'s line reader produces: UTF-8,
+ * {@code \n}, {@code \r\n} or {@code \r} line ends, blank lines skipped,
+ * {@code split(",")} field semantics (trailing empty fields read as null).
+ */
+final class MappedCsvParser {
+
+    private static final int MIN_CHUNK = 1 << 20;
+    private static final int MAX_CHUNK = 64 << 20;   // well under the 2 GiB limit of one mapping
+    private static final int NULL_CODE = -1;
+
+    private MappedCsvParser() { }
+
+    static Relation parse(String name, File file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size == 0) throw new IOException("CSV file is empty");
+
+            long headerEnd = nextTerminator(ch, 0, size);
+            byte[] headerBytes = new byte[(int) headerEnd];
+            readFully(ch, ByteBuffer.wrap(headerBytes), 0);
+            CsvLoader.Header header = new CsvLoader.Header(new String(headerBytes, StandardCharsets.UTF_8));
+            int ncols = header.columns.size();
+
+            long[] bounds = chunkBounds(ch, Math.min(size, headerEnd + 1), size);
+            List<Chunk> chunks;
+            try {
+                chunks = IntStream.range(0, bounds.length - 1).parallel()
+                        .mapToObj(i -> parseChunk(ch, bounds[i], bounds[i + 1], ncols))
+                        .collect(Collectors.toList());
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            return merge(name, header, chunks);
+        }
+    }
+
+    // ── Chunking ──────────────────────────────────────────────────────────────
+
+    /** Chunk start offsets plus {@code end}; every chunk but the last ends right after a line terminator. */
+    private static long[] chunkBounds(FileChannel ch, long start, long end) throws IOException {
+        long target = (end - start) / (4L * Runtime.getRuntime().availableProcessors());
+        target = Math.max(MIN_CHUNK, Math.min(MAX_CHUNK, target));
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(start);
+        long pos = start;
+        while (end - pos > target) {
+            long cut = nextTerminator(ch, pos + target, end);
+            if (cut >= end) break;
+            if (cut + 1 - pos > Integer.MAX_VALUE) throw new IOException("CSV line too long near offset " + pos);
+            pos = cut + 1;
+            bounds.add(pos);
+        }
+        bounds.add(end);
+        return bounds.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    /** Offset of the first {@code \n} or {@code \r} at or after {@code from}, or {@code end} if none. */
+    private static long nextTerminator(FileChannel ch, long from, long end) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(8192);
+        long pos = from;
+        while (pos < end) {
+            buf.clear();
+            int n = ch.read(buf, pos);
+            if (n <= 0) break;
+            for (int i = 0; i < n; i++) {
+                byte b = buf.get(i);
+                if (b == '\n' || b == '\r') return pos + i;
+            }
+            pos += n;
+        }
+        return end;
+    }
+
+    private static void readFully(FileChannel ch, ByteBuffer dst, long pos) throws IOException {
+        while (dst.hasRemaining()) {
+            int n = ch.read(dst, pos);
+            if (n < 0) throw new IOException("Unexpected end of file");
+            pos += n;
+        }
+    }
+
+    // ── Per-chunk parsing ─────────────────────────────────────────────────────
+
+    /** One chunk's rows as codes into its own dictionary. */
+    private static final class Chunk {
+        int       rows;
+        int[][]   codes;
+        String[]  values;   // local code → decoded value
+    }
+
+    private static Chunk parseChunk(FileChannel ch, long start, long end, int ncols) {
+        MappedByteBuffer buf;
+        try {
+            buf = ch.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        // Parsed in place through absolute gets; nothing is copied out of the mapping
+        ByteBuffer data = buf;
+        int len = buf.limit();
+        LocalDictionary dict = new LocalDictionary(data);
+        int capacity = Math.max(16, len / (8 * Math.max(1, ncols)));
+        int[][] codes = new int[ncols][capacity];
+        int rows = 0;
+        int[] fieldStart = new int[ncols], fieldEnd = new int[ncols];
+
+        int pos = 0;
+        while (pos < len) {
+            int lineEnd = pos;
+            while (lineEnd < len) {
+                byte b = data.get(lineEnd);
+                if (b == '\n' || b == '\r') break;
+                lineEnd++;
+            }
+            if (!blank(data, pos, lineEnd)) {
+                // Split on commas; keep the first ncols fields and the last non-empty one
+                int field = 0, lastNonEmpty = -1, fs = pos;
+                for (int i = pos; i <= lineEnd; i++) {
+                    if (i < lineEnd && data.get(i) != ',') continue;
+                    if (i > fs) lastNonEmpty = field;
+                    if (field < ncols) {
+                        fieldStart[field] = fs;
+                        fieldEnd[field]   = i;
+                    }
+                    field++;
+                    fs = i + 1;
+                }
+                if (rows == capacity) {
+                    capacity *= 2;
+                    for (int c = 0; c < ncols; c++) codes[c] = Arrays.copyOf(codes[c], capacity);
+                }
+                for (int c = 0; c < ncols; c++) {
+                    if (c > lastNonEmpty) {
+                        codes[c][rows] = NULL_CODE;   // split(",") dropped it: padded with null
+                        continue;
+                    }
+                    int s = fieldStart[c], e = fieldEnd[c];
+                    while (s < e && (data.get(s) & 0xFF) <= ' ') s++;
+                    while (e > s && (data.get(e - 1) & 0xFF) <= ' ') e--;
+                    codes[c][rows] = dict.encode(s, e);
+                }
+                rows++;
+            }
+            pos = lineEnd + 1;
+        }
+
+        Chunk chunk = new Chunk();
+        chunk.rows   = rows;
+        chunk.codes  = codes;
+        chunk.values = dict.decodeAll();
+        return chunk;
+    }
+
+    /** Same test as {@code line.trim().isEmpty()}. */
+    private static boolean blank(ByteBuffer data, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if ((data.get(i) & 0xFF) > ' ') return false;
+        }
+        return true;
+    }
+
+    /**
+     * Open-addressing table from byte ranges of one chunk to local codes;
+     * entries point back into the chunk's mapping instead of copying them.
+     */
+    private static final class LocalDictionary {
+        private final ByteBuffer data;
+        private int[] table = new int[1024];   // code + 1, 0 = empty
+        private int[] start = new int[256];
+        private int[] len   = new int[256];
+        private int[] hash  = new int[256];
+        private int   size;
+
+        LocalDictionary(ByteBuffer data) { this.data = data; }
+
+        int encode(int s, int e) {
+            int h = 1;
+            for (int i = s; i < e; i++) h = 31 * h + data.get(i);
+            h ^= h >>> 16;
+            int mask = table.length - 1;
+            for (int slot = h & mask; ; slot = (slot + 1) & mask) {
+                int entry = table[slot];
+                if (entry == 0) {
+                    int code = add(s, e - s, h);
+                    table[slot] = code + 1;
+                    if (size * 2 > table.length) rehash();
+                    return code;
+                }
+                int code = entry - 1;
+                if (hash[code] == h && sameBytes(code, s, e)) return code;
+            }
+        }
+
+        private boolean sameBytes(int code, int s, int e) {
+            if (len[code] != e - s) return false;
+            int o = start[code];
+            for (int i = 0; i < e - s; i++) {
+                if (data.get(o + i) != data.get(s + i)) return false;
+            }
+            return true;
+        }
+
+        private int add(int s, int length, int h) {
+            if (size == start.length) {
+                start = Arrays.copyOf(start, size * 2);
+                len   = Arrays.copyOf(len, size * 2);
+                hash  = Arrays.copyOf(hash, size * 2);
+            }
+            start[size] = s;
+            len[size]   = length;
+            hash[size]  = h;
+            return size++;
+        }
+
+        private void rehash() {
+            int[] next = new int[table.length * 2];
+            int mask = next.length - 1;
+            for (int code = 0; code < size; code++) {
+                int slot = hash[code] & mask;
+                while (next[slot] != 0) slot = (slot + 1) & mask;
+                next[slot] = code + 1;
+            }
+            table = next;
+        }
+
+        String[] decodeAll() {
+            String[] out = new String[size];
+            byte[] bytes = new byte[64];
+            for (int code = 0; code < size; code++) {
+                if (bytes.length < len[code]) bytes = new byte[Math.max(len[code], bytes.length * 2)];
+                data.get(start[code], bytes, 0, len[code]);
+                out[code] = new String(bytes, 0, len[code], StandardCharsets.UTF_8);
+            }
+            return out;
+        }
+    }
+
+    // ── Merge ─────────────────────────────────────────────────────────────────
+
+    private static Relation merge(String name, CsvLoader.Header header, List<Chunk> chunks) throws IOException {
+        int ncols = header.columns.size();
+        Map<String, Integer> global = new HashMap<>();
+        List<String> dictionary = new ArrayList<>();
+        int[][] remap = new int[chunks.size()][];
+        int[] offset = new int[chunks.size() + 1];
+        for (int k = 0; k < chunks.size(); k++) {
+            Chunk chunk = chunks.get(k);
+            int[] map = remap[k] = new int[chunk.values.length];
+            for (int code = 0; code < map.length; code++) {
+                String v = chunk.values[code];
+                Integer g = global.get(v);
+                if (g == null) {
+                    g = dictionary.size();
+                    global.put(v, g);
+                    dictionary.add(v);
+                }
+                map[code] = g;
+            }
+            long next = (long) offset[k] + chunk.rows;
+            if (next > Integer.MAX_VALUE) throw new IllegalArgumentException("Relation '" + name + "' exceeds 2^31 rows");
+            offset[k + 1] = (int) next;
+        }
+
+        int total = offset[chunks.size()];
+        int[][] codes = new int[ncols][total];
+        IntStream.range(0, chunks.size()).parallel().forEach(k -> {
+            Chunk chunk = chunks.get(k);
+            int[] map = remap[k];
+            for (int c = 0; c < ncols; c++) {
+                int[] src = chunk.codes[c], dst = codes[c];
+                for (int r = 0, o = offset[k]; r < chunk.rows; r++, o++) {
+                    int code = src[r];
+                    dst[o] = code == NULL_CODE ? NULL_CODE : map[code];
+                }
+            }
+            chunk.codes = null;
+        });
+        return CsvLoader.typed(name, header, dictionary.toArray(new String[0]), codes, total);
+    }
+}
@@ -0,0 +1,303 @@
+package database;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * A {@link RelationFile} opened in place. Opening reads the 64-byte header
+ * and the schema and maps the other sections; nothing else is read until
+ * it is used, so opening costs the same for any file size.
+ *
+ * <ul>
+ *   <li>Codes are read straight from the mapped columns
+ *       ({@link #code}, {@link #codes}).</li>
+ *   <li>Dictionary entries are decoded on first use and cached
+ *       ({@link #value}, {@link #lookup}).</li>
+ *   <li>Per-block min/max codes ({@link #minCode}, {@link #maxCode}) and
+ *       prebuilt indexes ({@link #rowsWithCode}) answer value lookups and,
+ *       because codes follow each column type's value order, range
+ *       predicates without touching most of the column
+ *       ({@link #rowsMatching}, {@link #rowsInRange}).</li>
+ *   <li>{@link #toRelation()} gives a read-only {@link Relation} whose
+ *       rows are decoded from the mapping when first read.</li>
+ * </ul>
+ *
+ * Each column and index must fit in one 2 GiB mapping (about 500 M rows).
+ */
+public final class MappedRelation {
+
+    private final String           name;
+    private final List<String>     columns;
+    private final List<ColumnType> types;
+    private final int              rows, dictSize, blockRows, blocks;
+    private final IntBuffer        dictEntries;          // dictSize + 1 offsets into dictHeap
+    private final ByteBuffer       dictHeap;
+    private final IntBuffer[]      minCodes, maxCodes, codes;
+    private final IntBuffer[]      indexStarts, indexRows; // null for columns without an index
+    private volatile Object[]      decoded;              // dictionary values decoded so far, allocated on first use
+
+    private MappedRelation(String name, List<String> columns, List<ColumnType> types, int rows, int dictSize, int blockRows,
+                           IntBuffer dictEntries, ByteBuffer dictHeap,
+                           IntBuffer[] minCodes, IntBuffer[] maxCodes, IntBuffer[] codes,
+                           IntBuffer[] indexStarts, IntBuffer[] indexRows) {
+        this.name        = name;
+        this.columns     = Collections.unmodifiableList(columns);
+        this.types       = Collections.unmodifiableList(types);
+        this.rows        = rows;
+        this.dictSize    = dictSize;
+        this.blockRows   = blockRows;
+        this.blocks      = (rows + blockRows - 1) / blockRows;
+        this.dictEntries = dictEntries;
+        this.dictHeap    = dictHeap;
+        this.minCodes    = minCodes;
+        this.maxCodes    = maxCodes;
+        this.codes       = codes;
+        this.indexStarts = indexStarts;
+        this.indexRows   = indexRows;
+    }
+
+    /** Maps {@code file}; the mappings stay valid after the file is closed. */
+    public static MappedRelation open(File file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(RelationFile.HEADER_SIZE);
+            while (header.hasRemaining() && ch.read(header, header.position()) > 0) { }
+            header.flip();
+            if (header.remaining() < RelationFile.HEADER_SIZE || header.getInt() != RelationFile.MAGIC) {
+                throw new IOException(file + " is not a relation file");
+            }
+            int  rows          = header.getInt();
+            int  ncols         = header.getInt();
+            int  dictSize      = header.getInt();
+            int  blockRows     = header.getInt();
+            int  indexCount    = header.getInt();
+            long schemaOffset  = header.getLong();
+            long dictOffset    = header.getLong();
+            long columnsOffset = header.getLong();
+            long dirOffset     = header.getLong();
+
+            DataInputStream schema = new DataInputStream(new ByteArrayInputStream(
+                    bytes(map(ch, schemaOffset, dictOffset - schemaOffset))));
+            String name = schema.readUTF();
+            List<String> columns = new ArrayList<>();
+            List<ColumnType> types = new ArrayList<>();
+            for (int c = 0; c < ncols; c++) {
+                columns.add(schema.readUTF());
+                types.add(ColumnType.valueOf(schema.readUTF()));
+            }
+
+            MappedByteBuffer dict = map(ch, dictOffset, columnsOffset - dictOffset);
+            int entryBytes = 4 * (dictSize + 1);
+            IntBuffer entries = dict.slice(0, entryBytes).asIntBuffer();
+            ByteBuffer heap = dict.slice(entryBytes, dict.capacity() - entryBytes);
+
+            int blocks = (rows + blockRows - 1) / blockRows;
+            long stride = 4L * (2L * blocks + rows);
+            IntBuffer[] min = new IntBuffer[ncols], max = new IntBuffer[ncols], codes = new IntBuffer[ncols];
+            for (int c = 0; c < ncols; c++) {
+                MappedByteBuffer col = map(ch, columnsOffset + c * stride, stride);
+                min[c]   = col.slice(0, 4 * blocks).asIntBuffer();
+                max[c]   = col.slice(4 * blocks, 4 * blocks).asIntBuffer();
+                codes[c] = col.slice(8 * blocks, 4 * rows).asIntBuffer();
+            }
+
+            IntBuffer[] starts = new IntBuffer[ncols], ids = new IntBuffer[ncols];
+            if (indexCount > 0) {
+                ByteBuffer dir = map(ch, dirOffset, 16L * indexCount);
+                for (int i = 0; i < indexCount; i++) {
+                    int  column = dir.getInt(16 * i);
+                    long offset = dir.getLong(16 * i + 8);
+                    MappedByteBuffer index = map(ch, offset, 4L * (dictSize + 1 + rows));
+                    starts[column] = index.slice(0, 4 * (dictSize + 1)).asIntBuffer();
+                    ids[column]    = index.slice(4 * (dictSize + 1), 4 * rows).asIntBuffer();
+                }
+            }
+            return new MappedRelation(name, columns, types, rows, dictSize, blockRows,
+                                      entries, heap, min, max, codes, starts, ids);
+        }
+    }
+
+    private static MappedByteBuffer map(FileChannel ch, long offset, long length) throws IOException {
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Relation file section of " + length + " bytes exceeds one 2 GiB mapping");
+        }
+        return ch.map(FileChannel.MapMode.READ_ONLY, offset, length);
+    }
+
+    private static byte[] bytes(ByteBuffer buf) {
+        byte[] out = new byte[buf.remaining()];
+        buf.get(buf.position(), out);
+        return out;
+    }
+
+    // ── Schema ────────────────────────────────────────────────────────────────
+
+    public String           getName()        { return name; }
+    public List<String>     getColumns()     { return columns; }
+    public List<ColumnType> getColumnTypes() { return types; }
+    public int              columnCount()    { return columns.size(); }
+    public int              size()           { return rows; }
+    public int              dictionarySize() { return dictSize; }
+
+    /**
+     * Read-only relation over this file. Size and version are known at
+     * once; rows are decoded from the mapped columns when first read.
+     */
+    public Relation toRelation() {
+        return Relation.deferred(name, columns, types,
+                new Relation.Deferred(rows, (c, r) -> codes[c].get(r), (c, code) -> value(code)));
+    }
+
+    // ── Codes and values ──────────────────────────────────────────────────────
+
+    /** Dictionary code of cell (row, column); -1 for null. */
+    public int code(int column, int row) { return codes[column].get(row); }
+
+    /** Read-only view of a whole column's codes, straight from the mapping. */
+    public IntBuffer codes(int column) { return codes[column].asReadOnlyBuffer(); }
+
+    /** The value with dictionary code {@code code}, decoded once and cached. */
+    public Object value(int code) {
+        Object[] cache = decoded;
+        if (cache == null) {
+            synchronized (this) {
+                if (decoded == null) decoded = new Object[dictSize];
+                cache = decoded;
+            }
+        }
+        Object v = cache[code];
+        if (v == null) {
+            // Values are immutable, so a racing thread at worst decodes the same entry twice
+            int from = dictEntries.get(code), to = dictEntries.get(code + 1);
+            byte[] raw = new byte[to - from];
+            dictHeap.get(from, raw);
+            try {
+                v = TupleCodec.readValue(new DataInputStream(new ByteArrayInputStream(raw)));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Corrupt dictionary entry " + code + " in " + name, e);
+            }
+            cache[code] = v;
+        }
+        return v;
+    }
+
+    /** The code of {@code value} (binary search of the sorted dictionary), or -1 if absent. */
+    public int lookup(Object value) {
+        if (value == null) return -1;
+        int lo = 0, hi = dictSize - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = RelationFile.compareValues(value(mid), value);
+            if (cmp < 0) lo = mid + 1;
+            else if (cmp > 0) hi = mid - 1;
+            else return mid;
+        }
+        return -1;
+    }
+
+    // ── Blocks and indexes ────────────────────────────────────────────────────
+
+    public int blockCount() { return blocks; }
+    public int blockRows()  { return blockRows; }
+
+    /** Smallest code in the block; -1 if the block holds only nulls. Code order is value order. */
+    public int minCode(int column, int block) { return minCodes[column].get(block); }
+    /** Largest code in the block; -1 if the block holds only nulls. */
+    public int maxCode(int column, int block) { return maxCodes[column].get(block); }
+
+    public boolean hasIndex(int column) { return indexRows[column] != null; }
+
+    /** Rows whose {@code column} holds {@code code}, ascending, read from the prebuilt index. */
+    public IntBuffer rowsWithCode(int column, int code) {
+        if (!hasIndex(column)) throw new IllegalStateException("No index on column " + columns.get(column));
+        int from = indexStarts[column].get(code), to = indexStarts[column].get(code + 1);
+        return indexRows[column].slice(from, to - from).asReadOnlyBuffer();
+    }
+
+    /**
+     * Rows whose {@code column} equals {@code value}, ascending: from the
+     * index when there is one, otherwise by scanning only the blocks whose
+     * min/max range contains the value's code. {@code value} is first
+     * converted to the column's type, so {@code 7} finds {@code 7L}.
+     */
+    public int[] rowsMatching(int column, Object value) {
+        int code = lookup(types.get(column).convert(value));
+        if (code < 0) return new int[0];
+        if (hasIndex(column)) {
+            IntBuffer ids = rowsWithCode(column, code);
+            int[] out = new int[ids.remaining()];
+            ids.get(out);
+            return out;
+        }
+        IntBuffer col = codes[column];
+        int[] out = new int[16];
+        int n = 0;
+        for (int b = 0; b < blocks; b++) {
+            if (code < minCode(column, b) || code > maxCode(column, b)) continue;
+            for (int r = b * blockRows, end = Math.min(rows, r + blockRows); r < end; r++) {
+                if (col.get(r) != code) continue;
+                if (n == out.length) out = Arrays.copyOf(out, n * 2);
+                out[n++] = r;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    /**
+     * Rows whose {@code column} lies in {@code [from, to]}, ascending; a
+     * null bound leaves that side open. The bounds map to one run of codes
+     * in the sorted dictionary, which is read from the index when there is
+     * one; otherwise only blocks whose min/max codes overlap the run are
+     * scanned. Bounds are converted to the column's type first.
+     */
+    public int[] rowsInRange(int column, Object from, Object to) {
+        from = types.get(column).convert(from);
+        to   = types.get(column).convert(to);
+        int lo = from == null ? 0 : firstCode(from, false);
+        int hi = to == null ? dictSize : firstCode(to, true);   // exclusive
+        if (lo >= hi) return new int[0];
+        if (hasIndex(column)) {
+            int start = indexStarts[column].get(lo), end = indexStarts[column].get(hi);
+            int[] out = new int[end - start];
+            indexRows[column].get(start, out);
+            Arrays.sort(out);
+            return out;
+        }
+        IntBuffer col = codes[column];
+        int[] out = new int[16];
+        int n = 0;
+        for (int b = 0; b < blocks; b++) {
+            int min = minCode(column, b), max = maxCode(column, b);
+            if (max < lo || min >= hi || max < 0) continue;
+            for (int r = b * blockRows, end = Math.min(rows, r + blockRows); r < end; r++) {
+                int code = col.get(r);
+                if (code < lo || code >= hi) continue;
+                if (n == out.length) out = Arrays.copyOf(out, n * 2);
+                out[n++] = r;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    /** First code whose value is {@code >= bound}, or {@code > bound} if {@code after}. */
+    private int firstCode(Object bound, boolean after) {
+        int lo = 0, hi = dictSize;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = RelationFile.compareValues(value(mid), bound);
+            if (cmp < 0 || (after && cmp == 0)) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s%s: %,d rows, %,d distinct values, %d block(s) per column",
+                             name, columns, rows, dictSize, blocks);
+    }
+}
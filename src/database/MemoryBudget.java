@@ -0,0 +1,99 @@
+package database;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Per-query memory budget for intermediate tuple sets.
+ *
+ * <p>Every {@link SpillableTupleSet} created against a budget reserves the
+ * estimated size of each tuple it keeps in memory (see
+ * {@link Tuple#estimatedBytes()}). When a reservation would exceed the limit
+ * the set spills to binary run files inside this budget's temp directory.
+ *
+ * <p>Closing the budget deletes the spill directory and everything in it.
+ */
+public class MemoryBudget implements AutoCloseable {
+
+    private final long          limitBytes;
+    private final AtomicLong    usedBytes  = new AtomicLong();
+    private final AtomicLong    spilledBytes = new AtomicLong();
+    private final AtomicInteger runCounter = new AtomicInteger();
+    private volatile Path       spillDir;  // created lazily on first spill
+
+    public MemoryBudget(long limitBytes) {
+        if (limitBytes <= 0) throw new IllegalArgumentException("Budget must be positive: " + limitBytes);
+        this.limitBytes = limitBytes;
+    }
+
+    public static MemoryBudget ofMegabytes(long mb) { return new MemoryBudget(mb * 1024 * 1024); }
+
+    // ── Accounting ────────────────────────────────────────────────────────────
+
+    /** Reserve {@code bytes} if they fit in the remaining budget. */
+    public boolean tryReserve(long bytes) {
+        while (true) {
+            long used = usedBytes.get();
+            if (used + bytes > limitBytes) return false;
+            if (usedBytes.compareAndSet(used, used + bytes)) return true;
+        }
+    }
+
+    public void release(long bytes) { usedBytes.addAndGet(-bytes); }
+
+    public long getLimitBytes()   { return limitBytes; }
+    public long getUsedBytes()    { return usedBytes.get(); }
+
+    /** Total bytes written to spill runs over the lifetime of this budget. */
+    public long getSpilledBytes() { return spilledBytes.get(); }
+
+    void recordSpill(long bytes)  { spilledBytes.addAndGet(bytes); }
+
+    // ── Spill files ───────────────────────────────────────────────────────────
+
+    /** Returns a fresh, not-yet-existing run file path inside the spill directory. */
+    Path newRunFile() {
+        return spillDirectory().resolve("run-" + runCounter.incrementAndGet() + ".bin");
+    }
+
+    private Path spillDirectory() {
+        Path dir = spillDir;
+        if (dir == null) {
+            synchronized (this) {
+                if (spillDir == null) {
+                    try {
+                        spillDir = Files.createTempDirectory("lw-spill-");
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Cannot create spill directory", e);
+                    }
+                }
+                dir = spillDir;
+            }
+        }
+        return dir;
+    }
+
+    /** Deletes the spill directory. Sets still using this budget become unusable. */
+    @Override
+    public void close() {
+        Path dir = spillDir;
+        if (dir == null) return;
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        } catch (IOException ignored) {
+            // best effort: the OS temp cleaner will get the rest
+        }
+        spillDir = null;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("MemoryBudget{used=%d, limit=%d, spilled=%d}",
+                             usedBytes.get(), limitBytes, spilledBytes.get());
+    }
+}
@@ -1,26 +1,290 @@
 package database;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntBinaryOperator;
+import java.util.stream.IntStream;
 
 /**
- * A relation modelled as a SQL table: named columns (schema) and ordered rows.
- * Every row (Tuple) added to this relation is automatically stamped with the
+ * A relation modelled as a SQL table: named, typed columns (schema) and
+ * ordered rows. Column types ({@link ColumnType}) default to
+ * {@link ColumnType#STRING}; the CSV loader infers or reads them. Every row (Tuple) added to this relation is automatically stamped with the
  * column-to-index map so attribute-based lookups work without extra setup.
+ *
+ * <p>Rows live in append-only chunks. Each append publishes a new immutable
+ * {@link Rows} version (chunk array, row count, version stamp) through one
+ * volatile field, so readers never lock and never see a half-written row.
+ * {@link #snapshot()} pins the current version as a read-only relation that
+ * later appends do not affect; queries should run against snapshots when the
+ * relation may be written concurrently.
+ *
+ * <p>Relations opened from a mapped {@link RelationFile} are read-only and
+ * keep their rows encoded in the file until something first reads them.
+ * {@link #withColumns} returns a read-only view over the same storage, so
+ * a relation used under several aliases (a self-join) is stored once.
  */
 public class Relation {
 
-    private final String       name;
-    private final List<String> columns; // ordered column names
-    private final List<Tuple>  rows;    // ordered rows (insertion order)
+    // Global clock so a version stamp identifies one state of one relation
+    private static final AtomicLong VERSION_CLOCK = new AtomicLong();
+
+    private static final int CHUNK_SHIFT = 10;
+    private static final int CHUNK_SIZE  = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK  = CHUNK_SIZE - 1;
+
+    private final String        name;
+    private final List<String>  columns; // ordered column names
+    private final List<ColumnType> types; // one per column
+    private volatile Rows       rows;    // current version, replaced on every append
+    private final boolean       frozen;  // snapshots reject mutation
+    private final Map<String, Integer> attributeMap; // shared, read-only, by every row from addRow
+    private final Deferred      deferred; // rows still encoded in a mapped file; null otherwise
+    private final Relation      viewOf;   // frozen relation whose rows a renamed view relabels; null otherwise
+    private final CellText      text;     // CSV text of typed cells that print differently; null if none
+
+    /**
+     * One published version of the rows. Chunks are shared between versions:
+     * slots below {@code size} are never written again, and writers only fill
+     * slots at or beyond it before publishing the next version.
+     */
+    private static final class Rows {
+        final Tuple[][] chunks;
+        final int       size;
+        final long      version;
+
+        Rows(Tuple[][] chunks, int size, long version) {
+            this.chunks  = chunks;
+            this.size    = size;
+            this.version = version;
+        }
+
+        Tuple get(int i) { return chunks[i >>> CHUNK_SHIFT][i & CHUNK_MASK]; }
+    }
+
+    /** Value of dictionary code {@code code} in column {@code column}. */
+    @FunctionalInterface
+    interface ValueDecoder {
+        Object decode(int column, int code);
+    }
+
+    /**
+     * Rows of a file-backed relation that have not been decoded yet: cell
+     * (c, r) is {@code values.decode(c, codes.applyAsInt(c, r))}, code -1 = null.
+     */
+    static final class Deferred {
+        final int               size;
+        final long              version;
+        final IntBinaryOperator codes;
+        final ValueDecoder      values;
+
+        Deferred(int size, IntBinaryOperator codes, ValueDecoder values) {
+            this.size    = size;
+            this.version = VERSION_CLOCK.incrementAndGet();
+            this.codes   = codes;
+            this.values  = values;
+        }
+    }
+
+    /**
+     * CSV text of the cells of typed columns whose values do not print back
+     * as written ({@code 010} read as the long 10), by row number. Kept so
+     * {@link #withTypes} can widen such a column to {@link ColumnType#STRING}
+     * with the text the file held instead of the value's canonical form.
+     */
+    static final class CellText {
+        private final int[][]  codes;  // per column: row → text code, -1 = null; null where not kept
+        private final String[] text;
+        private final int      size;
+
+        CellText(int[][] codes, String[] text, int size) {
+            this.codes = codes;
+            this.text  = text;
+            this.size  = size;
+        }
+
+        /** True if the text of cell (column, row) is kept. */
+        boolean covers(int column, int row) { return codes[column] != null && row < size; }
+
+        String get(int column, int row) {
+            int code = codes[column][row];
+            return code < 0 ? null : text[code];
+        }
+    }
+
+    /** Read-only list over one version's rows. */
+    private static final class RowList extends AbstractList<Tuple> implements RandomAccess {
+        private final Rows rows;
+
+        RowList(Rows rows) { this.rows = rows; }
+
+        @Override
+        public Tuple get(int index) {
+            Objects.checkIndex(index, rows.size);
+            return rows.get(index);
+        }
+
+        @Override
+        public int size() { return rows.size; }
+    }
 
     // ── Constructors ──────────────────────────────────────────────────────────
 
     public Relation(String name, List<String> columns) {
+        this(name, columns, Collections.nCopies(columns.size(), ColumnType.STRING));
+    }
+
+    /**
+     * Empty relation with declared column types. Rows added later are
+     * expected to hold values of those types (see {@link ColumnType}).
+     */
+    public Relation(String name, List<String> columns, List<ColumnType> types) {
+        this(name, columns, types, (CellText) null);
+    }
+
+    private Relation(String name, List<String> columns, List<ColumnType> types, CellText text) {
         this.name    = name;
         this.columns = new ArrayList<>(columns);
-        this.rows    = new ArrayList<>();
+        this.types   = checkedTypes(columns, types);
+        this.rows    = new Rows(new Tuple[0][], 0, VERSION_CLOCK.incrementAndGet());
+        this.frozen  = false;
+        this.attributeMap = Collections.unmodifiableMap(buildAttributeMap());
+        this.deferred = null;
+        this.viewOf   = null;
+        this.text     = text;
+    }
+
+    /** Read-only relation whose rows are decoded from {@code deferred} on first access. */
+    private Relation(String name, List<String> columns, List<ColumnType> types, Deferred deferred) {
+        this.name         = name;
+        this.columns      = new ArrayList<>(columns);
+        this.types        = checkedTypes(columns, types);
+        this.rows         = null;
+        this.frozen       = true;
+        this.attributeMap = Collections.unmodifiableMap(buildAttributeMap());
+        this.deferred     = deferred;
+        this.viewOf       = null;
+        this.text         = null;
+    }
+
+    /** Read-only view of {@code base} (frozen) under {@code columns}; rows are relabelled on first access. */
+    private Relation(Relation base, List<String> columns) {
+        this.name         = base.name;
+        this.columns      = new ArrayList<>(columns);
+        this.types        = base.types;
+        this.rows         = null;
+        this.frozen       = true;
+        this.attributeMap = Collections.unmodifiableMap(buildAttributeMap());
+        this.deferred     = null;
+        this.viewOf       = base;
+        this.text         = base.text;
+    }
+
+    private Relation(Relation source, Rows pinned) {
+        this.name         = source.name;
+        this.columns      = source.columns;
+        this.types        = source.types;
+        this.rows         = pinned;
+        this.frozen       = true;
+        this.attributeMap = source.attributeMap;
+        this.deferred     = null;
+        this.viewOf       = null;
+        this.text         = source.text;
+    }
+
+    /**
+     * Returns a read-only view of the current rows. It shares storage with
+     * this relation, costs O(1), and is unaffected by later appends; adding
+     * rows to it throws {@link UnsupportedOperationException}.
+     */
+    public Relation snapshot() {
+        return frozen ? this : new Relation(this, rows());
+    }
+
+    /** True for read-only relations: those returned by {@link #snapshot()} and file-backed ones. */
+    public boolean isSnapshot() { return frozen; }
+
+    /**
+     * Returns a read-only view of the current rows with the columns renamed
+     * positionally, in O(1). The view shares this relation's storage: when
+     * first read it gives each row a tuple under the new names over the
+     * same value list, and a file-backed relation is decoded once for all
+     * its views. Renaming a view renames its base, so self-join aliases
+     * (one relation under several column lists) all share one copy.
+     *
+     * <p>The view carries this relation's version stamp: it holds the same
+     * data, so caches keyed on (name, columns, version) stay valid across
+     * renames, and caches keyed on (name, version) alone are shared by all
+     * aliases.
+     */
+    public Relation withColumns(List<String> newColumns) {
+        if (newColumns.size() != columns.size()) {
+            throw new IllegalArgumentException(
+                "Expected " + columns.size() + " column name(s) but got " + newColumns.size());
+        }
+        return new Relation(viewOf != null ? viewOf : snapshot(), newColumns);
     }
 
+    /**
+     * Returns a copy whose columns hold {@code newTypes}, each value
+     * converted with {@link ColumnType#convert}; columns whose type does not
+     * change keep their values. Returns this relation if no type changes.
+     * The copy is a new version: its values differ from this one's.
+     *
+     * <p>A column loaded from CSV that widens to {@link ColumnType#STRING}
+     * gets back the text as written, so {@code 010} stays {@code "010"}
+     * rather than becoming {@code "10"}.
+     *
+     * @throws IllegalArgumentException if a value has no counterpart in its new type
+     */
+    public Relation withTypes(List<ColumnType> newTypes) {
+        List<ColumnType> target = checkedTypes(columns, newTypes);
+        if (target.equals(types)) return this;
+        Rows current = rows();
+        Relation typed = new Relation(name, columns, target, text);
+        // Each cell's "code" is its row number, so the decoder reads it straight from the current rows
+        typed.rows = new Rows(typed.buildChunks(current.size, (c, r) -> r, (c, r) -> {
+            Object v = current.get(r).getValue(c);
+            if (target.get(c) == types.get(c)) return v;
+            if (target.get(c) == ColumnType.STRING && text != null && text.covers(c, r)) return text.get(c, r);
+            try {
+                return target.get(c).convert(v);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Column '" + columns.get(c) + "' of " + name + ": " + e.getMessage());
+            }
+        }), current.size, VERSION_CLOCK.incrementAndGet());
+        return typed;
+    }
+
+    /**
+     * Bulk load from dictionary-encoded columns: row r holds
+     * {@code values.decode(c, codes[c][r])} in column c, code -1 meaning
+     * null. Chunks are filled in parallel and published as one version,
+     * instead of one version per {@link #addRow}. {@code text} is the CSV
+     * text of cells whose values print differently, or null.
+     */
+    static Relation fromCodes(String name, List<String> columns, List<ColumnType> types,
+                              int[][] codes, int size, ValueDecoder values, CellText text) {
+        Relation rel = new Relation(name, columns, types, text);
+        Tuple[][] chunks = rel.buildChunks(size, (c, r) -> codes[c][r], values);
+        rel.rows = new Rows(chunks, size, VERSION_CLOCK.incrementAndGet());
+        return rel;
+    }
+
+    /**
+     * Read-only relation over encoded rows that are decoded only when first
+     * read; its size and version are known without decoding. Used for
+     * memory-mapped relation files.
+     */
+    static Relation deferred(String name, List<String> columns, List<ColumnType> types, Deferred rows) {
+        return new Relation(name, columns, types, rows);
+    }
+
+    /**
+     * True while rows are not materialised yet: a file-backed relation whose
+     * rows are still encoded, or a renamed view that has not been read.
+     */
+    public boolean isDeferred() { return rows == null; }
+
     // ── Schema / column info ──────────────────────────────────────────────────
 
     public String getName() { return name; }
@@ -33,6 +297,25 @@ public class Relation {
 
     public int columnCount() { return columns.size(); }
 
+    /** Column types, in column order. */
+    public List<ColumnType> getColumnTypes() { return types; }
+
+    /** Type of {@code column}, or null if there is no such column. */
+    public ColumnType getColumnType(String column) {
+        Integer i = attributeMap.get(column);
+        return i == null ? null : types.get(i);
+    }
+
+    /**
+     * Version stamp of the current contents. Unique across all relations and
+     * changed by every {@link #addTuple}/{@link #addRow}, so caches can key on
+     * it to detect mutation.
+     */
+    public long getVersion() {
+        if (deferred != null) return deferred.version;
+        return viewOf != null ? viewOf.getVersion() : rows.version;
+    }
+
     /** Returns the 0-based index of a column, or -1 if not found. */
     public int columnIndex(String col) { return columns.indexOf(col); }
 
@@ -44,7 +327,7 @@ public class Relation {
      */
     public void addTuple(Tuple tuple) {
         tuple.setAttributeMap(buildAttributeMap());
-        rows.add(tuple);
+        append(tuple);
     }
 
     /**
@@ -56,21 +339,23 @@ public class Relation {
             throw new IllegalArgumentException(
                 "Expected " + columns.size() + " column(s) but got " + values.length);
         }
-        Tuple t = new Tuple(new ArrayList<>(Arrays.asList(values)));
-        t.setAttributeMap(buildAttributeMap());
-        rows.add(t);
+        append(new Tuple(new ArrayList<>(Arrays.asList(values)), attributeMap));
     }
 
-    public Tuple getRow(int index)  { return rows.get(index); }
+    public Tuple getRow(int index)  { return getRows().get(index); }
 
-    /** All rows in insertion order (read-only view). */
-    public List<Tuple> getRows()    { return Collections.unmodifiableList(rows); }
+    /** All rows in insertion order (read-only view of the current version). */
+    public List<Tuple> getRows()    { return new RowList(rows()); }
 
     /** Alias kept for algorithm compatibility. */
     public List<Tuple> getTuples()  { return getRows(); }
 
-    public int     size()    { return rows.size(); }
-    public boolean isEmpty() { return rows.isEmpty(); }
+    public int size() {
+        if (deferred != null) return deferred.size;
+        return viewOf != null ? viewOf.size() : rows.size;
+    }
+
+    public boolean isEmpty() { return size() == 0; }
 
     // ── Column projection ─────────────────────────────────────────────────────
 
@@ -78,8 +363,9 @@ public class Relation {
     public List<Object> getColumnValues(String col) {
         int idx = columnIndex(col);
         if (idx == -1) throw new IllegalArgumentException("Unknown column: " + col);
-        List<Object> vals = new ArrayList<>(rows.size());
-        for (Tuple row : rows) vals.add(row.getValue(idx));
+        List<Tuple> current = getRows();
+        List<Object> vals = new ArrayList<>(current.size());
+        for (Tuple row : current) vals.add(row.getValue(idx));
         return vals;
     }
 
@@ -90,6 +376,7 @@ public class Relation {
 
     /** Returns a formatted SQL-style table as a String. */
     public String toTableString() {
+        List<Tuple> rows = getRows();
         // Compute per-column widths (at least as wide as the header)
         int[] w = new int[columns.size()];
         for (int i = 0; i < columns.size(); i++) w[i] = columns.get(i).length();
@@ -134,6 +421,80 @@ public class Relation {
 
     // ── Internal ──────────────────────────────────────────────────────────────
 
+    private Rows rows() {
+        Rows current = rows;
+        return current != null ? current : decodeDeferred();
+    }
+
+    private synchronized Rows decodeDeferred() {
+        if (rows == null) {
+            if (viewOf != null) {
+                rows = relabel(viewOf.rows());
+            } else {
+                Deferred d = deferred;
+                rows = new Rows(buildChunks(d.size, d.codes, d.values), d.size, d.version);
+            }
+        }
+        return rows;
+    }
+
+    /** {@code base}'s rows under this view's attribute map; the value lists are shared, not copied. */
+    private Rows relabel(Rows base) {
+        Tuple[][] chunks = new Tuple[(base.size + CHUNK_MASK) >>> CHUNK_SHIFT][];
+        IntStream.range(0, chunks.length).parallel().forEach(k -> {
+            int from = k << CHUNK_SHIFT, to = Math.min(base.size, from + CHUNK_SIZE);
+            Tuple[] chunk = new Tuple[CHUNK_SIZE];
+            for (int r = from; r < to; r++) chunk[r - from] = new Tuple(base.get(r).getValues(), attributeMap);
+            chunks[k] = chunk;
+        });
+        return new Rows(chunks, base.size, base.version);
+    }
+
+    /** Chunks for {@code size} rows, cell (c, r) = {@code value(code(c, r))}; filled in parallel. */
+    private Tuple[][] buildChunks(int size, IntBinaryOperator code, ValueDecoder value) {
+        int ncols = columns.size();
+        Tuple[][] chunks = new Tuple[(size + CHUNK_MASK) >>> CHUNK_SHIFT][];
+        IntStream.range(0, chunks.length).parallel().forEach(k -> {
+            int from = k << CHUNK_SHIFT, to = Math.min(size, from + CHUNK_SIZE);
+            Tuple[] chunk = new Tuple[CHUNK_SIZE];
+            for (int r = from; r < to; r++) {
+                List<Object> values = new ArrayList<>(ncols);
+                for (int c = 0; c < ncols; c++) {
+                    int v = code.applyAsInt(c, r);
+                    values.add(v < 0 ? null : value.decode(c, v));
+                }
+                chunk[r - from] = new Tuple(values, attributeMap);
+            }
+            chunks[k] = chunk;
+        });
+        return chunks;
+    }
+
+    /** Single writer at a time; readers go through the volatile {@link #rows}. */
+    private synchronized void append(Tuple tuple) {
+        if (frozen) throw new UnsupportedOperationException("Relation snapshot '" + name + "' is read-only");
+        Rows current = rows;
+        int n = current.size;
+        Tuple[][] chunks = current.chunks;
+        int chunk = n >>> CHUNK_SHIFT;
+        if (chunk == chunks.length) {
+            // Copy only the outer array; existing chunks stay shared with older versions
+            chunks = Arrays.copyOf(chunks, Math.max(4, chunks.length * 2));
+        }
+        if (chunks[chunk] == null) chunks[chunk] = new Tuple[CHUNK_SIZE];
+        chunks[chunk][n & CHUNK_MASK] = tuple;
+        rows = new Rows(chunks, n + 1, VERSION_CLOCK.incrementAndGet());
+    }
+
+    private static List<ColumnType> checkedTypes(List<String> columns, List<ColumnType> types) {
+        if (types.size() != columns.size()) {
+            throw new IllegalArgumentException(
+                "Expected " + columns.size() + " column type(s) but got " + types.size());
+        }
+        for (ColumnType t : types) Objects.requireNonNull(t, "column type");
+        return Collections.unmodifiableList(new ArrayList<>(types));
+    }
+
     private Map<String, Integer> buildAttributeMap() {
         Map<String, Integer> map = new HashMap<>();
         for (int i = 0; i < columns.size(); i++) map.put(columns.get(i), i);
@@ -0,0 +1,328 @@
+package database;
+
+import java.io.*;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Binary columnar file for one relation ({@code .lwr}), laid out so it can
+ * be memory-mapped and used in place (see {@link MappedRelation}):
+ *
+ * <pre>
+ *   header (64 bytes)   "LWR3", rows, columns, dictionary size, block rows,
+ *                       index count, then the offsets of the sections below
+ *   schema              name, then each column's name and type
+ *   dictionary          int[size + 1] entry offsets, then each distinct value
+ *                       (type-tagged), sorted so code order is value order
+ *   per column          int[blocks] min codes, int[blocks] max codes,
+ *                       int[rows] codes
+ *   index directory     per index: column, offset          (optional)
+ *   per index           int[size + 1] starts, int[rows] row ids grouped by code
+ * </pre>
+ *
+ * Integers are big-endian and every int array is 4-byte aligned. Code -1
+ * stands for a null cell. Every distinct value is stored once, so files are
+ * much smaller than CSV for low-cardinality columns; because the dictionary
+ * is sorted, a block's min/max codes bound its values and a value range maps
+ * to a code range.
+ */
+public final class RelationFile {
+
+    static final int MAGIC       = 0x4C575233; // "LWR3"
+    static final int HEADER_SIZE = 64;
+    static final int BLOCK_ROWS  = 1 << 16;
+
+    public static final String EXTENSION = ".lwr";
+
+    private RelationFile() { }
+
+    /** Writes {@code relation} to {@code file}, with a prebuilt index on each of {@code indexed}. */
+    public static void write(Relation relation, File file, String... indexed) throws IOException {
+        Writer w = new Writer(relation.getName(), relation.getColumns(), relation.getColumnTypes());
+        for (String col : indexed) w.index(col);
+        for (Tuple t : relation.getTuples()) w.addRow(t.getValues().toArray());
+        w.writeTo(file);
+    }
+
+    /**
+     * Maps {@code file} and returns it as a read-only relation: schema and
+     * size are read now, rows are decoded from the mapping on first access.
+     */
+    public static Relation read(File file) throws IOException {
+        return MappedRelation.open(file).toRelation();
+    }
+
+    /**
+     * Converts CSV files (or every CSV in a directory) to {@code .lwr} files
+     * next to them, so later runs map them instead of parsing text.
+     * {@code --index A,B} adds a prebuilt index on those columns where present.
+     */
+    public static void main(String[] args) throws IOException {
+        List<File> inputs = new ArrayList<>();
+        List<String> index = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--index") && i + 1 < args.length) index.addAll(Arrays.asList(args[++i].split(",")));
+            else inputs.add(new File(args[i]));
+        }
+        if (inputs.isEmpty()) {
+            System.err.println("Usage: RelationFile <file.csv | directory>... [--index COL,...]");
+            System.exit(2);
+        }
+        for (File in : inputs) {
+            File[] csvs = in.isDirectory() ? in.listFiles((d, n) -> n.endsWith(".csv")) : new File[]{in};
+            if (csvs == null) continue;
+            for (File csv : csvs) {
+                String name = csv.getName().replaceFirst("[.][^.]+$", "");
+                long t0 = System.nanoTime();
+                Relation rel = CsvLoader.load(name, csv);
+                List<String> cols = new ArrayList<>(index);
+                cols.retainAll(rel.getColumns());
+                File out = new File(csv.getParentFile(), name + EXTENSION);
+                write(rel, out, cols.toArray(new String[0]));
+                System.out.printf("%s -> %s  %,d rows  %,d -> %,d bytes  %.0f ms%n", csv, out.getName(),
+                                  rel.size(), csv.length(), out.length(), (System.nanoTime() - t0) / 1e6);
+            }
+        }
+    }
+
+    /**
+     * Total order used for the dictionary: null, then numbers by value, then
+     * dates, then strings, then anything else by its string form. Within one
+     * typed column it is that type's natural order.
+     */
+    static int compareValues(Object a, Object b) {
+        int ra = rank(a), rb = rank(b);
+        if (ra != rb) return Integer.compare(ra, rb);
+        switch (ra) {
+            case 0:  return 0;
+            case 1: {
+                int c = Double.compare(((Number) a).doubleValue(), ((Number) b).doubleValue());
+                return c != 0 ? c : a.getClass().getName().compareTo(b.getClass().getName());
+            }
+            case 2:  return ((LocalDate) a).compareTo((LocalDate) b);
+            case 3:  return ((String) a).compareTo((String) b);
+            default: return a.toString().compareTo(b.toString());
+        }
+    }
+
+    private static int rank(Object v) {
+        if (v == null) return 0;
+        if (v instanceof Number) return 1;
+        if (v instanceof LocalDate) return 2;
+        if (v instanceof String) return 3;
+        return 4;
+    }
+
+    /**
+     * Builds a relation file row by row without materialising Tuples: keeps
+     * only the dictionary and one int code per cell, so it can take rows
+     * from generators producing millions of them.
+     */
+    public static final class Writer {
+        private final String           name;
+        private final List<String>     columns;
+        private final List<ColumnType> types;   // null: taken from the values written
+        private final Dictionary       dict    = new Dictionary();
+        private final Set<Integer>     indexed = new TreeSet<>();
+        private int[][]                codes;
+        private int                    rows;
+
+        /** Column types are those of the values written ({@link ColumnType#of}), widened per column. */
+        public Writer(String name, List<String> columns) {
+            this(name, columns, null);
+        }
+
+        public Writer(String name, List<String> columns, List<ColumnType> types) {
+            if (types != null && types.size() != columns.size()) {
+                throw new IllegalArgumentException(
+                    "Expected " + columns.size() + " column type(s) but got " + types.size());
+            }
+            this.name    = name;
+            this.columns = new ArrayList<>(columns);
+            this.types   = types == null ? null : new ArrayList<>(types);
+            this.codes   = new int[columns.size()][1024];
+        }
+
+        /** Also writes a value → rows index for {@code column}. */
+        public Writer index(String column) {
+            int c = columns.indexOf(column);
+            if (c < 0) throw new IllegalArgumentException("No column '" + column + "' in " + name + columns);
+            indexed.add(c);
+            return this;
+        }
+
+        public void addRow(Object... values) {
+            if (values.length != columns.size()) {
+                throw new IllegalArgumentException(
+                    "Expected " + columns.size() + " column(s) but got " + values.length);
+            }
+            if (rows == codes[0].length) {
+                for (int c = 0; c < codes.length; c++) codes[c] = Arrays.copyOf(codes[c], rows * 2);
+            }
+            for (int c = 0; c < values.length; c++) {
+                Object v = types == null ? values[c] : types.get(c).convert(values[c]);
+                codes[c][rows] = v == null ? -1 : dict.encode(v);
+            }
+            rows++;
+        }
+
+        public int size() { return rows; }
+
+        public void writeTo(File file) throws IOException {
+            int ncols = columns.size();
+
+            // Sort the dictionary so codes follow value order, then renumber the cells
+            Integer[] order = new Integer[dict.size()];
+            for (int i = 0; i < order.length; i++) order[i] = i;
+            Arrays.sort(order, (a, b) -> compareValues(dict.decode(a), dict.decode(b)));
+            int[] remap = new int[order.length];
+            for (int sorted = 0; sorted < order.length; sorted++) remap[order[sorted]] = sorted;
+
+            ByteArrayOutputStream schemaBytes = new ByteArrayOutputStream();
+            DataOutputStream schema = new DataOutputStream(schemaBytes);
+            schema.writeUTF(name);
+            for (int c = 0; c < ncols; c++) {
+                schema.writeUTF(columns.get(c));
+                schema.writeUTF(columnType(c).name());
+            }
+
+            ByteArrayOutputStream heapBytes = new ByteArrayOutputStream();
+            DataOutputStream heap = new DataOutputStream(heapBytes);
+            int[] entry = new int[order.length + 1];
+            for (int i = 0; i < order.length; i++) {
+                entry[i] = heap.size();
+                TupleCodec.writeValue(heap, dict.decode(order[i]));
+            }
+            entry[order.length] = heap.size();
+
+            int  blocks        = (rows + BLOCK_ROWS - 1) / BLOCK_ROWS;
+            long schemaOffset  = HEADER_SIZE;
+            long dictOffset    = align(schemaOffset + schemaBytes.size());
+            long columnsOffset = align(dictOffset + 4L * entry.length + heapBytes.size());
+            long columnStride  = 4L * (2L * blocks + rows);
+            long dirOffset     = indexed.isEmpty() ? 0 : columnsOffset + ncols * columnStride;
+            long indexOffset   = dirOffset + 16L * indexed.size();
+            long indexStride   = 4L * (order.length + 1 + rows);
+
+            CountingOutput counter = new CountingOutput(new FileOutputStream(file));
+            try (DataOutputStream out = new DataOutputStream(counter)) {
+                out.writeInt(MAGIC);
+                out.writeInt(rows);
+                out.writeInt(ncols);
+                out.writeInt(order.length);
+                out.writeInt(BLOCK_ROWS);
+                out.writeInt(indexed.size());
+                out.writeLong(schemaOffset);
+                out.writeLong(dictOffset);
+                out.writeLong(columnsOffset);
+                out.writeLong(dirOffset);
+                counter.padTo(HEADER_SIZE);
+
+                schemaBytes.writeTo(out);
+                counter.padTo(dictOffset);
+                writeInts(out, entry, entry.length);
+                heapBytes.writeTo(out);
+                counter.padTo(columnsOffset);
+
+                for (int c = 0; c < ncols; c++) {
+                    int[] col = sortedCodes(c, remap);
+                    int[] min = new int[blocks], max = new int[blocks];
+                    for (int b = 0; b < blocks; b++) {
+                        int lo = Integer.MAX_VALUE, hi = -1;
+                        for (int r = b * BLOCK_ROWS, end = Math.min(rows, r + BLOCK_ROWS); r < end; r++) {
+                            if (col[r] < 0) continue;
+                            lo = Math.min(lo, col[r]);
+                            hi = Math.max(hi, col[r]);
+                        }
+                        min[b] = hi < 0 ? -1 : lo;   // -1/-1: block holds only nulls
+                        max[b] = hi;
+                    }
+                    writeInts(out, min, blocks);
+                    writeInts(out, max, blocks);
+                    writeInts(out, col, rows);
+                }
+
+                int k = 0;
+                for (int c : indexed) {
+                    out.writeInt(c);
+                    out.writeInt(0);
+                    out.writeLong(indexOffset + k++ * indexStride);
+                }
+                for (int c : indexed) {
+                    // Counting sort of row ids by code; null cells are left out
+                    int[] col = sortedCodes(c, remap);
+                    int[] start = new int[order.length + 1];
+                    for (int r = 0; r < rows; r++) if (col[r] >= 0) start[col[r] + 1]++;
+                    for (int i = 0; i < order.length; i++) start[i + 1] += start[i];
+                    int[] ids = new int[rows];
+                    int[] fill = Arrays.copyOf(start, order.length);
+                    for (int r = 0; r < rows; r++) if (col[r] >= 0) ids[fill[col[r]]++] = r;
+                    writeInts(out, start, start.length);
+                    writeInts(out, ids, rows);
+                }
+            }
+        }
+
+        private ColumnType columnType(int c) {
+            if (types != null) return types.get(c);
+            ColumnType type = null;
+            BitSet seen = new BitSet(dict.size());
+            for (int r = 0; r < rows; r++) {
+                int code = codes[c][r];
+                if (code < 0 || seen.get(code)) continue;
+                seen.set(code);
+                ColumnType t = ColumnType.of(dict.decode(code));
+                type = type == null ? t : ColumnType.widen(type, t);
+            }
+            return type == null ? ColumnType.STRING : type;
+        }
+
+        /** Column {@code c} renumbered into sorted-dictionary codes. */
+        private int[] sortedCodes(int c, int[] remap) {
+            int[] col = new int[rows];
+            for (int r = 0; r < rows; r++) col[r] = codes[c][r] < 0 ? -1 : remap[codes[c][r]];
+            return col;
+        }
+
+        private static long align(long offset) { return (offset + 7) & ~7L; }
+
+        /** The first {@code n} ints of {@code a}, big-endian, packed 16 K at a time. */
+        private static void writeInts(OutputStream out, int[] a, int n) throws IOException {
+            java.nio.ByteBuffer buf = java.nio.ByteBuffer.allocate(1 << 16);
+            for (int i = 0; i < n; i++) {
+                if (!buf.hasRemaining()) {
+                    out.write(buf.array(), 0, buf.position());
+                    buf.clear();
+                }
+                buf.putInt(a[i]);
+            }
+            out.write(buf.array(), 0, buf.position());
+        }
+    }
+
+    /** Buffered output that knows its position, for padding up to section offsets. */
+    private static final class CountingOutput extends FilterOutputStream {
+        private long written;
+
+        CountingOutput(OutputStream out) {
+            super(new BufferedOutputStream(out, 1 << 16));
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            written++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            written += len;
+        }
+
+        void padTo(long offset) throws IOException {
+            if (written > offset) throw new IllegalStateException("Section overruns offset " + offset);
+            while (written < offset) write(0);
+        }
+    }
+}
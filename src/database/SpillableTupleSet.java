@@ -0,0 +1,300 @@
+package database;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * A {@code Set<Tuple>} that stays in memory while its {@link MemoryBudget}
+ * allows and spills to hash-partitioned binary run files once it does not.
+ *
+ * <p>After a spill every tuple lives either in the in-memory part or in
+ * exactly one partition file chosen by its hash, never in both. Each
+ * partition keeps an in-memory index from tuple hash code to file offset
+ * (about 20 bytes per spilled tuple, outside the budget), so
+ * {@link #contains} reads only the tuples whose hash matches, usually one
+ * or none. {@link #add} checks the same index, so duplicates never reach
+ * disk and its return value keeps the {@code Set} contract. Writes to a
+ * partition are buffered and flushed before it is read.
+ *
+ * <p>Removal is not supported on a spilled set. Call {@link #release()} when
+ * the set is no longer needed to return its bytes and delete its run files.
+ */
+public class SpillableTupleSet extends AbstractSet<Tuple> {
+
+    private static final int PARTITIONS = 16;
+
+    private final MemoryBudget budget;
+    private final TupleCodec   codec  = new TupleCodec();
+    private final Set<Tuple>   memory = new HashSet<>();
+    private long               memoryBytes;
+
+    private Run[] runs;             // null until the first spill
+
+    // Each tuple is encoded here first, so its length is known before it is appended
+    private final ByteArrayOutputStream scratch     = new ByteArrayOutputStream();
+    private final DataOutputStream      scratchData = new DataOutputStream(scratch);
+
+    public SpillableTupleSet(MemoryBudget budget) {
+        this.budget = budget;
+    }
+
+    // ── Set operations ────────────────────────────────────────────────────────
+
+    @Override
+    public boolean add(Tuple t) {
+        if (memory.contains(t)) return false;
+        if (runs != null && runs[partitionOf(t)].contains(t)) return false;
+        long bytes = t.estimatedBytes();
+        if (!budget.tryReserve(bytes)) {
+            spill();
+            if (!budget.tryReserve(bytes)) {
+                // Other sets hold the budget: write straight to disk.
+                runs[partitionOf(t)].append(t);
+                return true;
+            }
+        }
+        memory.add(t);
+        memoryBytes += bytes;
+        return true;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (memory.contains(o)) return true;
+        if (runs == null || !(o instanceof Tuple)) return false;
+        return runs[partitionOf((Tuple) o)].contains((Tuple) o);
+    }
+
+    @Override
+    public int size() {
+        int n = memory.size();
+        if (runs != null) {
+            for (Run run : runs) n += run.count;
+        }
+        return n;
+    }
+
+    @Override
+    public boolean isEmpty() { return size() == 0; }
+
+    @Override
+    public Iterator<Tuple> iterator() {
+        if (runs == null) return memory.iterator();
+        for (Run run : runs) run.flush();
+        return new RunIterator();
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (runs != null) throw new UnsupportedOperationException("Cannot remove from a spilled set");
+        boolean removed = memory.remove(o);
+        if (removed) {
+            long bytes = ((Tuple) o).estimatedBytes();
+            memoryBytes -= bytes;
+            budget.release(bytes);
+        }
+        return removed;
+    }
+
+    @Override
+    public void clear() { release(); }
+
+    /** True once any part of this set has been written to disk. */
+    public boolean isSpilled() { return runs != null; }
+
+    /** Returns this set's bytes to the budget and deletes its run files. */
+    public void release() {
+        memory.clear();
+        budget.release(memoryBytes);
+        memoryBytes = 0;
+        if (runs != null) {
+            for (Run run : runs) run.delete();
+            runs = null;
+        }
+    }
+
+    // ── Spilling ──────────────────────────────────────────────────────────────
+
+    /** Moves the whole in-memory part into the partition runs. */
+    private void spill() {
+        if (runs == null) {
+            runs = new Run[PARTITIONS];
+            for (int i = 0; i < PARTITIONS; i++) runs[i] = new Run(budget.newRunFile());
+        }
+        for (Tuple t : memory) runs[partitionOf(t)].append(t);
+        memory.clear();
+        budget.release(memoryBytes);
+        memoryBytes = 0;
+    }
+
+    // ── Internal ──────────────────────────────────────────────────────────────
+
+    private static int partitionOf(Tuple t) {
+        int h = t.hashCode();
+        return ((h ^ (h >>> 16)) & 0x7fffffff) % PARTITIONS;
+    }
+
+    /**
+     * One partition file with its index: chains of file offsets by tuple
+     * hash code, in arrays so an entry costs no object.
+     */
+    private final class Run {
+        final Path       path;
+        DataOutputStream out;        // buffered appends; null while flushed
+        FileChannel      reader;     // opened on the first probe
+        long             length;     // bytes appended so far
+        int              count;
+
+        int[]  heads = emptyHeads(16);
+        int[]  hashes  = new int[16];
+        int[]  next    = new int[16];
+        long[] offsets = new long[16];
+
+        Run(Path path) { this.path = path; }
+
+        void append(Tuple t) {
+            try {
+                scratch.reset();
+                codec.write(scratchData, t);
+                if (out == null) {
+                    out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path,
+                            StandardOpenOption.CREATE, StandardOpenOption.APPEND), 1 << 16));
+                }
+                scratch.writeTo(out);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot write spill run " + path, e);
+            }
+            index(t.hashCode(), length);
+            length += scratch.size();
+            count++;
+            budget.recordSpill(scratch.size());
+        }
+
+        boolean contains(Tuple t) {
+            int h = t.hashCode();
+            boolean flushed = false;
+            for (int e = heads[h & (heads.length - 1)]; e >= 0; e = next[e]) {
+                if (hashes[e] != h) continue;
+                if (!flushed) {
+                    flush();
+                    flushed = true;
+                }
+                if (t.equals(readAt(offsets[e]))) return true;
+            }
+            return false;
+        }
+
+        void flush() {
+            if (out == null) return;
+            try {
+                out.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot write spill run " + path, e);
+            } finally {
+                out = null;
+            }
+        }
+
+        void delete() {
+            closeQuietly(out);
+            closeQuietly(reader);
+            out    = null;
+            reader = null;
+            path.toFile().delete();
+        }
+
+        private Tuple readAt(long offset) {
+            try {
+                if (reader == null) reader = FileChannel.open(path, StandardOpenOption.READ);
+                reader.position(offset);
+                // Not closed: that would close the shared channel
+                DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(reader), 512));
+                return codec.read(in);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot probe spill run " + path, e);
+            }
+        }
+
+        private void index(int hash, long offset) {
+            if (count == hashes.length) {
+                int cap = count * 2;
+                hashes  = Arrays.copyOf(hashes, cap);
+                next    = Arrays.copyOf(next, cap);
+                offsets = Arrays.copyOf(offsets, cap);
+                heads   = emptyHeads(cap);
+                for (int e = 0; e < count; e++) link(e);
+            }
+            hashes[count]  = hash;
+            offsets[count] = offset;
+            link(count);
+        }
+
+        private void link(int e) {
+            int b = hashes[e] & (heads.length - 1);
+            next[e]  = heads[b];
+            heads[b] = e;
+        }
+    }
+
+    private static int[] emptyHeads(int n) {
+        int[] heads = new int[n];
+        Arrays.fill(heads, -1);
+        return heads;
+    }
+
+    private static void closeQuietly(Closeable c) {
+        if (c == null) return;
+        try { c.close(); } catch (IOException ignored) { }
+    }
+
+    private static DataInputStream open(Path run) throws IOException {
+        if (!Files.exists(run)) return new DataInputStream(InputStream.nullInputStream());
+        return new DataInputStream(new BufferedInputStream(Files.newInputStream(run), 1 << 16));
+    }
+
+    /** The in-memory part, then the partitions one after another; the runs must be flushed. */
+    private class RunIterator implements Iterator<Tuple> {
+        private final Iterator<Tuple> inMemory = memory.iterator();
+        private int             partition = -1;
+        private DataInputStream in;
+        private Tuple           next;
+
+        RunIterator() { advance(); }
+
+        private void advance() {
+            if (inMemory.hasNext()) {
+                next = inMemory.next();
+                return;
+            }
+            try {
+                while (true) {
+                    if (in != null) {
+                        next = codec.read(in);
+                        if (next != null) return;
+                        in.close();
+                        in = null;
+                    }
+                    if (++partition >= PARTITIONS) { next = null; return; }
+                    in = open(runs[partition].path);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot read spill run", e);
+            }
+        }
+
+        @Override public boolean hasNext() { return next != null; }
+
+        @Override
+        public Tuple next() {
+            if (next == null) throw new NoSuchElementException();
+            Tuple t = next;
+            advance();
+            return t;
+        }
+    }
+}
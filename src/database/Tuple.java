@@ -16,6 +16,16 @@ public class Tuple {
         this.attributeMap = new HashMap<>();
     }
     
+    /**
+     * Builds a tuple that shares {@code attributeMap} instead of copying it.
+     * Used when many tuples have the same schema; the map must not be
+     * modified afterwards, and {@code vals} is taken over as-is.
+     */
+    public Tuple(List<Object> vals, Map<String, Integer> attributeMap) {
+        this.values = vals;
+        this.attributeMap = attributeMap;
+    }
+
     public Tuple(Map<String, Object> attributeValues) {
         this.attributeMap = new HashMap<>();
         this.values = new ArrayList<>();
@@ -54,6 +64,22 @@ public class Tuple {
     public boolean hasAttribute(String attribute) {
         return attributeMap.containsKey(attribute);
     }
+
+    /**
+     * Rough on-heap footprint of this tuple in bytes: the tuple and its value
+     * list, one attribute-map entry per attribute, and the boxed values.
+     * Used by {@link MemoryBudget} accounting, not for exact measurement.
+     */
+    public long estimatedBytes() {
+        int n = values.size();
+        long bytes = 16 + 24 + 16 + 4L * n            // Tuple + ArrayList + backing array
+                   + 48 + 16 + 8L * n + 32L * n;      // HashMap + table + entries
+        for (Object v : values) {
+            if (v instanceof String) bytes += 40 + ((String) v).length();
+            else if (v != null)      bytes += 16;
+        }
+        return bytes;
+    }
     
     public Tuple projectOn(List<String> attributes) {
         Map<String, Object> projected = new LinkedHashMap<>();
@@ -131,12 +157,17 @@ public class Tuple {
         return true;
     }
 
+    /**
+     * Sum over attributes of {@code Objects.hash(name, value)}, computed
+     * without the varargs array. Typed values hash as themselves, so a
+     * {@link Long} key costs a few arithmetic operations, not a string scan.
+     */
     @Override
     public int hashCode() {
         int result = 0;
         for (Map.Entry<String, Integer> entry : attributeMap.entrySet()) {
             Object val = values.get(entry.getValue());
-            result += Objects.hash(entry.getKey(), val);
+            result += 31 * (31 + entry.getKey().hashCode()) + (val == null ? 0 : val.hashCode());
         }
         return result;
     }
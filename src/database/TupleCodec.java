@@ -0,0 +1,101 @@
+package database;
+
+import java.io.*;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Compact binary encoding of tuples for spill runs.
+ *
+ * <p>Attribute names are not written per tuple: each distinct schema is
+ * registered once in the codec and tuples refer to it by a small integer id.
+ * Values are written with a one-byte type tag followed by their payload;
+ * {@link RelationFile} reuses the value encoding for its dictionary.
+ */
+class TupleCodec {
+
+    private static final byte NULL   = 0;
+    private static final byte STRING = 1;
+    private static final byte INT    = 2;
+    private static final byte LONG   = 3;
+    private static final byte DOUBLE = 4;
+    private static final byte DATE   = 5;
+
+    private final List<List<String>>         schemas   = new ArrayList<>();
+    private final Map<List<String>, Integer> schemaIds = new HashMap<>();
+
+    // ── Encoding ──────────────────────────────────────────────────────────────
+
+    void write(DataOutputStream out, Tuple t) throws IOException {
+        List<String> schema = schemaOf(t);
+        Integer id = schemaIds.get(schema);
+        if (id == null) {
+            id = schemas.size();
+            schemas.add(schema);
+            schemaIds.put(schema, id);
+        }
+        out.writeShort(id);
+        for (String attr : schema) writeValue(out, t.getValueByAttribute(attr));
+    }
+
+    static void writeValue(DataOutputStream out, Object v) throws IOException {
+        if (v == null) {
+            out.writeByte(NULL);
+        } else if (v instanceof Integer) {
+            out.writeByte(INT);
+            out.writeInt((Integer) v);
+        } else if (v instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long) v);
+        } else if (v instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) v);
+        } else if (v instanceof LocalDate) {
+            out.writeByte(DATE);
+            out.writeLong(((LocalDate) v).toEpochDay());
+        } else {
+            out.writeByte(STRING);
+            out.writeUTF(v.toString());
+        }
+    }
+
+    // ── Decoding ──────────────────────────────────────────────────────────────
+
+    /** Reads the next tuple, or returns {@code null} at end of stream. */
+    Tuple read(DataInputStream in) throws IOException {
+        int id;
+        try {
+            id = in.readUnsignedShort();
+        } catch (EOFException eof) {
+            return null;
+        }
+        List<String> schema = schemas.get(id);
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (String attr : schema) values.put(attr, readValue(in));
+        return new Tuple(values);
+    }
+
+    static Object readValue(DataInputStream in) throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case NULL:   return null;
+            case INT:    return in.readInt();
+            case LONG:   return in.readLong();
+            case DOUBLE: return in.readDouble();
+            case DATE:   return LocalDate.ofEpochDay(in.readLong());
+            case STRING: return in.readUTF();
+            default:     throw new IOException("Corrupt encoding: unknown value tag " + tag);
+        }
+    }
+
+    // ── Internal ──────────────────────────────────────────────────────────────
+
+    /** Attribute names in value-index order. */
+    private static List<String> schemaOf(Tuple t) {
+        String[] names = new String[t.size()];
+        for (Map.Entry<String, Integer> e : t.getAttributeMap().entrySet()) {
+            names[e.getValue()] = e.getKey();
+        }
+        return Arrays.asList(names);
+    }
+}
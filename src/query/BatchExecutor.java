@@ -0,0 +1,282 @@
+package query;
+
+import Algorithms.LoomisWhitneyInstance;
+import database.CsvLoader;
+import database.Relation;
+import database.Tuple;
+import tree.QueryTreeBuilder;
+import tree.SubtreeCache;
+import tree.TreeNode;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Runs a batch of conjunctive queries over one set of relations, sharing
+ * work between them instead of evaluating each in isolation.
+ *
+ * <ol>
+ *   <li><b>Shared scans</b> — every relation the batch references is loaded
+ *       once, in parallel, and every distinct rename {@code R(a,b)} is
+ *       applied once.</li>
+ *   <li><b>Shared subtrees</b> — each query's tree is built up front and its
+ *       nodes are keyed with {@link LoomisWhitneyInstance#cacheKey}; nodes
+ *       that occur in more than one query (including leaf D sets) are
+ *       materialised once, bottom-up, into a batch-wide {@link SubtreeCache}.</li>
+ *   <li><b>Concurrent execution</b> — the queries then run on a thread pool
+ *       and pick the shared results up from the cache.</li>
+ * </ol>
+ */
+public class BatchExecutor {
+
+    /** Outcome of one query in the batch. */
+    public static class QueryOutcome {
+        public final ConjunctiveQuery query;
+        public final Set<Tuple>       result;   // null if the query failed
+        public final long             nanos;
+        public final String           error;    // null on success
+
+        QueryOutcome(ConjunctiveQuery query, Set<Tuple> result, long nanos, String error) {
+            this.query  = query;
+            this.result = result;
+            this.nanos  = nanos;
+            this.error  = error;
+        }
+    }
+
+    /** Outcomes in submission order plus batch-level sharing statistics. */
+    public static class BatchReport {
+        public final List<QueryOutcome> outcomes;
+        public final int  relationsLoaded;
+        public final int  sharedSubtrees;
+        public final long totalNanos;
+        public final String cacheStats;
+
+        BatchReport(List<QueryOutcome> outcomes, int relationsLoaded, int sharedSubtrees,
+                    long totalNanos, String cacheStats) {
+            this.outcomes        = Collections.unmodifiableList(outcomes);
+            this.relationsLoaded = relationsLoaded;
+            this.sharedSubtrees  = sharedSubtrees;
+            this.totalNanos      = totalNanos;
+            this.cacheStats      = cacheStats;
+        }
+    }
+
+    /** One place a subtree key occurs: the plan it belongs to and the node. */
+    private static class Occurrence {
+        final LoomisWhitneyInstance plan;
+        final TreeNode              node;
+        final int                   height;
+
+        Occurrence(LoomisWhitneyInstance plan, TreeNode node) {
+            this.plan   = plan;
+            this.node   = node;
+            this.height = height(node);
+        }
+    }
+
+    private final Map<String, Relation> catalog;
+    private final File                  csvDirectory;
+    private final int                   threads;
+    private final long                  cacheBytes;
+
+    /**
+     * Uses a shared-subtree cache of a quarter of the maximum heap.
+     *
+     * @param catalog      relations already in memory, looked up first
+     * @param csvDirectory fallback directory holding {@code <name>.csv}; may be null
+     * @param threads      worker threads for loading and execution
+     */
+    public BatchExecutor(Map<String, Relation> catalog, File csvDirectory, int threads) {
+        this(catalog, csvDirectory, threads, Runtime.getRuntime().maxMemory() / 4);
+    }
+
+    /**
+     * @param cacheBytes capacity of the batch's shared-subtree cache; shared
+     *                   results it cannot hold are recomputed by each query
+     */
+    public BatchExecutor(Map<String, Relation> catalog, File csvDirectory, int threads, long cacheBytes) {
+        if (cacheBytes <= 0) throw new IllegalArgumentException("Cache size must be positive: " + cacheBytes);
+        this.catalog      = catalog;
+        this.csvDirectory = csvDirectory;
+        this.threads      = Math.max(1, threads);
+        this.cacheBytes   = cacheBytes;
+    }
+
+    public BatchReport execute(List<ConjunctiveQuery> queries) throws InterruptedException {
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            // 1. Shared scans: load each referenced relation once
+            Map<String, Relation> sources = loadAll(queries, pool);
+
+            // 2. Bind every query, applying each distinct rename only once
+            Map<String, Relation> renamed = new HashMap<>();
+            List<Map<String, Relation>> bound = new ArrayList<>();
+            for (ConjunctiveQuery q : queries) bound.add(bindShared(q, sources, renamed));
+
+            // 3. Plan all queries and find subtrees that occur more than once
+            SubtreeCache cache = new SubtreeCache(cacheBytes, 0);
+            List<LoomisWhitneyInstance> plans = new ArrayList<>();
+            Map<String, List<Occurrence>> occurrences = new HashMap<>();
+            for (Map<String, Relation> rels : bound) {
+                if (rels == null) { plans.add(null); continue; }
+                TreeNode root = QueryTreeBuilder.build(rels);
+                LoomisWhitneyInstance lw = new LoomisWhitneyInstance(rels, root);
+                // Filtered leaves depend on the whole query and could not be shared across it
+                lw.setSemijoinFilter(false);
+                lw.setSubtreeCache(cache);
+                plans.add(lw);
+                collectNodes(lw, root, occurrences);
+            }
+            int shared = materialiseShared(occurrences, pool);
+
+            // 4. Run the queries concurrently against the warmed cache
+            List<Future<QueryOutcome>> futures = new ArrayList<>();
+            for (int i = 0; i < queries.size(); i++) {
+                ConjunctiveQuery q = queries.get(i);
+                LoomisWhitneyInstance lw = plans.get(i);
+                futures.add(pool.submit(() -> run(q, lw)));
+            }
+            List<QueryOutcome> outcomes = new ArrayList<>();
+            for (Future<QueryOutcome> f : futures) outcomes.add(await(f));
+
+            return new BatchReport(outcomes, sources.size(), shared,
+                                   System.nanoTime() - start, cache.toString());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // ── Phases ────────────────────────────────────────────────────────────────
+
+    private Map<String, Relation> loadAll(List<ConjunctiveQuery> queries, ExecutorService pool)
+            throws InterruptedException {
+        Map<String, Future<Relation>> pending = new LinkedHashMap<>();
+        for (ConjunctiveQuery q : queries) {
+            for (String name : q.relationNames()) {
+                if (pending.containsKey(name)) continue;
+                pending.put(name, pool.submit(() -> resolve(name)));
+            }
+        }
+        Map<String, Relation> sources = new HashMap<>();
+        for (Map.Entry<String, Future<Relation>> e : pending.entrySet()) {
+            try {
+                Relation r = e.getValue().get();
+                if (r != null) sources.put(e.getKey(), r);
+            } catch (ExecutionException ex) {
+                // Leave it missing: binding reports the error for each query using it
+            }
+        }
+        return sources;
+    }
+
+    private Relation resolve(String name) throws Exception {
+        Relation r = catalog.get(name);
+        if (r != null || csvDirectory == null) return r;
+        File csv = new File(csvDirectory, name + ".csv");
+        return csv.exists() ? CsvLoader.load(name, csv) : null;
+    }
+
+    /** Binds {@code q} like {@link ConjunctiveQuery#bind}, reusing renamed copies; null if it cannot bind. */
+    private static Map<String, Relation> bindShared(ConjunctiveQuery q, Map<String, Relation> sources,
+                                                    Map<String, Relation> renamed) {
+        Map<String, Relation> rels = new LinkedHashMap<>();
+        for (ConjunctiveQuery.Atom atom : q.getAtoms()) {
+            Relation src = sources.get(atom.relation);
+            if (src == null) return null;
+            try {
+                rels.put(atom.alias, renamed.computeIfAbsent(atom.toString(),
+                        k -> ConjunctiveQuery.rename(src, atom)));
+            } catch (IllegalArgumentException ex) {
+                return null;
+            }
+        }
+        return ConjunctiveQuery.unifyTypes(rels);
+    }
+
+    private static void collectNodes(LoomisWhitneyInstance lw, TreeNode node,
+                                     Map<String, List<Occurrence>> occurrences) {
+        if (node == null) return;
+        occurrences.computeIfAbsent(lw.cacheKey(node), k -> new ArrayList<>())
+                   .add(new Occurrence(lw, node));
+        collectNodes(lw, node.leftChild(), occurrences);
+        collectNodes(lw, node.rightChild(), occurrences);
+    }
+
+    /**
+     * Evaluates every key that occurs in two or more queries exactly once,
+     * lowest subtrees first so that taller shared subtrees reuse shorter ones.
+     * Within a level, the subtrees of one plan run one after another on a
+     * single task: an instance's cancellation token and progress are not
+     * shared between threads.
+     */
+    private static int materialiseShared(Map<String, List<Occurrence>> occurrences, ExecutorService pool)
+            throws InterruptedException {
+        TreeMap<Integer, List<Occurrence>> byHeight = new TreeMap<>();
+        for (List<Occurrence> occ : occurrences.values()) {
+            if (occ.size() < 2) continue;
+            Occurrence first = occ.get(0);
+            if (first.node.isRoot()) continue; // whole query repeated: the first run caches it
+            byHeight.computeIfAbsent(first.height, h -> new ArrayList<>()).add(first);
+        }
+        int shared = 0;
+        for (List<Occurrence> level : byHeight.values()) {
+            Map<LoomisWhitneyInstance, List<Occurrence>> byPlan = new LinkedHashMap<>();
+            for (Occurrence occ : level) byPlan.computeIfAbsent(occ.plan, p -> new ArrayList<>()).add(occ);
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (List<Occurrence> owned : byPlan.values()) {
+                futures.add(pool.submit(() -> evaluateAll(owned)));
+            }
+            for (Future<Integer> f : futures) {
+                try {
+                    shared += f.get();
+                } catch (ExecutionException ex) {
+                    throw new IllegalStateException(ex.getCause());
+                }
+            }
+        }
+        return shared;
+    }
+
+    /** Evaluates {@code owned} (nodes of one plan) in turn; returns how many succeeded. */
+    private static int evaluateAll(List<Occurrence> owned) {
+        int done = 0;
+        for (Occurrence occ : owned) {
+            try {
+                occ.plan.evaluate(occ.node);
+                done++;
+            } catch (RuntimeException ex) {
+                // The owning query will hit the same error and report it
+            }
+        }
+        return done;
+    }
+
+    private static QueryOutcome run(ConjunctiveQuery q, LoomisWhitneyInstance lw) {
+        long t0 = System.nanoTime();
+        if (lw == null) {
+            return new QueryOutcome(q, null, 0, "Unknown relation or arity mismatch in '" + q + "'");
+        }
+        try {
+            Set<Tuple> result = lw.execute();
+            return new QueryOutcome(q, result, System.nanoTime() - t0, null);
+        } catch (RuntimeException ex) {
+            return new QueryOutcome(q, null, System.nanoTime() - t0, ex.toString());
+        }
+    }
+
+    private static QueryOutcome await(Future<QueryOutcome> f) throws InterruptedException {
+        try {
+            return f.get();
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+
+    private static int height(TreeNode n) {
+        if (n == null || n.isLeaf()) return 0;
+        return 1 + Math.max(height(n.leftChild()), height(n.rightChild()));
+    }
+}
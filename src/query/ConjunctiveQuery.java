@@ -0,0 +1,228 @@
+package query;
+
+import database.ColumnType;
+import database.Relation;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A parsed conjunctive query such as {@code R(a,b), S(b,c), T(c,a)}.
+ *
+ * <p>Each atom names a relation and optionally renames its columns
+ * positionally; an atom without a variable list keeps the relation's own
+ * schema. The join itself is implied by shared attribute names.
+ *
+ * <p>A relation may occur more than once, as in the triangle
+ * {@code E(a,b), E(b,c), E(c,a)} over one edge table. Every occurrence is
+ * bound under its own {@link Atom#alias alias}, and all of them are views
+ * over the relation's one stored copy ({@link Relation#withColumns}).
+ *
+ * <p>A variable may declare a column type, {@code R(a:long,b)}: the column
+ * is converted to it when bound. Columns joined under one attribute that
+ * still differ in type are widened to a common one
+ * ({@link ColumnType#widen}), so {@code 7} in one relation meets {@code 7}
+ * in another whether either side was loaded as text or as a number.
+ */
+public class ConjunctiveQuery {
+
+    private static final Pattern ATOM = Pattern.compile("([A-Za-z0-9_]+)(?:\\s*\\(([^)]*)\\))?");
+
+    /** One relation occurrence in the query body. */
+    public static class Atom {
+        public final String           relation;
+        public final String           alias;  // key in the bound map: relation, or relation#k for its k-th occurrence
+        public final List<String>     vars;   // null = use the relation's own columns
+        public final List<ColumnType> types;  // per var, null = keep the column's type; null with vars
+
+        public Atom(String relation, List<String> vars) {
+            this(relation, vars, null);
+        }
+
+        public Atom(String relation, List<String> vars, List<ColumnType> types) {
+            if (types != null && (vars == null || types.size() != vars.size())) {
+                throw new IllegalArgumentException("Atom '" + relation + "' needs one type per variable");
+            }
+            this.relation = relation;
+            this.alias    = relation;
+            this.vars     = vars == null ? null : Collections.unmodifiableList(new ArrayList<>(vars));
+            this.types    = vars == null ? null
+                          : Collections.unmodifiableList(new ArrayList<>(
+                                types != null ? types : Collections.nCopies(vars.size(), (ColumnType) null)));
+        }
+
+        private Atom(Atom atom, String alias) {
+            this.relation = atom.relation;
+            this.alias    = alias;
+            this.vars     = atom.vars;
+            this.types    = atom.types;
+        }
+
+        @Override
+        public String toString() {
+            if (vars == null) return relation;
+            StringJoiner sj = new StringJoiner(",", relation + "(", ")");
+            for (int i = 0; i < vars.size(); i++) {
+                ColumnType t = types.get(i);
+                sj.add(t == null ? vars.get(i) : vars.get(i) + ":" + t.name().toLowerCase(Locale.ROOT));
+            }
+            return sj.toString();
+        }
+    }
+
+    private final List<Atom> atoms;
+
+    /** Numbers repeated occurrences of a relation: the second {@code E} is bound as {@code E#2}, and so on. */
+    public ConjunctiveQuery(List<Atom> atoms) {
+        Map<String, Integer> seen = new HashMap<>();
+        List<Atom> aliased = new ArrayList<>();
+        for (Atom a : atoms) {
+            int k = seen.merge(a.relation, 1, Integer::sum);
+            aliased.add(k == 1 ? a : new Atom(a, a.relation + "#" + k));
+        }
+        this.atoms = Collections.unmodifiableList(aliased);
+    }
+
+    /**
+     * Parses query text in the GUI syntax: relation names separated by commas,
+     * each optionally followed by a parenthesised list of column names,
+     * each optionally typed as {@code name:type}. A relation may be named
+     * more than once (a self-join); each occurrence is a separate atom.
+     *
+     * @throws IllegalArgumentException if no relation name is found or a
+     *         type name is unknown
+     */
+    public static ConjunctiveQuery parse(String text) {
+        List<Atom> atoms = new ArrayList<>();
+        Matcher matcher = ATOM.matcher(text == null ? "" : text);
+        while (matcher.find()) {
+            String name = matcher.group(1).trim();
+            String varsText = matcher.group(2);
+            List<String> vars = null;
+            List<ColumnType> types = null;
+            if (varsText != null && !varsText.trim().isEmpty()) {
+                vars  = new ArrayList<>();
+                types = new ArrayList<>();
+                for (String v : varsText.split(",")) {
+                    int colon = v.indexOf(':');
+                    vars.add((colon < 0 ? v : v.substring(0, colon)).trim());
+                    types.add(colon < 0 ? null : ColumnType.named(v.substring(colon + 1)));
+                }
+            }
+            atoms.add(new Atom(name, vars, types));
+        }
+        if (atoms.isEmpty()) {
+            throw new IllegalArgumentException("No valid relation names found in query.");
+        }
+        return new ConjunctiveQuery(atoms);
+    }
+
+    public List<Atom> getAtoms() { return atoms; }
+
+    /** Names of the stored relations the query reads, in query order, each once. */
+    public List<String> relationNames() {
+        Set<String> names = new LinkedHashSet<>();
+        for (Atom a : atoms) names.add(a.relation);
+        return new ArrayList<>(names);
+    }
+
+    // ── Binding ───────────────────────────────────────────────────────────────
+
+    /**
+     * Resolves every atom against {@code catalog}, applying column renames
+     * and declared types, then widens attributes whose columns still
+     * differ in type (see {@link #unifyTypes}).
+     *
+     * @return atom alias → relation, in query order
+     * @throws IllegalArgumentException if a relation is missing, an atom's
+     *         arity does not match the stored relation, or a value cannot
+     *         be converted to its declared type
+     */
+    public Map<String, Relation> bind(Map<String, Relation> catalog) {
+        Map<String, Relation> bound = new LinkedHashMap<>();
+        for (Atom atom : atoms) {
+            Relation original = catalog.get(atom.relation);
+            if (original == null) {
+                throw new IllegalArgumentException("Unknown relation '" + atom.relation + "'");
+            }
+            bound.put(atom.alias, rename(original, atom));
+        }
+        return unifyTypes(bound);
+    }
+
+    static Relation rename(Relation original, Atom atom) {
+        if (atom.vars == null) return original;
+        if (atom.vars.size() != original.columnCount()) {
+            throw new IllegalArgumentException("Query for '" + atom.relation + "' expects " + atom.vars.size()
+                    + " columns but data has " + original.columnCount() + ".");
+        }
+        Relation renamed = original.withColumns(atom.vars);
+        if (atom.types.stream().allMatch(Objects::isNull)) return renamed;
+        List<ColumnType> types = new ArrayList<>(renamed.getColumnTypes());
+        for (int i = 0; i < types.size(); i++) {
+            if (atom.types.get(i) != null) types.set(i, atom.types.get(i));
+        }
+        return renamed.withTypes(types);
+    }
+
+    /**
+     * Gives every attribute one column type across {@code bound}: where two
+     * relations hold it under different types, the columns are converted to
+     * their {@link ColumnType#widen widened} type. Relations that need no
+     * conversion are returned as they are. A CSV column widened to
+     * {@link ColumnType#STRING} keeps its text as written (see
+     * {@link Relation#withTypes}), so {@code 010} still joins {@code "010"}.
+     */
+    static Map<String, Relation> unifyTypes(Map<String, Relation> bound) {
+        Map<String, ColumnType> common = new HashMap<>();
+        boolean mixed = false;
+        for (Relation r : bound.values()) {
+            for (int i = 0; i < r.columnCount(); i++) {
+                String     col  = r.getColumns().get(i);
+                ColumnType t    = r.getColumnTypes().get(i);
+                ColumnType prev = common.get(col);
+                if (prev != null && prev != t) mixed = true;
+                common.put(col, prev == null ? t : ColumnType.widen(prev, t));
+            }
+        }
+        if (!mixed) return bound;
+        Map<String, Relation> unified = new LinkedHashMap<>();
+        for (Map.Entry<String, Relation> e : bound.entrySet()) {
+            Relation r = e.getValue();
+            List<ColumnType> types = new ArrayList<>();
+            for (String col : r.getColumns()) types.add(common.get(col));
+            unified.put(e.getKey(), r.withTypes(types));
+        }
+        return unified;
+    }
+
+    // ── Normalisation ─────────────────────────────────────────────────────────
+
+    /**
+     * Order-independent text form of the query: atoms sorted by relation name,
+     * each with its effective column list and declared types. Two queries with the same
+     * normalized form compute the same result over the same data.
+     */
+    public String normalized(Map<String, Relation> catalog) {
+        List<String> parts = new ArrayList<>();
+        for (Atom atom : atoms) {
+            if (atom.vars != null) {
+                parts.add(atom.toString());
+                continue;
+            }
+            Relation r = catalog.get(atom.relation);
+            List<String> cols = r == null ? Collections.emptyList() : r.getColumns();
+            parts.add(atom.relation + "(" + String.join(",", cols) + ")");
+        }
+        Collections.sort(parts);
+        return String.join(",", parts);
+    }
+
+    @Override
+    public String toString() {
+        StringJoiner sj = new StringJoiner(", ");
+        for (Atom a : atoms) sj.add(a.toString());
+        return sj.toString();
+    }
+}
@@ -0,0 +1,129 @@
+package query;
+
+import database.Relation;
+import database.Tuple;
+
+import java.util.*;
+
+/**
+ * LRU cache of final query results, bounded by estimated bytes.
+ *
+ * <p>Entries are keyed by {@link ConjunctiveQuery#normalized} and remember the
+ * {@link Relation#getVersion() version} of every input relation they were
+ * computed from. A lookup whose current versions differ drops the entry, so
+ * any mutation of an input relation invalidates the cached result.
+ *
+ * <p>All methods are synchronized; cached result sets are unmodifiable.
+ */
+public class QueryResultCache {
+
+    private static class Entry {
+        final Map<String, Long> versions;
+        final Set<Tuple>        result;
+        final long              bytes;
+
+        Entry(Map<String, Long> versions, Set<Tuple> result, long bytes) {
+            this.versions = versions;
+            this.result   = result;
+            this.bytes    = bytes;
+        }
+    }
+
+    private final long                           maxBytes;
+    private final LinkedHashMap<String, Entry>   entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long usedBytes;
+    private long hits, misses, evictions;
+
+    public QueryResultCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    // ── Lookup / insert ───────────────────────────────────────────────────────
+
+    /**
+     * Returns the cached result of {@code query} over {@code catalog}, or
+     * {@code null} if there is none or an input relation has changed since.
+     */
+    public synchronized Set<Tuple> get(ConjunctiveQuery query, Map<String, Relation> catalog) {
+        String key = query.normalized(catalog);
+        Entry e = entries.get(key);
+        if (e == null) {
+            misses++;
+            return null;
+        }
+        if (!e.versions.equals(versionsOf(query, catalog))) {
+            remove(key);
+            misses++;
+            return null;
+        }
+        hits++;
+        return e.result;
+    }
+
+    /** Caches {@code result}; results larger than the whole cache are not admitted. */
+    public synchronized void put(ConjunctiveQuery query, Map<String, Relation> catalog, Set<Tuple> result) {
+        long bytes = 0;
+        for (Tuple t : result) bytes += t.estimatedBytes();
+        if (bytes > maxBytes) return;
+
+        String key = query.normalized(catalog);
+        remove(key);
+        entries.put(key, new Entry(versionsOf(query, catalog),
+                                   Collections.unmodifiableSet(new HashSet<>(result)), bytes));
+        usedBytes += bytes;
+
+        Iterator<Map.Entry<String, Entry>> lru = entries.entrySet().iterator();
+        while (usedBytes > maxBytes && lru.hasNext()) {
+            usedBytes -= lru.next().getValue().bytes;
+            lru.remove();
+            evictions++;
+        }
+    }
+
+    /** Drops every entry that reads relation {@code name}. */
+    public synchronized void invalidate(String name) {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Entry e = it.next().getValue();
+            if (e.versions.containsKey(name)) {
+                usedBytes -= e.bytes;
+                it.remove();
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        usedBytes = 0;
+    }
+
+    // ── Statistics ────────────────────────────────────────────────────────────
+
+    public synchronized int  size()         { return entries.size(); }
+    public synchronized long getUsedBytes() { return usedBytes; }
+    public synchronized long getHits()      { return hits; }
+    public synchronized long getMisses()    { return misses; }
+    public synchronized long getEvictions() { return evictions; }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("QueryResultCache{entries=%d, bytes=%d/%d, hits=%d, misses=%d, evictions=%d}",
+                             entries.size(), usedBytes, maxBytes, hits, misses, evictions);
+    }
+
+    // ── Internal ──────────────────────────────────────────────────────────────
+
+    private void remove(String key) {
+        Entry old = entries.remove(key);
+        if (old != null) usedBytes -= old.bytes;
+    }
+
+    private static Map<String, Long> versionsOf(ConjunctiveQuery query, Map<String, Relation> catalog) {
+        Map<String, Long> versions = new HashMap<>();
+        for (String name : query.relationNames()) {
+            Relation r = catalog.get(name);
+            versions.put(name, r == null ? -1L : r.getVersion());
+        }
+        return versions;
+    }
+}
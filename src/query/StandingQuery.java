@@ -0,0 +1,338 @@
+package query;
+
+import Algorithms.hash.PackedTupleSet;
+import database.ColumnType;
+import database.Relation;
+import database.Tuple;
+import tree.QueryTreeBuilder;
+import tree.TreeNode;
+
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A conjunctive query kept up to date while its relations grow through
+ * {@link Relation#addRow}. The full result is computed once; after that,
+ * {@link #refresh()} reads only the rows appended since the last refresh
+ * and derives the result tuples they add, which are pushed to every
+ * {@link Subscriber}.
+ *
+ * <h3>Delta rules</h3>
+ * For a query Q = A_1 ⋈ ... ⋈ A_n and distinct new rows ΔA_k of atom k,
+ * the new result tuples are ΔA_k ⋈ (⋈_{j≠k} A_j). Atoms are updated one at
+ * a time, each against the current contents of the others, so a batch that
+ * touches several atoms (or one relation under several aliases, as in a
+ * self-join) yields every new tuple exactly once. The join order for ΔA_k
+ * follows the query tree outwards from A_k's leaf: its sibling subtree
+ * first, then each ancestor's sibling, preferring atoms that share an
+ * attribute with what is already bound.
+ *
+ * <h3>State</h3>
+ * Each atom keeps its distinct rows and one hash index per key it is probed
+ * on (the attributes bound before it in some delta plan), so a refresh
+ * costs index probes per new row plus the tuples it produces, independent
+ * of the size of the relations. Rows that already exist produce nothing.
+ * The initial result is the same delta rule applied to all rows of the
+ * smallest atom, so {@link #result()} is the exact natural join throughout.
+ *
+ * <p>Relations are read through their current version on each refresh;
+ * read-only ones (snapshots and mapped files) never change and are read
+ * once. All public methods are synchronized.
+ */
+public class StandingQuery {
+
+    /** Receives each non-empty batch of result tuples added by a refresh. */
+    @FunctionalInterface
+    public interface Subscriber {
+
+        /** Called on the refreshing thread; {@code added} is unmodifiable. */
+        void onDelta(Set<Tuple> added);
+    }
+
+    /** One atom: its rows under the query's attribute names, and the indexes probing it. */
+    private static final class AtomState {
+        final String           alias;
+        final Relation         base;        // the live relation rows are appended to
+        final List<String>     columns;     // attribute per column
+        final ColumnType[]     convert;     // per column, the type to convert base values to; null = as stored
+        final int[]            slots;       // binding slot per column
+        final Set<Tuple>       rows = new PackedTupleSet();
+        final Map<String, Integer> attributeMap;
+        final Map<List<Integer>, Map<List<Object>, List<Tuple>>> indexes = new HashMap<>();
+
+        AtomState(String alias, Relation base, Relation bound, Map<String, Integer> slotOf) {
+            this.alias        = alias;
+            this.base         = base;
+            this.columns      = bound.getColumns();
+            this.convert      = new ColumnType[columns.size()];
+            this.slots        = new int[columns.size()];
+            Map<String, Integer> map = new HashMap<>();
+            for (int c = 0; c < columns.size(); c++) {
+                ColumnType target = bound.getColumnTypes().get(c);
+                if (target != base.getColumnTypes().get(c)) convert[c] = target;
+                slots[c] = slotOf.get(columns.get(c));
+                map.putIfAbsent(columns.get(c), c);
+            }
+            this.attributeMap = Collections.unmodifiableMap(map);
+        }
+
+        /** Index on {@code keyColumns}, built from the current rows the first time it is asked for. */
+        Map<List<Object>, List<Tuple>> index(List<Integer> keyColumns) {
+            return indexes.computeIfAbsent(keyColumns, k -> {
+                Map<List<Object>, List<Tuple>> index = new HashMap<>();
+                for (Tuple t : rows) index.computeIfAbsent(key(t, k), x -> new ArrayList<>()).add(t);
+                return index;
+            });
+        }
+
+        /** Adds {@code t} unless present; true if it is new. */
+        boolean insert(Tuple t) {
+            if (!rows.add(t)) return false;
+            for (Map.Entry<List<Integer>, Map<List<Object>, List<Tuple>>> e : indexes.entrySet()) {
+                e.getValue().computeIfAbsent(key(t, e.getKey()), x -> new ArrayList<>()).add(t);
+            }
+            return true;
+        }
+
+        /** A base row as a tuple of this atom, converted to the bound column types. */
+        Tuple fromBase(Tuple row) {
+            Object[] vals = new Object[columns.size()];
+            for (int c = 0; c < vals.length; c++) {
+                Object v = row.getValue(c);
+                try {
+                    vals[c] = convert[c] == null ? v : convert[c].convert(v);
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException(
+                        "Column '" + columns.get(c) + "' of " + alias + ": " + e.getMessage());
+                }
+            }
+            return new Tuple(Arrays.asList(vals), attributeMap);
+        }
+
+        static List<Object> key(Tuple t, List<Integer> columns) {
+            Object[] key = new Object[columns.size()];
+            for (int i = 0; i < key.length; i++) key[i] = t.getValue(columns.get(i));
+            return Arrays.asList(key);
+        }
+    }
+
+    /** One atom joined in a delta plan: probed on its already-bound columns, binding the rest. */
+    private static final class Step {
+        final AtomState                      atom;
+        final int[]                          keySlots;   // slots probed, in index key order
+        final int[]                          newColumns; // columns that bind new slots
+        final int[]                          newSlots;
+        final Map<List<Object>, List<Tuple>> index;      // null for the delta atom itself
+
+        Step(AtomState atom, Set<Integer> bound, boolean probed) {
+            this.atom = atom;
+            List<Integer> keyColumns = new ArrayList<>(), newCols = new ArrayList<>();
+            for (int c = 0; c < atom.slots.length; c++) {
+                (bound.contains(atom.slots[c]) ? keyColumns : newCols).add(c);
+            }
+            this.keySlots   = keyColumns.stream().mapToInt(c -> atom.slots[c]).toArray();
+            this.newColumns = newCols.stream().mapToInt(Integer::intValue).toArray();
+            this.newSlots   = newCols.stream().mapToInt(c -> atom.slots[c]).toArray();
+            this.index      = probed ? atom.index(keyColumns) : null;
+        }
+    }
+
+    private final ConjunctiveQuery           query;
+    private final List<AtomState>            atoms = new ArrayList<>();
+    private final Map<Relation, Integer>     seen  = new IdentityHashMap<>();   // base → rows absorbed
+    private final Map<AtomState, Step[]>     plans = new IdentityHashMap<>();
+    private final Map<String, Integer>       outputMap;                          // attribute → slot of result tuples
+    private final Set<Tuple>                 result;
+    private final List<Subscriber>           subscribers = new CopyOnWriteArrayList<>();
+
+    /**
+     * Evaluates {@code query} over the current contents of {@code catalog}
+     * and prepares the state for maintaining it.
+     *
+     * @param catalog the live relations; rows appended to them later are
+     *                picked up by {@link #refresh()}
+     * @throws IllegalArgumentException if the query cannot be bound (see
+     *         {@link ConjunctiveQuery#bind})
+     */
+    public StandingQuery(ConjunctiveQuery query, Map<String, Relation> catalog) {
+        this.query = query;
+        Map<String, Relation> pinned = new HashMap<>();
+        for (String name : query.relationNames()) {
+            Relation base = catalog.get(name);
+            if (base == null) throw new IllegalArgumentException("Unknown relation '" + name + "'");
+            Relation snap = base.snapshot();
+            pinned.put(name, snap);
+            seen.put(base, snap.size());
+        }
+        Map<String, Relation> bound = query.bind(pinned);
+
+        Map<String, Integer> slotOf = new LinkedHashMap<>();
+        for (Relation r : bound.values()) {
+            for (String col : r.getColumns()) slotOf.putIfAbsent(col, slotOf.size());
+        }
+        this.outputMap = Collections.unmodifiableMap(slotOf);
+        for (ConjunctiveQuery.Atom atom : query.getAtoms()) {
+            AtomState state = new AtomState(atom.alias, catalog.get(atom.relation), bound.get(atom.alias), slotOf);
+            for (Tuple t : bound.get(atom.alias).getTuples()) {
+                state.insert(new Tuple(t.getValues(), state.attributeMap));
+            }
+            atoms.add(state);
+        }
+
+        TreeNode root = QueryTreeBuilder.build(bound);
+        for (AtomState a : atoms) plans.put(a, plan(a, root));
+
+        // The initial result is the delta of the smallest atom's rows against everything else
+        AtomState smallest = Collections.min(atoms, Comparator.comparingInt(a -> a.rows.size()));
+        this.result = new HashSet<>();
+        join(smallest.rows, plans.get(smallest), result);
+    }
+
+    // ── Public API ────────────────────────────────────────────────────────────
+
+    public ConjunctiveQuery getQuery() { return query; }
+
+    /** The current result: the initial one plus every delta since. Unmodifiable, live. */
+    public synchronized Set<Tuple> result() { return Collections.unmodifiableSet(result); }
+
+    public void subscribe(Subscriber subscriber)   { subscribers.add(subscriber); }
+
+    public void unsubscribe(Subscriber subscriber) { subscribers.remove(subscriber); }
+
+    /**
+     * Absorbs the rows appended to the query's relations since the last
+     * refresh and returns the result tuples they add, after passing them to
+     * the subscribers (if there are any new tuples).
+     *
+     * @throws IllegalArgumentException if a new value cannot be converted
+     *         to its column's bound type; rows before it are absorbed
+     */
+    public synchronized Set<Tuple> refresh() {
+        Set<Tuple> added = new HashSet<>();
+        Map<Relation, List<Tuple>> appended = new IdentityHashMap<>();
+        for (Map.Entry<Relation, Integer> e : seen.entrySet()) {
+            List<Tuple> rows = e.getKey().getRows();
+            if (rows.size() > e.getValue()) appended.put(e.getKey(), rows.subList(e.getValue(), rows.size()));
+        }
+        for (AtomState atom : atoms) {
+            List<Tuple> rows = appended.get(atom.base);
+            if (rows == null) continue;
+            Set<Tuple> delta = new LinkedHashSet<>();
+            for (Tuple row : rows) {
+                Tuple t = atom.fromBase(row);
+                if (!atom.rows.contains(t)) delta.add(t);
+            }
+            join(delta, plans.get(atom), added);
+            for (Tuple t : delta) atom.insert(t);
+        }
+        for (Map.Entry<Relation, List<Tuple>> e : appended.entrySet()) {
+            seen.merge(e.getKey(), e.getValue().size(), Integer::sum);
+        }
+        result.addAll(added);
+        Set<Tuple> out = Collections.unmodifiableSet(added);
+        if (!added.isEmpty()) {
+            for (Subscriber s : subscribers) s.onDelta(out);
+        }
+        return out;
+    }
+
+    /**
+     * Appends {@code rows} to relation {@code name} of the query and
+     * refreshes: the result tuples the rows (and anything else appended
+     * meanwhile) add.
+     *
+     * @throws IllegalArgumentException if the query does not read {@code name}
+     *         or a row has the wrong number of values
+     */
+    public synchronized Set<Tuple> insert(String name, List<Object[]> rows) {
+        Relation base = null;
+        for (AtomState a : atoms) if (a.base.getName().equals(name)) base = a.base;
+        if (base == null) throw new IllegalArgumentException("Query does not read relation '" + name + "'");
+        for (Object[] row : rows) base.addRow(row);
+        return refresh();
+    }
+
+    // ── Delta evaluation ──────────────────────────────────────────────────────
+
+    /**
+     * The delta plan of {@code start}: {@code start} itself, then the other
+     * atoms in order of distance from its leaf in the query tree, each time
+     * taking the nearest one that shares an attribute with those bound.
+     */
+    private Step[] plan(AtomState start, TreeNode root) {
+        List<String> byDistance = new ArrayList<>();
+        TreeNode node = find(root, start.alias);
+        for (TreeNode child = node; child != null && child.getParent() != null; child = child.getParent()) {
+            TreeNode parent = child.getParent();
+            leaves(parent.leftChild() == child ? parent.rightChild() : parent.leftChild(), byDistance);
+        }
+        Map<String, AtomState> byAlias = new HashMap<>();
+        for (AtomState a : atoms) byAlias.put(a.alias, a);
+
+        Set<Integer> bound = new HashSet<>();
+        List<Step> steps = new ArrayList<>();
+        steps.add(new Step(start, bound, false));
+        for (int s : start.slots) bound.add(s);
+        List<AtomState> remaining = new ArrayList<>();
+        for (String alias : byDistance) remaining.add(byAlias.get(alias));
+        while (!remaining.isEmpty()) {
+            AtomState next = remaining.get(0);
+            for (AtomState a : remaining) {
+                if (Arrays.stream(a.slots).anyMatch(bound::contains)) {
+                    next = a;
+                    break;
+                }
+            }
+            remaining.remove(next);
+            steps.add(new Step(next, bound, true));
+            for (int s : next.slots) bound.add(s);
+        }
+        return steps.toArray(new Step[0]);
+    }
+
+    /** Adds ΔA ⋈ (the plan's other atoms) to {@code out}. */
+    private void join(Collection<Tuple> delta, Step[] plan, Set<Tuple> out) {
+        Object[] binding = new Object[outputMap.size()];
+        for (Tuple t : delta) {
+            bind(plan[0], t, binding);
+            extend(plan, 1, binding, out);
+        }
+    }
+
+    private void extend(Step[] plan, int depth, Object[] binding, Set<Tuple> out) {
+        if (depth == plan.length) {
+            out.add(new Tuple(Arrays.asList(binding.clone()), outputMap));
+            return;
+        }
+        Step step = plan[depth];
+        Object[] key = new Object[step.keySlots.length];
+        for (int i = 0; i < key.length; i++) key[i] = binding[step.keySlots[i]];
+        List<Tuple> matches = step.index.get(Arrays.asList(key));
+        if (matches == null) return;
+        for (Tuple t : matches) {
+            bind(step, t, binding);
+            extend(plan, depth + 1, binding, out);
+        }
+    }
+
+    private static void bind(Step step, Tuple t, Object[] binding) {
+        for (int i = 0; i < step.newColumns.length; i++) binding[step.newSlots[i]] = t.getValue(step.newColumns[i]);
+    }
+
+    private static TreeNode find(TreeNode n, String label) {
+        if (n == null) return null;
+        if (n.isLeaf()) return n.getLabel().equals(label) ? n : null;
+        TreeNode left = find(n.leftChild(), label);
+        return left != null ? left : find(n.rightChild(), label);
+    }
+
+    private static void leaves(TreeNode n, List<String> out) {
+        if (n == null) return;
+        if (n.isLeaf()) {
+            out.add(n.getLabel());
+            return;
+        }
+        leaves(n.leftChild(), out);
+        leaves(n.rightChild(), out);
+    }
+}
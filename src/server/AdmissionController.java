@@ -0,0 +1,82 @@
+package server;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounds how many queries run at once by CPU and by memory.
+ *
+ * <p>A query needs one CPU permit (there are as many as available
+ * processors) and a reservation of its memory budget against a fixed share
+ * of the maximum heap. Requests wait a short while for a CPU permit; if none
+ * frees up, or the memory reservation does not fit, they are rejected so the
+ * server sheds load instead of thrashing.
+ */
+class AdmissionController {
+
+    /** Held for the duration of one admitted query. */
+    final class Ticket implements AutoCloseable {
+        private final long bytes;
+        private boolean    closed;
+
+        private Ticket(long bytes) { this.bytes = bytes; }
+
+        @Override
+        public void close() {
+            if (closed) return;
+            closed = true;
+            reservedBytes.addAndGet(-bytes);
+            cpu.release();
+        }
+    }
+
+    private final Semaphore  cpu;
+    private final long       memoryLimit;
+    private final AtomicLong reservedBytes = new AtomicLong();
+    private final AtomicLong rejected      = new AtomicLong();
+
+    /**
+     * @param cpuPermits    concurrent queries allowed by CPU
+     * @param memoryLimit   total bytes all running queries may reserve
+     */
+    AdmissionController(int cpuPermits, long memoryLimit) {
+        this.cpu         = new Semaphore(cpuPermits, true);
+        this.memoryLimit = memoryLimit;
+    }
+
+    /** Defaults: one query per core, 60% of the maximum heap. */
+    static AdmissionController forRuntime() {
+        Runtime rt = Runtime.getRuntime();
+        return new AdmissionController(rt.availableProcessors(), (long) (rt.maxMemory() * 0.6));
+    }
+
+    /**
+     * Admits a query needing {@code bytes} of memory, waiting up to
+     * {@code waitMillis} for CPU. Returns null if it is rejected.
+     */
+    Ticket admit(long bytes, long waitMillis) throws InterruptedException {
+        if (!reserve(bytes)) {
+            rejected.incrementAndGet();
+            return null;
+        }
+        if (!cpu.tryAcquire(waitMillis, TimeUnit.MILLISECONDS)) {
+            reservedBytes.addAndGet(-bytes);
+            rejected.incrementAndGet();
+            return null;
+        }
+        return new Ticket(bytes);
+    }
+
+    private boolean reserve(long bytes) {
+        while (true) {
+            long used = reservedBytes.get();
+            if (used + bytes > memoryLimit) return false;
+            if (reservedBytes.compareAndSet(used, used + bytes)) return true;
+        }
+    }
+
+    long getRejected()      { return rejected.get(); }
+    long getReservedBytes() { return reservedBytes.get(); }
+    int  getAvailableCpu()  { return cpu.availablePermits(); }
+}
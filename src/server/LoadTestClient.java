@@ -0,0 +1,79 @@
+package server;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local load generator for {@link QueryServer}: {@code concurrency} workers
+ * send {@code requests} queries in total and the client reports throughput,
+ * latency percentiles and response status counts.
+ *
+ * <p>Usage: {@code java -cp bin server.LoadTestClient <port> <concurrency> <requests> <query>...}
+ * — several queries are sent round-robin.
+ */
+public class LoadTestClient {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 4) {
+            System.err.println("Usage: LoadTestClient <port> <concurrency> <requests> <query>...");
+            System.exit(2);
+        }
+        int port        = Integer.parseInt(args[0]);
+        int concurrency = Integer.parseInt(args[1]);
+        int requests    = Integer.parseInt(args[2]);
+        List<String> queries = Arrays.asList(args).subList(3, args.length);
+
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+        URI uri = URI.create("http://127.0.0.1:" + port + "/query");
+
+        long[] latencies = new long[requests];
+        Map<Integer, AtomicInteger> statuses = new ConcurrentHashMap<>();
+        AtomicInteger next = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(concurrency);
+
+        long start = System.nanoTime();
+        List<Future<?>> workers = new ArrayList<>();
+        for (int w = 0; w < concurrency; w++) {
+            workers.add(pool.submit(() -> {
+                int i;
+                while ((i = next.getAndIncrement()) < requests) {
+                    HttpRequest req = HttpRequest.newBuilder(uri)
+                            .POST(HttpRequest.BodyPublishers.ofString(queries.get(i % queries.size())))
+                            .build();
+                    long t0 = System.nanoTime();
+                    int status;
+                    try {
+                        status = client.send(req, HttpResponse.BodyHandlers.discarding()).statusCode();
+                    } catch (Exception e) {
+                        status = -1;
+                    }
+                    latencies[i] = System.nanoTime() - t0;
+                    statuses.computeIfAbsent(status, s -> new AtomicInteger()).incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        for (Future<?> f : workers) f.get();
+        long elapsed = System.nanoTime() - start;
+        pool.shutdown();
+
+        Arrays.sort(latencies);
+        System.out.printf("Requests: %d  Concurrency: %d  Elapsed: %.1f ms  Throughput: %.1f req/s%n",
+                          requests, concurrency, elapsed / 1e6, requests / (elapsed / 1e9));
+        System.out.printf("Latency ms  p50=%.2f  p90=%.2f  p99=%.2f  max=%.2f%n",
+                          pct(latencies, 50), pct(latencies, 90), pct(latencies, 99),
+                          latencies[latencies.length - 1] / 1e6);
+        System.out.println("Status counts: " + new TreeMap<>(statuses));
+    }
+
+    private static double pct(long[] sorted, double p) {
+        int idx = (int) Math.ceil(p / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(idx, sorted.length - 1))] / 1e6;
+    }
+}
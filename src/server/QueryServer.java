@@ -0,0 +1,278 @@
+package server;
+
+import Algorithms.CancellationToken;
+import Algorithms.LoomisWhitneyInstance;
+import Algorithms.QueryCancelledException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import database.Catalog;
+import database.CsvLoader;
+import database.MemoryBudget;
+import database.RelationFile;
+import database.Relation;
+import database.Tuple;
+import query.ConjunctiveQuery;
+import query.QueryResultCache;
+import tree.PlanFeedback;
+import tree.QueryTreeBuilder;
+import tree.SubtreeCache;
+import tree.TreeNode;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Headless HTTP front end over a shared {@link Catalog}.
+ *
+ * <pre>
+ *   GET  /relations          name, columns and size of every loaded relation
+ *   POST /relations/{name}   CSV body (header + rows) → load or replace {name}
+ *   POST /query              query text, e.g. "R(a,b), S(b,c)" → CSV result
+ * </pre>
+ *
+ * Each request runs on its own virtual thread when the JDK has them (21+),
+ * otherwise on a cached pool of platform threads. Queries pass through an
+ * {@link AdmissionController} and get a {@link MemoryBudget} of
+ * {@code budgetBytes}; results are streamed back row by row with chunked
+ * transfer encoding. Query results and subtree results are cached across
+ * requests, and so are the subtree sizes earlier queries observed, which
+ * steer later plans; a plan whose node sizes are off by more than a factor
+ * of {@value #REPLAN_FACTOR} is re-planned while it runs. A query that runs
+ * past its timeout (default {@value #DEFAULT_TIMEOUT_MS} ms, or the {@code X-Query-Timeout-Ms} request
+ * header) is stopped and answered with 504 and a progress report.
+ *
+ * <p>Start with {@code java -cp bin server.QueryServer [port] [csvDir] [budgetMb]}.
+ */
+public class QueryServer {
+
+    private static final long ADMISSION_WAIT_MS  = 2_000;
+    private static final long DEFAULT_TIMEOUT_MS = 30_000;
+    private static final double REPLAN_FACTOR     = 10;
+
+    static {
+        // Rows are streamed in several chunks; without TCP_NODELAY the final
+        // chunk waits on the client's delayed ACK (~40 ms per request).
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final Catalog             catalog;
+    private final long                budgetBytes;
+    private final AdmissionController admission;
+    private final QueryResultCache    resultCache  = new QueryResultCache(256L * 1024 * 1024);
+    private final SubtreeCache        subtreeCache = new SubtreeCache(256L * 1024 * 1024, 1_000_000);
+    private final PlanFeedback        planFeedback = new PlanFeedback();
+    private final HttpServer          http;
+    private final ExecutorService     executor;
+
+    public QueryServer(Catalog catalog, int port, long budgetBytes) throws IOException {
+        this.catalog     = catalog;
+        this.budgetBytes = budgetBytes;
+        this.admission   = AdmissionController.forRuntime();
+        this.http        = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        this.executor    = requestExecutor();
+        http.setExecutor(executor);
+        http.createContext("/relations", this::handleRelations);
+        http.createContext("/query", this::handleQuery);
+    }
+
+    public void start() { http.start(); }
+
+    public void stop() {
+        http.stop(0);
+        executor.shutdownNow();
+    }
+
+    public int getPort() { return http.getAddress().getPort(); }
+
+    // ── Handlers ──────────────────────────────────────────────────────────────
+
+    private void handleRelations(HttpExchange ex) throws IOException {
+        try (ex) {
+            String path = ex.getRequestURI().getPath();
+            if ("GET".equals(ex.getRequestMethod()) && path.equals("/relations")) {
+                StringBuilder sb = new StringBuilder();
+                for (String name : catalog.names()) {
+                    Relation r = catalog.get(name);
+                    if (r != null) sb.append(name).append('\t').append(r.getColumns())
+                                     .append('\t').append(r.size()).append('\n');
+                }
+                reply(ex, 200, sb.toString());
+            } else if ("POST".equals(ex.getRequestMethod()) && path.startsWith("/relations/")) {
+                String name = path.substring("/relations/".length());
+                if (!name.matches("[A-Za-z0-9_]+")) {
+                    reply(ex, 400, "Invalid relation name: " + name + "\n");
+                    return;
+                }
+                Relation rel = CsvLoader.load(name, new InputStreamReader(ex.getRequestBody(), StandardCharsets.UTF_8));
+                catalog.put(rel);
+                resultCache.invalidate(name);
+                reply(ex, 201, "Loaded " + name + " " + rel.getColumns() + " (" + rel.size() + " rows)\n");
+            } else {
+                reply(ex, 405, "Unsupported: " + ex.getRequestMethod() + " " + path + "\n");
+            }
+        }
+    }
+
+    private void handleQuery(HttpExchange ex) throws IOException {
+        try (ex) {
+            try {
+                answerQuery(ex);
+            } catch (RuntimeException e) {
+                // The ticket and budget are closed by now; answer unless the result is already streaming
+                if (ex.getResponseCode() != -1) throw e;
+                reply(ex, 500, "Internal error: " + e + "\n");
+            }
+        }
+    }
+
+    private void answerQuery(HttpExchange ex) throws IOException {
+        if (!"POST".equals(ex.getRequestMethod())) {
+            reply(ex, 405, "POST the query text to /query\n");
+            return;
+        }
+        String text = new String(ex.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        ConjunctiveQuery query;
+        Map<String, Relation> sources = catalog.snapshot();
+        Map<String, Relation> relations;
+        try {
+            query     = ConjunctiveQuery.parse(text);
+            relations = query.bind(sources);
+        } catch (IllegalArgumentException e) {
+            reply(ex, 400, e.getMessage() + "\n");
+            return;
+        }
+
+        long timeoutMs;
+        try {
+            String header = ex.getRequestHeaders().getFirst("X-Query-Timeout-Ms");
+            timeoutMs = header == null ? DEFAULT_TIMEOUT_MS : Long.parseLong(header.trim());
+        } catch (NumberFormatException e) {
+            reply(ex, 400, "Invalid X-Query-Timeout-Ms header\n");
+            return;
+        }
+
+        long start = System.nanoTime();
+        Set<Tuple> results = resultCache.get(query, sources);
+        if (results == null) {
+            AdmissionController.Ticket ticket;
+            try {
+                ticket = admission.admit(budgetBytes, ADMISSION_WAIT_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                reply(ex, 503, "Interrupted while waiting for admission\n");
+                return;
+            }
+            if (ticket == null) {
+                ex.getResponseHeaders().set("Retry-After", "1");
+                reply(ex, 503, "Server busy: query not admitted\n");
+                return;
+            }
+            try (ticket; MemoryBudget budget = new MemoryBudget(budgetBytes)) {
+                TreeNode root = QueryTreeBuilder.build(relations, planFeedback);
+                LoomisWhitneyInstance lw = new LoomisWhitneyInstance(relations, root, budget);
+                lw.setSubtreeCache(subtreeCache);
+                lw.setAdaptive(REPLAN_FACTOR, planFeedback);
+                lw.setCancellationToken(CancellationToken.withTimeout(timeoutMs, TimeUnit.MILLISECONDS));
+                results = lw.execute();
+            } catch (QueryCancelledException e) {
+                reply(ex, 504, e.progressReport() + "\n");
+                return;
+            }
+            resultCache.put(query, sources, results);
+        }
+        streamResult(ex, results, resultColumns(query, relations), System.nanoTime() - start);
+    }
+
+    // ── Output ────────────────────────────────────────────────────────────────
+
+    private static void streamResult(HttpExchange ex, Set<Tuple> results, List<String> columns,
+                                     long nanos) throws IOException {
+        ex.getResponseHeaders().set("Content-Type", "text/csv; charset=utf-8");
+        ex.getResponseHeaders().set("X-Result-Rows", String.valueOf(results.size()));
+        ex.getResponseHeaders().set("X-Elapsed-Micros", String.valueOf(nanos / 1_000));
+        ex.sendResponseHeaders(200, 0); // chunked
+        try (Writer w = new BufferedWriter(new OutputStreamWriter(ex.getResponseBody(), StandardCharsets.UTF_8))) {
+            w.write(String.join(",", columns));
+            w.write('\n');
+            for (Tuple t : results) {
+                for (int i = 0; i < columns.size(); i++) {
+                    if (i > 0) w.write(',');
+                    Object v = t.getValueByAttribute(columns.get(i));
+                    w.write(v == null ? "" : v.toString());
+                }
+                w.write('\n');
+            }
+        }
+    }
+
+    private static List<String> resultColumns(ConjunctiveQuery query, Map<String, Relation> relations) {
+        Set<String> cols = new LinkedHashSet<>();
+        for (ConjunctiveQuery.Atom atom : query.getAtoms()) cols.addAll(relations.get(atom.alias).getColumns());
+        return new ArrayList<>(cols);
+    }
+
+    private static void reply(HttpExchange ex, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        ex.sendResponseHeaders(status, bytes.length);
+        ex.getResponseBody().write(bytes);
+    }
+
+    /** Virtual-thread-per-task executor when available (JDK 21+), else a cached daemon pool. */
+    static ExecutorService requestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "query-worker");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    // ── Entry point ───────────────────────────────────────────────────────────
+
+    public static void main(String[] args) throws IOException {
+        int    port     = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        File   dataDir  = new File(args.length > 1 ? args[1] : "src/test");
+        long   budgetMb = args.length > 2 ? Long.parseLong(args[2]) : 64;
+
+        Catalog catalog = new Catalog();
+        // .lwr files are mapped (rows decoded on first use); CSVs without one are parsed
+        File[] lwrs = dataDir.listFiles((d, n) -> n.endsWith(RelationFile.EXTENSION));
+        if (lwrs != null) {
+            for (File f : lwrs) {
+                try {
+                    catalog.put(RelationFile.read(f));
+                } catch (IOException e) {
+                    System.err.println("Skipping " + f + ": " + e.getMessage());
+                }
+            }
+        }
+        File[] csvs = dataDir.listFiles((d, n) -> n.endsWith(".csv"));
+        if (csvs != null) {
+            for (File f : csvs) {
+                String name = f.getName().replaceFirst("[.][^.]+$", "");
+                if (catalog.contains(name)) continue;
+                try {
+                    catalog.put(CsvLoader.load(name, f));
+                } catch (IOException e) {
+                    System.err.println("Skipping " + f + ": " + e.getMessage());
+                }
+            }
+        }
+
+        QueryServer server = new QueryServer(catalog, port, budgetMb * 1024 * 1024);
+        server.start();
+        System.out.println("Query server on http://127.0.0.1:" + server.getPort()
+                           + " with " + catalog.size() + " relation(s) from " + dataDir);
+    }
+}
@@ -0,0 +1,68 @@
+package tree;
+
+import database.Relation;
+
+import java.util.*;
+
+/**
+ * Output sizes of subtrees observed by earlier runs, keyed by the subtree's
+ * shape: the set of its leaves as relation name and columns. Versions are
+ * left out on purpose, so what was learnt about a join survives inserts
+ * into its relations; the sizes are estimates, not cached results.
+ *
+ * <p>{@link QueryTreeBuilder#build(Map, PlanFeedback)} prefers an observed
+ * size to its own guess when it ranks candidate merges, so later plans for
+ * the same query shape follow what the data actually did.
+ *
+ * <p>At most {@code capacity} shapes are kept; recording one more evicts
+ * the shape least recently recorded or looked up. All methods are
+ * synchronized, so one instance can be shared by all queries of a server.
+ */
+public class PlanFeedback {
+
+    /** Shapes kept by {@link #PlanFeedback()}. */
+    public static final int DEFAULT_CAPACITY = 10_000;
+
+    private final Map<String, Long> observed;
+
+    public PlanFeedback() { this(DEFAULT_CAPACITY); }
+
+    /** @param capacity most shapes kept before the least recently used is evicted */
+    public PlanFeedback(int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        // Access order, so a lookup counts as use and eviction drops the stalest shape
+        this.observed = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /** Records that the subtree over {@code leaves} produced {@code rows} tuples. */
+    public synchronized void record(Collection<String> leaves, long rows) {
+        observed.put(shapeKey(leaves), rows);
+    }
+
+    /** The last size recorded for the subtree over {@code leaves}, or -1 if none was. */
+    public synchronized long observed(Collection<String> leaves) {
+        Long rows = observed.get(shapeKey(leaves));
+        return rows == null ? -1 : rows;
+    }
+
+    /** Number of shapes with a recorded size. */
+    public synchronized int size() { return observed.size(); }
+
+    public synchronized void clear() { observed.clear(); }
+
+    /** Leaf identity used in shapes: the relation's name and columns, without its version. */
+    public static String leafKey(Relation r) {
+        return r.getName() + r.getColumns();
+    }
+
+    private static String shapeKey(Collection<String> leaves) {
+        List<String> sorted = new ArrayList<>(leaves);
+        Collections.sort(sorted);
+        return String.join("⋈", sorted);
+    }
+}
@@ -21,7 +21,9 @@ import java.util.*;
  * possible.
  *
  * <p>If two pairs tie on overlap count the one with the smaller combined size
- * is preferred (fewer rows to join eagerly).
+ * is preferred (fewer rows to join eagerly). Without feedback a merged
+ * subtree's size is the sum of its inputs' sizes; with a {@link PlanFeedback}
+ * it is the size observed for that subtree's leaves, when one was recorded.
  */
 public class QueryTreeBuilder {
 
@@ -33,19 +35,43 @@ public class QueryTreeBuilder {
      * @throws IllegalArgumentException if {@code relations} is empty
      */
     public static TreeNode build(Map<String, Relation> relations) {
+        return build(relations, null);
+    }
+
+    /**
+     * As {@link #build(Map)}, ranking merges by the subtree sizes in
+     * {@code feedback} where it has them.
+     *
+     * @param feedback observed subtree sizes; may be null
+     */
+    public static TreeNode build(Map<String, Relation> relations, PlanFeedback feedback) {
         if (relations == null || relations.isEmpty()) {
             throw new IllegalArgumentException("Cannot build a query tree from an empty relation set.");
         }
-
-        // Each entry tracks: the subtree node + the union of all attribute names in that subtree
-        List<SubtreeInfo> pool = new ArrayList<>();
+        List<Input> inputs = new ArrayList<>();
         for (Map.Entry<String, Relation> entry : relations.entrySet()) {
-            TreeNode leaf = new TreeNode(entry.getKey());
-            Set<String> attrs = new LinkedHashSet<>(entry.getValue().getSchema());
-            int rows = entry.getValue().size();
-            pool.add(new SubtreeInfo(leaf, attrs, rows));
+            Relation rel = entry.getValue();
+            inputs.add(new Input(new TreeNode(entry.getKey()), new LinkedHashSet<>(rel.getSchema()), rel.size(),
+                                 Collections.singleton(PlanFeedback.leafKey(rel))));
+        }
+        return build(inputs, feedback);
+    }
+
+    /**
+     * Builds a tree over arbitrary subtrees, e.g. the finished parts of a tree
+     * being re-planned: each input's node becomes a child of a fresh internal
+     * node and keeps its own children.
+     *
+     * @throws IllegalArgumentException if {@code inputs} is empty
+     */
+    public static TreeNode build(List<Input> inputs, PlanFeedback feedback) {
+        if (inputs == null || inputs.isEmpty()) {
+            throw new IllegalArgumentException("Cannot build a query tree from an empty relation set.");
         }
 
+        // Each entry tracks: the subtree node + the union of all attribute names in that subtree
+        List<Input> pool = new ArrayList<>(inputs);
+
         // Special case: single relation
         if (pool.size() == 1) {
             return pool.get(0).node;
@@ -55,12 +81,12 @@ public class QueryTreeBuilder {
         while (pool.size() > 1) {
             int bestI = -1, bestJ = -1;
             int bestOverlap = -1;
-            int bestSize = Integer.MAX_VALUE;
+            long bestSize = Long.MAX_VALUE;
 
             for (int i = 0; i < pool.size(); i++) {
                 for (int j = i + 1; j < pool.size(); j++) {
                     int overlap = countOverlap(pool.get(i).attrs, pool.get(j).attrs);
-                    int combinedSize = pool.get(i).rows + pool.get(j).rows;
+                    long combinedSize = mergedRows(pool.get(i), pool.get(j), feedback);
                     if (overlap > bestOverlap
                             || (overlap == bestOverlap && combinedSize < bestSize)) {
                         bestOverlap = overlap;
@@ -71,8 +97,8 @@ public class QueryTreeBuilder {
                 }
             }
 
-            SubtreeInfo left  = pool.get(bestI);
-            SubtreeInfo right = pool.get(bestJ);
+            Input left  = pool.get(bestI);
+            Input right = pool.get(bestJ);
 
             // Create internal node labelled with the shared attributes for readability
             String label = joinLabel(left.node.getLabel(), right.node.getLabel());
@@ -80,15 +106,16 @@ public class QueryTreeBuilder {
             internal.setLeft(left.node);
             internal.setRight(right.node);
 
-            // Union of schemas; combined row count is an approximate upper bound
+            // Union of schemas and leaves; the row count is the merge's estimate
             Set<String> unionAttrs = new LinkedHashSet<>(left.attrs);
             unionAttrs.addAll(right.attrs);
-            int unionRows = left.rows + right.rows; // rough estimate
+            Set<String> unionLeaves = new HashSet<>(left.leaves);
+            unionLeaves.addAll(right.leaves);
 
             // Remove merged pair, add new internal node (remove higher index first)
             pool.remove(Math.max(bestI, bestJ));
             pool.remove(Math.min(bestI, bestJ));
-            pool.add(new SubtreeInfo(internal, unionAttrs, unionRows));
+            pool.add(new Input(internal, unionAttrs, bestSize, unionLeaves));
         }
 
         return pool.get(0).node;
@@ -102,21 +129,44 @@ public class QueryTreeBuilder {
         return count;
     }
 
+    /**
+     * Estimated rows of the subtree merging {@code a} and {@code b}: the size
+     * observed for its leaves if {@code feedback} has one, else the sum of
+     * the inputs' rows (a rough upper bound).
+     */
+    private static long mergedRows(Input a, Input b, PlanFeedback feedback) {
+        if (feedback != null) {
+            Set<String> leaves = new HashSet<>(a.leaves);
+            leaves.addAll(b.leaves);
+            long seen = feedback.observed(leaves);
+            if (seen >= 0) return seen;
+        }
+        return a.rows + b.rows;
+    }
+
     private static String joinLabel(String left, String right) {
         return "(" + left + "⋈" + right + ")";
     }
 
-    // ── internal record ───────────────────────────────────────────────────────
+    // ── Inputs ────────────────────────────────────────────────────────────────
 
-    private static class SubtreeInfo {
-        final TreeNode   node;
+    /** One subtree offered to {@link #build(List, PlanFeedback)}. */
+    public static final class Input {
+        final TreeNode    node;
         final Set<String> attrs;
-        int               rows;
-
-        SubtreeInfo(TreeNode node, Set<String> attrs, int rows) {
-            this.node  = node;
-            this.attrs = attrs;
-            this.rows  = rows;
+        final long        rows;
+        final Set<String> leaves;
+
+        /**
+         * @param attrs  attributes of the subtree's relations
+         * @param rows   its (estimated or observed) output size
+         * @param leaves its leaves as {@link PlanFeedback#leafKey} strings
+         */
+        public Input(TreeNode node, Set<String> attrs, long rows, Set<String> leaves) {
+            this.node   = node;
+            this.attrs  = attrs;
+            this.rows   = rows;
+            this.leaves = leaves;
         }
     }
 }
@@ -1,5 +1,6 @@
 package tree;
 
+import database.SpillableTupleSet;
 import database.Tuple;
 import java.util.*;
 
@@ -24,6 +25,15 @@ public class Result {
         return D;
     }
     
+    /**
+     * Frees the C and D sets once their contents have been consumed,
+     * returning spilled sets' budget bytes and deleting their run files.
+     */
+    public void release() {
+        if (C instanceof SpillableTupleSet) ((SpillableTupleSet) C).release();
+        if (D instanceof SpillableTupleSet) ((SpillableTupleSet) D).release();
+    }
+
     public int totalSize() {
         return C.size() + D.size();
     }
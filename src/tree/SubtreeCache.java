@@ -0,0 +1,166 @@
+package tree;
+
+import database.SpillableTupleSet;
+import database.Tuple;
+
+import java.util.*;
+
+/**
+ * Cross-query cache of materialised internal-node results (C and D).
+ *
+ * <p>Keys are canonical subtree strings built by the algorithm from the
+ * relations, column lists and versions of the subtree's leaves, the node's λ
+ * and the heavy/light parameter in force, so an entry is only reused when the
+ * node would compute exactly the same sets.
+ *
+ * <p>Admission and eviction follow GreedyDual-Size: an entry's priority is
+ * {@code L + cost / bytes}, where cost is the time it took to compute the
+ * subtree and L is the priority of the last victim. A new entry is only
+ * admitted if it does not have to evict anything more valuable than itself,
+ * and entries cheaper to compute than {@code minCostNanos} are never admitted.
+ *
+ * <p>All methods are synchronized; cached sets are unmodifiable.
+ */
+public class SubtreeCache {
+
+    private static class Entry {
+        final Result result;
+        final long   bytes;
+        final long   costNanos;
+        double       priority;
+
+        Entry(Result result, long bytes, long costNanos) {
+            this.result    = result;
+            this.bytes     = bytes;
+            this.costNanos = costNanos;
+        }
+    }
+
+    private final long               maxBytes;
+    private final long               minCostNanos;
+    private final Map<String, Entry> entries = new HashMap<>();
+    private long   usedBytes;
+    private double inflation;          // GreedyDual-Size "L"
+    private long   hits, misses, admitted, rejected, evictions;
+
+    /**
+     * @param maxBytes     capacity in estimated tuple bytes
+     * @param minCostNanos subtrees computed faster than this are not cached
+     */
+    public SubtreeCache(long maxBytes, long minCostNanos) {
+        this.maxBytes     = maxBytes;
+        this.minCostNanos = minCostNanos;
+    }
+
+    // ── Lookup / insert ───────────────────────────────────────────────────────
+
+    /** Returns the cached result for {@code key}, or {@code null}. */
+    public synchronized Result get(String key) {
+        Entry e = entries.get(key);
+        if (e == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        e.priority = inflation + (double) e.costNanos / Math.max(1, e.bytes);
+        return e.result;
+    }
+
+    /**
+     * Offers a freshly computed node result. Admitted sets are kept as they
+     * are behind an unmodifiable wrapper, so the caller must not change
+     * {@code C} or {@code D} afterwards. Sets drawn from a query's
+     * {@link database.MemoryBudget} die with it: one still in memory is
+     * copied, and a result with a spilled set is never admitted.
+     *
+     * @return the cached (unmodifiable) result, which the caller may use in
+     *         place of its own sets, or {@code null} if it was not admitted
+     */
+    public synchronized Result put(String key, Set<Tuple> C, Set<Tuple> D, long costNanos) {
+        Entry existing = entries.get(key);
+        if (existing != null) return existing.result;
+        if (isSpilled(C) || isSpilled(D)) {
+            rejected++;
+            return null;
+        }
+        long bytes = 64;
+        for (Tuple t : C) bytes += t.estimatedBytes();
+        for (Tuple t : D) bytes += t.estimatedBytes();
+        if (costNanos < minCostNanos || bytes > maxBytes) {
+            rejected++;
+            return null;
+        }
+
+        double priority = inflation + (double) costNanos / bytes;
+        List<Map.Entry<String, Entry>> victims = victimsFor(bytes, priority);
+        if (victims == null) {
+            rejected++;
+            return null;
+        }
+        for (Map.Entry<String, Entry> v : victims) {
+            entries.remove(v.getKey());
+            usedBytes -= v.getValue().bytes;
+            inflation  = Math.max(inflation, v.getValue().priority);
+            evictions++;
+        }
+
+        Result frozen = new Result(freeze(C), freeze(D));
+        Entry e = new Entry(frozen, bytes, costNanos);
+        e.priority = inflation + (double) costNanos / bytes;
+        entries.put(key, e);
+        usedBytes += bytes;
+        admitted++;
+        return frozen;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        usedBytes = 0;
+        inflation = 0;
+    }
+
+    // ── Statistics ────────────────────────────────────────────────────────────
+
+    public synchronized int  size()         { return entries.size(); }
+    public synchronized long getUsedBytes() { return usedBytes; }
+    public synchronized long getHits()      { return hits; }
+    public synchronized long getMisses()    { return misses; }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("SubtreeCache{entries=%d, bytes=%d/%d, hits=%d, misses=%d, "
+                           + "admitted=%d, rejected=%d, evictions=%d}",
+                             entries.size(), usedBytes, maxBytes, hits, misses,
+                             admitted, rejected, evictions);
+    }
+
+    // ── Internal ──────────────────────────────────────────────────────────────
+
+    private static boolean isSpilled(Set<Tuple> s) {
+        return s instanceof SpillableTupleSet && ((SpillableTupleSet) s).isSpilled();
+    }
+
+    private static Set<Tuple> freeze(Set<Tuple> s) {
+        return Collections.unmodifiableSet(s instanceof SpillableTupleSet ? new HashSet<>(s) : s);
+    }
+
+    /**
+     * Lowest-priority entries that must go to fit {@code bytes} more, or
+     * {@code null} if that would evict something worth more than the newcomer.
+     */
+    private List<Map.Entry<String, Entry>> victimsFor(long bytes, double priority) {
+        List<Map.Entry<String, Entry>> victims = new ArrayList<>();
+        if (usedBytes + bytes <= maxBytes) return victims;
+
+        List<Map.Entry<String, Entry>> byPriority = new ArrayList<>(entries.entrySet());
+        byPriority.sort(Comparator.comparingDouble(e -> e.getValue().priority));
+        long free = maxBytes - usedBytes;
+        for (Map.Entry<String, Entry> e : byPriority) {
+            if (free >= bytes) break;
+            if (e.getValue().priority > priority) return null;
+            victims.add(e);
+            free += e.getValue().bytes;
+        }
+        return free >= bytes ? victims : null;
+    }
+}
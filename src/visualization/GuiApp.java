@@ -1,24 +1,31 @@
 package visualization;
 
+import Algorithms.CancellationToken;
+import Algorithms.QueryCancelledException;
+import Algorithms.estimate.CardinalityEstimator;
+import database.Catalog;
+import database.CsvLoader;
+import database.RelationFile;
 import database.Relation;
 import database.Tuple;
 import javafx.application.Application;
+import javafx.concurrent.Task;
 import javafx.geometry.Insets;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.layout.*;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
+import query.ConjunctiveQuery;
+import query.QueryResultCache;
 import tree.QueryTreeBuilder;
 import tree.TreeNode;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.StringReader;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.TimeUnit;
 import javafx.scene.chart.*;
 
 public class GuiApp extends Application {
@@ -28,7 +35,16 @@ public class GuiApp extends Application {
     private ComboBox<String> algoSelector;
     private ListView<String> tableListView;
     private BarChart<String, Number> statChart;
-    private Map<String, Relation> memoryRelations = new HashMap<>();
+    private Button runButton;
+    private Button cancelButton;
+    private CancellationToken running;   // token of the query in flight; null while idle
+    private final Catalog catalog = new Catalog(); // relations loaded or created in the Data Manager
+    // CSVs read from src/test, reused while the file is unchanged so their versions stay stable
+    private final Map<File, Relation> fileRelations = new HashMap<>();
+    private final Map<File, Long>     fileStamps    = new HashMap<>();
+    private final QueryResultCache    resultCache   = new QueryResultCache(64L * 1024 * 1024);
+    // Queries run on a worker thread; one that outlives this is stopped, and Cancel stops it sooner
+    private static final long QUERY_TIMEOUT_SECONDS = 30;
 
     public static void main(String[] args) {
         launch(args);
@@ -51,9 +67,11 @@ public class GuiApp extends Application {
         TextField queryInput = new TextField();
         queryInput.setPromptText("Relation names...");
         queryInput.setPrefWidth(200);
-        Button runButton = new Button("Run Query");
+        runButton = new Button("Run Query");
+        cancelButton = new Button("Cancel");
+        cancelButton.setDisable(true);
 
-        topBox.getChildren().addAll(algoLabel, algoSelector, queryLabel, queryInput, runButton);
+        topBox.getChildren().addAll(algoLabel, algoSelector, queryLabel, queryInput, runButton, cancelButton);
 
         // Left UI: Data Manager
         VBox leftPanel = new VBox(10);
@@ -112,6 +130,9 @@ public class GuiApp extends Application {
 
         // Event Handlers
         runButton.setOnAction(e -> executeQuery(queryInput.getText()));
+        cancelButton.setOnAction(e -> {
+            if (running != null) running.cancel();
+        });
         
         loadCsvButton.setOnAction(e -> {
             FileChooser chooser = new FileChooser();
@@ -122,7 +143,7 @@ public class GuiApp extends Application {
                     String name = file.getName().replaceFirst("[.][^.]+$", "");
                     try {
                         Relation rel = loadRelationFromCsv(name, file);
-                        memoryRelations.put(name, rel);
+                        catalog.put(rel);
                     } catch (Exception ex) {
                         showError("CSV Load Error", "Failed to load " + file.getName() + ": " + ex.getMessage());
                     }
@@ -145,7 +166,7 @@ public class GuiApp extends Application {
     }
 
     private void refreshTableList() {
-        tableListView.getItems().setAll(memoryRelations.keySet());
+        tableListView.getItems().setAll(catalog.names());
     }
 
     private void openManualDataEntryDialog() {
@@ -172,29 +193,19 @@ public class GuiApp extends Application {
                 String data = dataArea.getText().trim();
                 if (name.isEmpty() || data.isEmpty()) return null;
                 
-                String[] lines = data.split("\\r?\\n");
-                if (lines.length < 1) return null;
-                
-                List<String> cols = Arrays.asList(lines[0].split(","));
-                for(int i = 0; i < cols.size(); i++) cols.set(i, cols.get(i).trim());
-                
-                Relation r = new Relation(name, cols);
-                for (int i = 1; i < lines.length; i++) {
-                    if (lines[i].trim().isEmpty()) continue;
-                    String[] vals = lines[i].split(",");
-                    Object[] objVals = new Object[cols.size()];
-                    for (int j = 0; j < cols.size(); j++) {
-                        objVals[j] = j < vals.length ? vals[j].trim() : null;
-                    }
-                    r.addRow(objVals);
+                // Same parsing and column typing as a CSV file, including name:type headers
+                try {
+                    return CsvLoader.load(name, new StringReader(data));
+                } catch (IOException ex) {
+                    showError("Invalid table data", ex.getMessage());
+                    return null;
                 }
-                return r;
             }
             return null;
         });
 
         dialog.showAndWait().ifPresent(rel -> {
-            memoryRelations.put(rel.getName(), rel);
+            catalog.put(rel);
             refreshTableList();
         });
     }
@@ -215,146 +226,204 @@ public class GuiApp extends Application {
             return;
         }
 
-        // Parse relations and their optional custom variables
-        Map<String, List<String>> queryRelations = new LinkedHashMap<>();
-        Pattern pattern = Pattern.compile("([A-Za-z0-9_]+)(?:\\s*\\(([^)]*)\\))?");
-        Matcher matcher = pattern.matcher(queryText);
-        while (matcher.find()) {
-            String name = matcher.group(1).trim();
-            String varsMatcher = matcher.group(2);
-            List<String> vars = null;
-            if (varsMatcher != null && !varsMatcher.trim().isEmpty()) {
-                vars = new ArrayList<>();
-                for (String v : varsMatcher.split(",")) {
-                    vars.add(v.trim());
-                }
-            }
-            queryRelations.put(name, vars);
-        }
-
-        if (queryRelations.isEmpty()) {
-            logArea.setText("No valid relation names found in query.");
+        ConjunctiveQuery query;
+        try {
+            query = ConjunctiveQuery.parse(queryText);
+        } catch (IllegalArgumentException ex) {
+            logArea.setText(ex.getMessage());
             return;
         }
 
-        Map<String, Relation> relations = new HashMap<>();
+        // Resolve every atom to its stored relation: memory first, then src/test
+        Map<String, Relation> sources = new HashMap<>();
         String testDir = "src/test"; 
+        Map<String, Relation> pinned = catalog.snapshot();
 
-        for (Map.Entry<String, List<String>> entry : queryRelations.entrySet()) {
-            String name = entry.getKey();
-            List<String> customCols = entry.getValue();
-            Relation originalRel = null;
-
-            // First check memory, then fallback to src/test
-            if (memoryRelations.containsKey(name)) {
-                originalRel = memoryRelations.get(name);
+        // Everything not in the Data Manager is read from src/test, all files at once
+        Map<String, File> toLoad = new LinkedHashMap<>();
+        for (String name : query.relationNames()) {
+            if (pinned.containsKey(name)) {
+                sources.put(name, pinned.get(name));
                 logArea.appendText("Loaded relation '" + name + "' from Data Manager.\n");
             } else {
+                // A converted .lwr file is mapped instead of parsing the CSV
+                File lwrFile = new File(testDir, name + RelationFile.EXTENSION);
                 File csvFile = new File(testDir, name + ".csv");
-                if (!csvFile.exists()) {
+                if (lwrFile.exists() && (!csvFile.exists() || lwrFile.lastModified() >= csvFile.lastModified())) {
+                    toLoad.put(name, lwrFile);
+                } else if (csvFile.exists()) {
+                    toLoad.put(name, csvFile);
+                } else {
                     logArea.appendText("Error: Cannot find data for relation '" + name + "' in Memory or at " + csvFile.getAbsolutePath() + "\n");
                     return;
                 }
-                try {
-                    originalRel = loadRelationFromCsv(name, csvFile);
-                    logArea.appendText("Loaded relation '" + name + "' from file.\n");
-                } catch (Exception ex) {
-                    logArea.appendText("Error loading relation '" + name + "': " + ex.getMessage() + "\n");
-                    return;
-                }
             }
-
-            // Apply custom column renames if provided in the query like R(a,b)
-            if (customCols != null) {
-                if (customCols.size() != originalRel.columnCount()) {
-                    logArea.appendText("Error: Query for '" + name + "' expects " + customCols.size() + 
-                                       " columns but data has " + originalRel.columnCount() + ".\n");
-                    return;
-                }
-                Relation renamedRel = new Relation(name, customCols);
-                for (Tuple t : originalRel.getTuples()) {
-                    Object[] vals = new Object[customCols.size()];
-                    for (int i = 0; i < customCols.size(); i++) vals[i] = t.getValue(i);
-                    renamedRel.addRow(vals);
-                }
-                relations.put(name, renamedRel);
-                logArea.appendText("Renamed columns of '" + name + "' to " + customCols + "\n");
-            } else {
-                relations.put(name, originalRel);
+        }
+        try {
+            for (Map.Entry<String, Relation> e : loadTestRelations(toLoad).entrySet()) {
+                sources.put(e.getKey(), e.getValue());
+                logArea.appendText("Loaded relation '" + e.getKey() + "' from file.\n");
             }
-            logArea.appendText(relations.get(name).toTableString() + "\n\n");
+        } catch (Exception ex) {
+            logArea.appendText("Error loading relations: " + ex.getMessage() + "\n");
+            return;
         }
 
+        // Apply custom column renames if provided in the query like R(a,b)
+        Map<String, Relation> relations;
         try {
-            String algo = algoSelector.getValue();
-            logArea.appendText("Executing using: " + algo + "\n\n");
-
-            long startTime = System.nanoTime();
+            relations = query.bind(sources);
+        } catch (IllegalArgumentException ex) {
+            logArea.appendText("Error: " + ex.getMessage() + "\n");
+            return;
+        }
+        for (ConjunctiveQuery.Atom atom : query.getAtoms()) {
+            if (atom.vars != null) {
+                logArea.appendText("Renamed columns of '" + atom.alias + "' to " + atom.vars + "\n");
+            }
+            logArea.appendText(relations.get(atom.alias).toTableString() + "\n\n");
+        }
 
-            TreeNode root = QueryTreeBuilder.build(relations);
-            logArea.appendText("Query tree: " + root.getLabel() + "\n");
+        String algo = algoSelector.getValue();
+        logArea.appendText("Executing using: " + algo + "\n\n");
 
-            Set<Tuple> results;
-            double sizeBound = 0.0;
+        long startTime = System.nanoTime();
+        TreeNode root = QueryTreeBuilder.build(relations);
+        logArea.appendText("Query tree: " + root.getLabel() + "\n");
+        List<String> columns = getResultColumns(root, relations);
 
-            if (algo.equals("Loomis-Whitney WCOJ")) {
-                TracingLoomisWhitney lw = new TracingLoomisWhitney(relations);
-                sizeBound = lw.getSizeBound();
-                logArea.appendText(String.format("Size Bound: %.2f\n\n", sizeBound));
-                results = lw.execute();
+        Set<Tuple> cached = resultCache.get(query, sources);
+        if (cached != null) {
+            logArea.appendText("Result served from cache (inputs unchanged since last run).\n");
+            logArea.appendText(resultCache + "\n");
+            showResult(algo, root, cached, formatResultSet(cached, columns), 0.0, startTime);
+            return;
+        }
+        if (!algo.equals("Loomis-Whitney WCOJ")) {
+            // Future algorithms will go here
+            Set<Tuple> none = new HashSet<>();
+            showResult(algo, root, none, formatResultSet(none, columns), 0.0, startTime);
+            return;
+        }
 
-                logArea.appendText("--- Execution Trace ---\n");
-                for (AlgorithmStep step : lw.getSteps()) {
-                    logArea.appendText(step.heading + "\n");
-                    logArea.appendText(step.narrative + "\n\n");
-                }
+        // The join runs on a worker thread; the window stays live and Cancel stops it
+        TracingLoomisWhitney lw = new TracingLoomisWhitney(relations);
+        CancellationToken token = CancellationToken.withTimeout(QUERY_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        lw.setCancellationToken(token);
+        double sizeBound = lw.getSizeBound();
+        Task<QueryRun> task = new Task<>() {
+            @Override
+            protected QueryRun call() {
+                CardinalityEstimator.Estimate estimate =
+                        new CardinalityEstimator(relations, root, System.nanoTime()).estimateOutput(100);
+                Set<Tuple> results = lw.execute();
+                return new QueryRun(estimate, results, formatResultSet(results, columns));
+            }
+        };
+        task.setOnSucceeded(e -> {
+            QueryRun run = task.getValue();
+            setRunning(null);
+            logArea.appendText("Estimated result size (95% CI): " + run.estimate + "\n");
+            logArea.appendText(String.format("Size Bound: %.2f\n\n", sizeBound));
+            logArea.appendText("--- Execution Trace ---\n");
+            for (AlgorithmStep step : lw.getSteps()) {
+                logArea.appendText(step.heading + "\n");
+                logArea.appendText(step.narrative + "\n\n");
+            }
+            resultCache.put(query, sources, run.results);
+            showResult(algo, root, run.results, run.table, sizeBound, startTime);
+        });
+        task.setOnFailed(e -> {
+            setRunning(null);
+            Throwable ex = task.getException();
+            if (ex instanceof QueryCancelledException) {
+                logArea.appendText(((QueryCancelledException) ex).progressReport() + "\n");
+                resultArea.setText("No result: " + ex.getMessage() + "\n");
             } else {
-                // Future algorithms will go here
-                results = new HashSet<>(); 
+                logArea.appendText("Execution Error: " + ex.getMessage() + "\n");
+                ex.printStackTrace();
             }
+        });
+        setRunning(token);
+        logArea.appendText("Running... (Cancel stops the query)\n");
+        Thread worker = new Thread(task, "gui-query");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /** What the worker thread hands back to the FX thread. */
+    private static final class QueryRun {
+        final CardinalityEstimator.Estimate estimate;
+        final Set<Tuple>                    results;
+        final String                        table;
 
-            long endTime = System.nanoTime();
-            double durationMs = (endTime - startTime) / 1_000_000.0;
+        QueryRun(CardinalityEstimator.Estimate estimate, Set<Tuple> results, String table) {
+            this.estimate = estimate;
+            this.results  = results;
+            this.table    = table;
+        }
+    }
 
-            resultArea.setText("Result — " + root.getLabel() + " (" + results.size() + " rows):\n");
-            resultArea.appendText(formatResultSet(results, getResultColumns(root, relations)));
+    /** Marks a query in flight ({@code token}) or none (null) and toggles Run / Cancel. */
+    private void setRunning(CancellationToken token) {
+        running = token;
+        runButton.setDisable(token != null);
+        cancelButton.setDisable(token == null);
+    }
 
-            // Update Analytics Chart
-            statChart.getData().clear();
-            XYChart.Series<String, Number> series = new XYChart.Series<>();
-            series.setName(algo + " Stats");
-            series.getData().add(new XYChart.Data<>("Execution Time (ms)", durationMs));
-            series.getData().add(new XYChart.Data<>("Theoretical Size Bound", sizeBound));
-            series.getData().add(new XYChart.Data<>("Actual Result Size", results.size()));
-            statChart.getData().add(series);
+    private void showResult(String algo, TreeNode root, Set<Tuple> results, String table,
+                            double sizeBound, long startTime) {
+        double durationMs = (System.nanoTime() - startTime) / 1_000_000.0;
+
+        resultArea.setText("Result — " + root.getLabel() + " (" + results.size() + " rows):\n");
+        resultArea.appendText(table);
+
+        // Update Analytics Chart
+        statChart.getData().clear();
+        XYChart.Series<String, Number> series = new XYChart.Series<>();
+        series.setName(algo + " Stats");
+        series.getData().add(new XYChart.Data<>("Execution Time (ms)", durationMs));
+        series.getData().add(new XYChart.Data<>("Theoretical Size Bound", sizeBound));
+        series.getData().add(new XYChart.Data<>("Actual Result Size", results.size()));
+        statChart.getData().add(series);
+    }
 
-        } catch (Exception ex) {
-            logArea.appendText("Execution Error: " + ex.getMessage() + "\n");
-            ex.printStackTrace();
+    /**
+     * Loads {@code name → file} (.csv or .lwr), rereading only files that
+     * changed since last time; CSVs are parsed concurrently, .lwr files mapped.
+     */
+    private Map<String, Relation> loadTestRelations(Map<String, File> files) throws IOException {
+        Map<String, File> stale = new LinkedHashMap<>();
+        for (Map.Entry<String, File> e : files.entrySet()) {
+            File file = e.getValue();
+            if (fileRelations.get(file) == null || !Objects.equals(fileStamps.get(file), file.lastModified())) {
+                stale.put(e.getKey(), file);
+            }
         }
+        Map<String, Long> stamps = new HashMap<>();
+        Map<String, Relation> fresh = new HashMap<>();
+        Map<String, File> csvs = new LinkedHashMap<>();
+        for (Map.Entry<String, File> e : stale.entrySet()) {
+            stamps.put(e.getKey(), e.getValue().lastModified());
+            if (e.getValue().getName().endsWith(RelationFile.EXTENSION)) {
+                fresh.put(e.getKey(), RelationFile.read(e.getValue()));
+            } else {
+                csvs.put(e.getKey(), e.getValue());
+            }
+        }
+        fresh.putAll(CsvLoader.loadAll(csvs));
+        for (Map.Entry<String, Relation> e : fresh.entrySet()) {
+            File file = stale.get(e.getKey());
+            fileRelations.put(file, e.getValue());
+            fileStamps.put(file, stamps.get(e.getKey()));
+        }
+        Map<String, Relation> loaded = new LinkedHashMap<>();
+        for (Map.Entry<String, File> e : files.entrySet()) loaded.put(e.getKey(), fileRelations.get(e.getValue()));
+        return loaded;
     }
 
     private Relation loadRelationFromCsv(String name, File file) throws IOException {
-        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
-            String headerLine = br.readLine();
-            if (headerLine == null) throw new IOException("CSV file is empty");
-            List<String> columns = Arrays.asList(headerLine.split(","));
-            
-            Relation rel = new Relation(name, columns);
-            
-            String line;
-            while ((line = br.readLine()) != null) {
-                if (line.trim().isEmpty()) continue;
-                String[] values = line.split(",");
-                // Pad with nulls if some columns are missing
-                Object[] objValues = new Object[columns.size()];
-                for (int i = 0; i < columns.size(); i++) {
-                    objValues[i] = i < values.length ? values[i].trim() : null;
-                }
-                rel.addRow(objValues);
-            }
-            return rel;
-        }
+        return CsvLoader.load(name, file);
     }
 
     private List<String> getResultColumns(TreeNode root, Map<String, Relation> relations) {
@@ -1,25 +1,28 @@
 package visualization;
 
+import Algorithms.CancellationToken;
+import Algorithms.LoomisWhitneyInstance;
+import Algorithms.NodeStats;
 import database.Relation;
 import database.Tuple;
 import tree.QueryTreeBuilder;
-import tree.Result;
 import tree.TreeNode;
 
 import java.util.*;
 
 /**
- * Instrumented version of {@link Algorithms.LoomisWhitneyInstance} that records
- * an {@link AlgorithmStep} for every recursive call so the visualizer can
+ * Runs {@link LoomisWhitneyInstance} with an {@link ExecutionListener} that
+ * records an {@link AlgorithmStep} for every tree node so the visualizer can
  * replay the execution step by step.
  *
- * The algorithmic logic is identical to the original WCOJ; only tracing
- * instrumentation has been added.
+ * The engine runs tuple-at-a-time here so every node exposes its F, G and
+ * F\G key sets for the snapshots; results are identical either way.
  */
 public class TracingLoomisWhitney {
 
     private final Map<String, Relation>         relations;
     private final TreeNode                       tree;
+    private final LoomisWhitneyInstance          engine;
     private final Map<TreeNode, List<String>>    nodeSchemas = new HashMap<>();
     private final List<AlgorithmStep>            steps       = new ArrayList<>();
 
@@ -28,60 +31,27 @@ public class TracingLoomisWhitney {
     public TracingLoomisWhitney(Map<String, Relation> relations) {
         this.relations = relations;
         this.tree      = QueryTreeBuilder.build(relations);
+        this.engine    = new LoomisWhitneyInstance(relations, tree);
+        engine.setVectorized(false);
+        engine.setExecutionListener(this::record);
         computeNodeSchemas(tree);
     }
 
     public TreeNode           getTree()  { return tree; }
     public List<AlgorithmStep> getSteps() { return Collections.unmodifiableList(steps); }
 
+    /** Lets the caller stop a long run; see {@link LoomisWhitneyInstance#setCancellationToken}. */
+    public void setCancellationToken(CancellationToken token) { engine.setCancellationToken(token); }
+
     // ── Public API ─────────────────────────────────────────────────────────────
 
     /** Run the algorithm, populate the step list, return the final result. */
     public Set<Tuple> execute() {
         steps.clear();
-        Set<Tuple> raw = loomisWhitney(tree).getC();
-        
-        Set<String> allAttrs = new HashSet<>();
-        for (Relation r : relations.values()) {
-            allAttrs.addAll(r.getColumns());
-        }
-        return prune(raw, new ArrayList<>(allAttrs));
+        return engine.execute();
     }
 
-    private Set<Tuple> prune(Set<Tuple> candidates, List<String> allAttrs) {
-        Set<Tuple> finalResult = new HashSet<>();
-        for (Tuple t : candidates) {
-            if (t.getAttributeMap().keySet().containsAll(allAttrs)) {
-                boolean valid = true;
-                for (Relation rel : relations.values()) {
-                    List<String> relCols = rel.getColumns();
-                    Tuple projected = t.projectOn(relCols);
-                    if (!rel.getTuples().contains(projected)) {
-                        valid = false;
-                        break;
-                    }
-                }
-                if (valid) finalResult.add(t);
-            }
-        }
-        return finalResult;
-    }
-
-    private double computeLWBound(int n) {
-        double bound = 1.0;
-        for (Relation rel : relations.values()) {
-            bound *= Math.pow(rel.size(), 1.0 / (n - 1));
-        }
-        return bound;
-    }
-
-    public double getSizeBound() {
-        Set<String> allAttrs = new HashSet<>();
-        for (Relation r : relations.values()) {
-            allAttrs.addAll(r.getColumns());
-        }
-        return computeLWBound(allAttrs.size());
-    }
+    public double getSizeBound() { return engine.getSizeBound(); }
 
     // ── Schema helpers ─────────────────────────────────────────────────────────
 
@@ -101,27 +71,16 @@ public class TracingLoomisWhitney {
         return union;
     }
 
-    private List<String> getLambda(TreeNode node) {
-        if (node.isLeaf()) return new ArrayList<>();
-        List<String> L = nodeSchemas.get(node.leftChild());
-        List<String> R = nodeSchemas.get(node.rightChild());
-        List<String> common = new ArrayList<>();
-        for (String a : L) if (R.contains(a)) common.add(a);
-        return common;
-    }
-
-    // ── Core recursive algorithm (with step recording) ─────────────────────────
+    // ── Step recording ─────────────────────────────────────────────────────────
 
-    private Result loomisWhitney(TreeNode node) {
+    private void record(NodeStats s) {
+        TreeNode node = s.node;
+        List<String> sc = nodeSchemas.get(node);
 
         // ── Leaf ──────────────────────────────────────────────────────────────
         if (node.isLeaf()) {
-            Relation rel = relations.get(node.getLabel());
-            Set<Tuple> D = rel != null ? new HashSet<>(rel.getTuples()) : new HashSet<>();
-
-            List<String> sc    = nodeSchemas.get(node);
             AlgorithmStep.TableSnap empty = snap(Set.of(), sc);
-            AlgorithmStep.TableSnap dSnap = snap(D, sc);
+            AlgorithmStep.TableSnap dSnap = snap(s.D, sc);
 
             String narrative = String.format(
                 "Leaf node  \"%s\"\n\n" +
@@ -129,53 +88,24 @@ public class TracingLoomisWhitney {
                 "C starts empty — leaf nodes have nothing to join yet.\n\n" +
                 "D will be passed up to the parent node, which will decide\n" +
                 "how to split the tuples into heavy (G) and light (F\\G) hitters.",
-                node.getLabel(), D.size(), node.getLabel());
+                node.getLabel(), s.D_size, node.getLabel());
 
             steps.add(new AlgorithmStep(
                 node, "Leaf: " + node.getLabel(), new ArrayList<>(),
                 0, 0, 0, 0,
                 0, 0, 0,
-                0, D.size(),
+                0, s.D_size,
                 empty, empty, empty, empty, dSnap,
                 narrative));
-
-            return new Result(new HashSet<>(), D);
+            return;
         }
 
         // ── Internal / root ───────────────────────────────────────────────────
-        Result leftRes  = loomisWhitney(node.leftChild());
-        Result rightRes = loomisWhitney(node.rightChild());
-
-        Set<Tuple> C_L = leftRes.getC(),  D_L = leftRes.getD();
-        Set<Tuple> C_R = rightRes.getC(), D_R = rightRes.getD();
-
-        List<String> lambda    = getLambda(node);
-        List<String> nodeSchema = nodeSchemas.get(node);
-
-        // F = π_λ(D_L) ∩ π_λ(D_R)
-        Set<Tuple> F = project(D_L, lambda);
-        F.retainAll(project(D_R, lambda));
-
-        int P         = (int) getSizeBound();
-        int threshold = Math.max(1, P / Math.max(1, D_R.size()));
-        Set<Tuple> G         = selectTop(F, threshold);
-        Set<Tuple> lightKeys = new HashSet<>(F);
-        lightKeys.removeAll(G);
-
-        Set<Tuple> C, D;
-        if (node.isRoot()) {
-            C = join(D_L, D_R);
-            C.addAll(C_L); C.addAll(C_R);
-            D = new HashSet<>();
-        } else {
-            C = conditionalJoin(D_L, D_R, G, lambda);
-            C.addAll(C_L); C.addAll(C_R);
-            D = conditionalJoin(D_L, D_R, lightKeys, lambda);
-        }
-
-        // ── Record step ───────────────────────────────────────────────────────
+        List<String> lambda = s.lambda;
         String lambdaStr = lambda.isEmpty() ? "(none)" : String.join(", ", lambda);
         String type      = node.isRoot() ? "Root" : "Internal";
+        String threshold = String.format("Threshold = ⌈P / |D_R|⌉ = ⌈%.2f / %d⌉ = %d",
+                                         engine.getSizeBound(), s.DR_size, s.threshold);
 
         String narrative;
         if (node.isRoot()) {
@@ -185,81 +115,50 @@ public class TracingLoomisWhitney {
                 "Left child  → D_L = %d tuple(s),  C_L = %d tuple(s)\n" +
                 "Right child → D_R = %d tuple(s),  C_R = %d tuple(s)\n\n" +
                 "F = π_λ(D_L) ∩ π_λ(D_R)  =  %d matching key(s)\n" +
-                "Threshold = |F| / |D_R| = %d / %d  =  %d\n" +
+                "%s\n" +
                 "G (heavy hitters):  %d key(s)\n" +
                 "F\\G (light hitters): %d key(s)\n\n" +
                 "Root materialises everything:\n" +
                 "  C = join(D_L, D_R) ∪ C_L ∪ C_R  →  %d tuple(s)\n" +
                 "  D = ∅  (root produces the final answer)",
                 type, lambdaStr,
-                D_L.size(), C_L.size(), D_R.size(), C_R.size(),
-                F.size(), P, D_R.size(), threshold,
-                G.size(), lightKeys.size(), C.size());
+                s.DL_size, s.CL_size, s.DR_size, s.CR_size,
+                s.F_size, threshold,
+                s.G_size, s.light_size, s.C_size);
         } else {
             narrative = String.format(
                 "%s node — joining children on  λ = {%s}\n\n" +
                 "Left child  → D_L = %d tuple(s),  C_L = %d tuple(s)\n" +
                 "Right child → D_R = %d tuple(s),  C_R = %d tuple(s)\n\n" +
                 "F = π_λ(D_L) ∩ π_λ(D_R)  =  %d matching key(s)\n" +
-                "Threshold = |F| / |D_R| = %d / %d  =  %d\n\n" +
-                "G  (heavy, eager join → C):  %d key(s)\n" +
-                "F\\G (light, deferred → D):   %d key(s)\n\n" +
+                "%s\n\n" +
+                "G  (|D_L[t]| + 1 ≤ threshold, eager join → C):  %d key(s)\n" +
+                "F\\G (deferred → D):                              %d key(s)\n\n" +
                 "C_out = condJoin(D_L, D_R, G)  ∪ C_L ∪ C_R  →  %d tuple(s)\n" +
                 "D_out = condJoin(D_L, D_R, F\\G)              →  %d tuple(s)",
                 type, lambdaStr,
-                D_L.size(), C_L.size(), D_R.size(), C_R.size(),
-                F.size(), P, D_R.size(), threshold,
-                G.size(), lightKeys.size(),
-                C.size(), D.size());
+                s.DL_size, s.CL_size, s.DR_size, s.CR_size,
+                s.F_size, threshold,
+                s.G_size, s.light_size,
+                s.C_size, s.D_size);
         }
+        narrative += String.format("\n\nNode cost: %.3f ms, %d candidate pair(s) probed%s",
+                s.wallNanos / 1e6, s.probes,
+                s.allocatedBytes < 0 ? "" : ", " + s.allocatedBytes / 1024 + " KiB allocated");
 
         String heading = type + " ⋈ {" + lambdaStr + "}";
         steps.add(new AlgorithmStep(
             node, heading, lambda,
-            D_L.size(), D_R.size(), C_L.size(), C_R.size(),
-            F.size(), G.size(), lightKeys.size(),
-            C.size(), D.size(),
-            snap(F, lambda), snap(G, lambda), snap(lightKeys, lambda),
-            snap(C, nodeSchema), snap(D, nodeSchema),
+            s.DL_size, s.DR_size, s.CL_size, s.CR_size,
+            s.F_size, s.G_size, s.light_size,
+            s.C_size, s.D_size,
+            snap(keys(s.F), lambda), snap(keys(s.G), lambda), snap(keys(s.light), lambda),
+            snap(s.C, sc), snap(s.D, sc),
             narrative));
-
-        return new Result(C, D);
-    }
-
-    // ── Join helpers (mirrors LoomisWhitneyInstance) ────────────────────────────
-
-    private Set<Tuple> join(Set<Tuple> left, Set<Tuple> right) {
-        Set<Tuple> result = new HashSet<>();
-        for (Tuple l : left)
-            for (Tuple r : right)
-                if (l.canJoin(r)) result.add(l.join(r));
-        return result;
-    }
-
-    private Set<Tuple> conditionalJoin(Set<Tuple> left, Set<Tuple> right,
-                                        Set<Tuple> keys, List<String> lambda) {
-        if (keys.isEmpty() || left.isEmpty() || right.isEmpty()) return new HashSet<>();
-        Set<Tuple> result = new HashSet<>();
-        for (Tuple l : left) {
-            if (!keys.contains(l.projectOn(lambda))) continue;
-            for (Tuple r : right)
-                if (l.canJoin(r)) result.add(l.join(r));
-        }
-        return result;
-    }
-
-    private Set<Tuple> project(Collection<Tuple> tuples, List<String> attrs) {
-        Set<Tuple> projected = new HashSet<>();
-        if (attrs.isEmpty()) return projected;
-        for (Tuple t : tuples) projected.add(t.projectOn(attrs));
-        return projected;
     }
 
-    private Set<Tuple> selectTop(Set<Tuple> tuples, int k) {
-        Set<Tuple> selected = new HashSet<>();
-        int count = 0;
-        for (Tuple t : tuples) { if (count++ >= k) break; selected.add(t); }
-        return selected;
+    private static Set<Tuple> keys(Set<Tuple> keySet) {
+        return keySet == null ? Set.of() : keySet;
     }
 
     // ── Snapshot builder ───────────────────────────────────────────────────────